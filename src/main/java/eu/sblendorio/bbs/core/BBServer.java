@@ -1,13 +1,19 @@
 package eu.sblendorio.bbs.core;
 
 import com.google.common.reflect.ClassPath;
+import net.sourceforge.droid64.addons.DownloadCache;
 import org.apache.commons.cli.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.zmpp.textui.bbs.BBSInputStream;
+import org.zmpp.textui.bbs.BBSMachineFactory;
+import org.zmpp.textui.bbs.SaveGameStore;
+import org.zmpp.vm.MachineImpl;
 
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.sql.Timestamp;
 import java.util.LinkedList;
 import java.util.List;
@@ -16,14 +22,25 @@ import java.util.Set;
 import static java.util.Collections.emptyList;
 import static java.util.Comparator.comparing;
 import static org.apache.commons.lang3.math.NumberUtils.toInt;
+import static org.apache.commons.lang3.math.NumberUtils.toLong;
 
 public class BBServer {
     private static int port;
     private static int timeout;
+    private static int maxSessions;
+    private static int backlog;
+    private static long stackSize;
     private static Class<? extends PetsciiThread> bbs;
     private static List<Class<? extends PetsciiThread>> tenants = filterPetsciiThread();
     private static final long DEFAULT_TIMEOUT_IN_MILLIS = 3600000;
     private static final long DEFAULT_PORT = 6510;
+    private static final int DEFAULT_MAX_SESSIONS = 500;
+    private static final int DEFAULT_BACKLOG = 50;
+    private static final long DEFAULT_STACK_SIZE = 256 * 1024;
+    private static final long DEFAULT_ZMPP_IDLE_IN_MILLIS = 60000;
+    private static final long DEFAULT_MAX_DOWNLOAD = 8L * 1024 * 1024;
+    private static final int DEFAULT_ZMPP_UNDO = MachineImpl.DEFAULT_UNDO_BUDGET;
+    private static final int STATS_LOG_INTERVAL = 100;
 
     private static final Logger logger = LoggerFactory.getLogger(BBServer.class);
 
@@ -31,23 +48,56 @@ public class BBServer {
         // args = new String[] {"-b", "MenuRetroAcademy", "-p", "6510"};
         readParameters(args);
 
-        logger.info("{} The BBS {} is running: port = {}, timeout = {} millis",
+        final SessionScheduler scheduler = new SessionScheduler(maxSessions, stackSize);
+        logger.info("{} The BBS {} is running: port = {}, timeout = {} millis, max sessions = {}, backlog = {}, virtual threads = {}",
                     new Timestamp(System.currentTimeMillis()),
                     bbs.getSimpleName(),
                     port,
-                    timeout);
-        try(ServerSocket listener = new ServerSocket(port)) {
-            listener.setSoTimeout(0);
+                    timeout,
+                    maxSessions > 0 ? maxSessions : "unlimited",
+                    backlog,
+                    scheduler.isUsingVirtualThreads());
+        // indexes the downloads cached by the previous runs before the first session needs them
+        logger.info("Download cache: {}", DownloadCache.getInstance().stats());
+        // sockets come from a channel, which lets CbmInputOutput wake sessions up for their messages
+        try(ServerSocketChannel listener = ServerSocketChannel.open()) {
+            listener.bind(new InetSocketAddress(port), backlog);
             while (true) {
-                Socket socket = listener.accept();
+                Socket socket = listener.accept().socket();
                 socket.setSoTimeout(timeout);
 
                 CbmInputOutput cbm = new CbmInputOutput(socket);
                 PetsciiThread thread = bbs.getDeclaredConstructor().newInstance();
                 thread.setSocket(socket);
                 thread.setCbmInputOutput(cbm);
-                thread.start();
+                if (!scheduler.submit(thread)) {
+                    logger.warn("Connection from {} rejected, server full: {}", socket.getRemoteSocketAddress(), scheduler.stats());
+                    rejectConnection(socket, cbm);
+                } else if (scheduler.getAcceptedCount() % STATS_LOG_INTERVAL == 0) {
+                    logger.info("Sessions: {}", scheduler.stats());
+                    logger.info("HTTP cache: {}", SharedHttpClient.getInstance().stats());
+                    logger.info("Feeds: {}", FeedRegistry.getInstance().stats());
+                    logger.info("Rendered pages: {}", RenderedPageCache.getInstance().stats());
+                    logger.info("Mailboxes: {}", Mailbox.stats());
+                    logger.info("GeoIP: {}", GeoIp.getInstance().stats());
+                    logger.info("Z-machines: {}", BBSInputStream.stats());
+                    logger.info("Saved games: {}", SaveGameStore.getInstance().stats());
+                    logger.info("Download cache: {}", DownloadCache.getInstance().stats());
+                }
             }
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private static void rejectConnection(Socket socket, CbmInputOutput cbm) {
+        try {
+            cbm.println("Too many users connected, please try again later.");
+            cbm.flush();
+            cbm.close();
+            socket.close();
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Couldn't close rejected socket: {}", e.toString());
         }
     }
 
@@ -55,6 +105,12 @@ public class BBServer {
         Options options = new Options();
         options.addOption("p", "port", true, "TCP port used by server process (default "+DEFAULT_PORT+")");
         options.addOption("t", "timeout", true, "Socket timeout in millis (default " + (DEFAULT_TIMEOUT_IN_MILLIS /60000) + " minutes)");
+        options.addOption("m", "max-sessions", true, "Max number of concurrent sessions, 0 for unlimited (default " + DEFAULT_MAX_SESSIONS + ")");
+        options.addOption("k", "backlog", true, "Max number of pending connections in the accept queue (default " + DEFAULT_BACKLOG + ")");
+        options.addOption("s", "stack-size", true, "Stack size in KB of each session thread, 0 for JVM default (default " + (DEFAULT_STACK_SIZE / 1024) + ")");
+        options.addOption("z", "zmpp-idle", true, "Millis a Z-machine game waits for a key before being hibernated, 0 to disable (default " + DEFAULT_ZMPP_IDLE_IN_MILLIS + ")");
+        options.addOption("u", "zmpp-undo", true, "Memory in KB for the undo steps of a Z-machine game, 0 to keep only the last one (default " + (DEFAULT_ZMPP_UNDO / 1024) + ")");
+        options.addOption("d", "max-download", true, "Max size in KB of a file downloaded from the Internet, 0 for unlimited (default " + (DEFAULT_MAX_DOWNLOAD / 1024) + ")");
         options.addOption("h", "help", false, "Displays help");
         options.addOption("b", "bbs", true, "Run specific BBS (mandatory - see list below)");
         CommandLineParser parser = new DefaultParser();
@@ -73,6 +129,12 @@ public class BBServer {
         }
         port = toInt(cmd.getOptionValue("port", String.valueOf(DEFAULT_PORT)));
         timeout = toInt(cmd.getOptionValue("timeout", String.valueOf(DEFAULT_TIMEOUT_IN_MILLIS)));
+        maxSessions = Math.max(0, toInt(cmd.getOptionValue("max-sessions", String.valueOf(DEFAULT_MAX_SESSIONS))));
+        backlog = toInt(cmd.getOptionValue("backlog", String.valueOf(DEFAULT_BACKLOG)));
+        stackSize = Math.max(0, toLong(cmd.getOptionValue("stack-size", String.valueOf(DEFAULT_STACK_SIZE / 1024)))) * 1024;
+        BBSInputStream.setHibernateAfterMillis(Math.max(0, toLong(cmd.getOptionValue("zmpp-idle", String.valueOf(DEFAULT_ZMPP_IDLE_IN_MILLIS)))));
+        BBSMachineFactory.setUndoBudget((int) Math.min(Integer.MAX_VALUE, Math.max(0, toLong(cmd.getOptionValue("zmpp-undo", String.valueOf(DEFAULT_ZMPP_UNDO / 1024)))) * 1024));
+        SharedHttpClient.getInstance().setMaxBodyBytes(toLong(cmd.getOptionValue("max-download", String.valueOf(DEFAULT_MAX_DOWNLOAD / 1024))) * 1024);
         final String bbsName = cmd.getOptionValue("bbs");
         bbs = findTenant(bbsName);
         if (bbs == null) {
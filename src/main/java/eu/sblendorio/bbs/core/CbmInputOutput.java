@@ -2,6 +2,12 @@ package eu.sblendorio.bbs.core;
 
 import java.io.*;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -23,6 +29,15 @@ public class CbmInputOutput extends Reader {
 
     private Reader in;
     private PrintStream out;
+    private OutputCounter counter;
+
+    private Socket socket;
+    private Mailbox mailbox = null;
+    private ChannelInputStream input;
+    private ChannelOutputStream output;
+    private boolean interactive = false;
+    private long idleMillis = 0;
+    private Runnable idleListener = null;
 
     private char[] cb;
     private int nChars;
@@ -41,6 +56,7 @@ public class CbmInputOutput extends Reader {
 
     private static int defaultCharBufferSize = 8192;
     private static int defaultExpectedLineLength = 80;
+    private static int defaultOutputBufferSize = 8192;
 
     private CbmInputOutput(Reader in, int sz) {
         super(in);
@@ -51,17 +67,97 @@ public class CbmInputOutput extends Reader {
         nextChar = nChars = 0;
     }
 
+    /**
+     * Output is buffered: it reaches the socket when the BBS waits for input
+     * (readKey, readLine, read) or on an explicit flush(), never byte by byte.
+     *
+     * A socket with a channel (as accepted by BBServer) is switched to
+     * non-blocking mode and read through a selector, so that the session can
+     * be woken up by its mailbox; other sockets are read as they are.
+     */
     public CbmInputOutput(Socket socket) throws IOException {
-        this(new InputStreamReader(socket.getInputStream(), ISO_8859_1), defaultCharBufferSize);
-        this.out = new PrintStream(socket.getOutputStream(), true, ISO_8859_1.name());
+        this(socket, socket.getChannel() == null ? null : new ChannelInputStream(socket.getChannel()));
+    }
+
+    private CbmInputOutput(Socket socket, ChannelInputStream input) throws IOException {
+        this(new InputStreamReader(input == null ? socket.getInputStream() : input, ISO_8859_1), defaultCharBufferSize);
+        this.input = input;
+        this.socket = socket;
+        if (input != null) {
+            input.owner = this;
+            this.output = new ChannelOutputStream(socket.getChannel());
+        }
+        this.counter = new OutputCounter(output == null ? socket.getOutputStream() : output);
+        this.out = new PrintStream(new BufferedOutputStream(counter, defaultOutputBufferSize), false, ISO_8859_1.name());
+    }
+
+    /**
+     * Messages in the mailbox are delivered while readKey() or readLine() wait
+     * for the user, never during raw reads (e.g. XModem transfers). Offering a
+     * message wakes the waiting session up; the socket timeout is unchanged.
+     * Without a channel, messages wait for the next read.
+     */
+    public void setMailbox(Mailbox mailbox) {
+        this.mailbox = mailbox;
+        if (input != null) mailbox.setWakeUp(input::wakeUp);
+    }
+
+    private void deliverMessages() {
+        if (hasMessages() && mailbox.drain() > 0) out.flush();
+    }
+
+    private boolean hasMessages() {
+        return interactive && mailbox != null && !mailbox.isEmpty();
     }
 
     public PrintStream out() {return out;}
 
+    /** Bytes actually sent to the socket so far */
+    public long getBytesWritten() { return counter == null ? 0 : counter.bytes; }
+
+    /** Number of write calls issued to the socket so far (i.e. send syscalls) */
+    public long getWriteCount() { return counter == null ? 0 : counter.writes; }
+
     public int readKey() throws IOException {
-        final int result = in.read();
-        if (result == -1) throw new CbmIOException("CbmInputOutput::readKey()");
-        return result;
+        final boolean wasInteractive = interactive;
+        interactive = true;
+        try {
+            deliverMessages();
+            out.flush();
+            final int result = in.read();
+            if (result == -1) throw new CbmIOException("CbmInputOutput::readKey()");
+            return result;
+        } finally {
+            interactive = wasInteractive;
+        }
+    }
+
+    /**
+     * Like readKey(), but runs onIdle once, on this thread, if no key arrives
+     * within idleMillis. Idle users are noticed only with a mailbox set, as
+     * every session has.
+     */
+    public int readKey(long idleMillis, Runnable onIdle) throws IOException {
+        this.idleMillis = idleMillis;
+        this.idleListener = onIdle;
+        try {
+            return readKey();
+        } finally {
+            idleListener = null;
+        }
+    }
+
+    /** How long a read can wait before the idle listener is due, 0 for no limit */
+    private long idleWait(long waitingMillis) {
+        return idleListener == null ? 0 : Math.max(1, idleMillis - waitingMillis);
+    }
+
+    private void checkIdle(long waitingMillis) {
+        final Runnable listener = idleListener;
+        if (listener != null && waitingMillis >= idleMillis) {
+            idleListener = null;
+            listener.run();
+        }
     }
 
     /** Checks to make sure that the stream has not been closed */
@@ -104,6 +200,8 @@ public class CbmInputOutput extends Reader {
             }
         }
 
+        deliverMessages();
+        out.flush();
         int n;
         do {
             n = in.read(cb, dst, cb.length - dst);
@@ -208,6 +306,16 @@ public class CbmInputOutput extends Reader {
     }
 
     public String readLine(boolean ignoreLF, int maxLength, boolean mask) throws IOException {
+        final boolean wasInteractive = interactive;
+        interactive = true;
+        try {
+            return readLineInteractive(ignoreLF, maxLength, mask);
+        } finally {
+            interactive = wasInteractive;
+        }
+    }
+
+    private String readLineInteractive(boolean ignoreLF, int maxLength, boolean mask) throws IOException {
         StringBuffer s = null;
         int startChar;
         synchronized (lock) {
@@ -276,7 +384,6 @@ public class CbmInputOutput extends Reader {
                             out.write(mask && c != 13 && c != 10 ? '*' : c);
                             ++size;
                         }
-                        out.flush();
                     }
                     if ((c == '\n') || (c == '\r')) {
                         eol = true;
@@ -445,6 +552,7 @@ public class CbmInputOutput extends Reader {
             } finally {
                 in = null;
                 cb = null;
+                if (output != null) output.close();
             }
         }
     }
@@ -529,7 +637,10 @@ public class CbmInputOutput extends Reader {
     public void print(String msg) {
         if (msg == null) return;
 
-        for (char c: msg.toCharArray()) {
+        final byte[] buffer = new byte[msg.length()];
+        int len = 0;
+        for (int i = 0; i < msg.length(); ++i) {
+            char c = msg.charAt(i);
             if (!isPrintableChar(c) && c != '\r' && c != '\n')
                 continue;
             else if (c == '_')
@@ -539,8 +650,9 @@ public class CbmInputOutput extends Reader {
             else if (c >= 'A' && c <= 'Z')
                 c = Character.toLowerCase(c);
 
-            out.write(c);
+            buffer[len++] = (byte) c;
         }
+        out.write(buffer, 0, len);
     }
 
     public void writeRawFile(String filename) throws IOException {
@@ -557,6 +669,156 @@ public class CbmInputOutput extends Reader {
         }
     }
 
+    /** Counts what reaches the socket, passing array writes through in a single call */
+    private static class OutputCounter extends FilterOutputStream {
+        private volatile long bytes = 0;
+        private volatile long writes = 0;
+
+        OutputCounter(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++bytes;
+            ++writes;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            bytes += len;
+            ++writes;
+        }
+    }
+
+    /**
+     * Input of a non-blocking socket channel, read on the session's own thread.
+     * While readKey() or readLine() wait, the thread sleeps in its selector
+     * until input arrives, a message is offered (see wakeUp()), the idle
+     * listener is due or the socket timeout expires: an idle session never
+     * wakes up by itself, and needs no other thread.
+     */
+    private static class ChannelInputStream extends InputStream {
+        private static final int PENDING_SIZE = 2048;
+
+        private CbmInputOutput owner;
+
+        private final SocketChannel channel;
+        private final Selector selector;
+        /* read ahead by available(), in read mode */
+        private final ByteBuffer pending = ByteBuffer.allocate(PENDING_SIZE);
+
+        ChannelInputStream(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            channel.configureBlocking(false);
+            this.selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+            ((Buffer) pending).flip();
+        }
+
+        /** Makes the waiting read check the mailbox, from any thread */
+        void wakeUp() {
+            selector.wakeup();
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            final int n = read(b, 0, 1);
+            return n <= 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            final long started = System.currentTimeMillis();
+            final int timeout = channel.socket().getSoTimeout();
+            for (;;) {
+                final int n = readNow(b, off, len);
+                if (n != 0) return n;
+                if (owner.hasMessages()) {
+                    owner.deliverMessages();
+                    continue;
+                }
+                owner.checkIdle(System.currentTimeMillis() - started);
+                final long waiting = System.currentTimeMillis() - started;
+                if (timeout > 0 && waiting >= timeout) throw new SocketTimeoutException("Read timed out");
+                long wait = owner.idleWait(waiting);
+                if (timeout > 0) wait = wait == 0 ? timeout - waiting : Math.min(wait, timeout - waiting);
+                selector.select(wait);
+                selector.selectedKeys().clear();
+                if (Thread.interrupted()) throw new InterruptedIOException("Interrupted while waiting for input");
+            }
+        }
+
+        private int readNow(byte[] b, int off, int len) throws IOException {
+            if (!pending.hasRemaining()) return channel.read(ByteBuffer.wrap(b, off, len));
+            final int n = Math.min(len, pending.remaining());
+            pending.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (!pending.hasRemaining()) {
+                ((Buffer) pending).clear();
+                final int n = channel.read(pending);
+                ((Buffer) pending).flip();
+                if (n < 0) return 0;
+            }
+            return pending.remaining();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                selector.close();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Output of a non-blocking socket channel: a write waits, in a selector of
+     * its own, as long as a blocking socket would.
+     */
+    private static class ChannelOutputStream extends OutputStream {
+        private final SocketChannel channel;
+        private Selector selector = null;
+
+        ChannelOutputStream(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                if (channel.write(buffer) > 0) continue;
+                if (selector == null) {
+                    selector = Selector.open();
+                    channel.register(selector, SelectionKey.OP_WRITE);
+                }
+                selector.select();
+                selector.selectedKeys().clear();
+                if (Thread.interrupted()) throw new InterruptedIOException("Interrupted while sending output");
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (selector != null) selector.close();
+        }
+    }
+
     static List<String> readTextFile(String filename) throws IOException {
         try (InputStream is = CbmInputOutput.class.getResourceAsStream(filename)) {
             return readFromInputStream(is);
@@ -0,0 +1,114 @@
+package eu.sblendorio.bbs.core;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableCollection;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Objects.requireNonNull;
+import static org.apache.commons.lang3.StringUtils.defaultString;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The connected sessions, by client id, indexed by client name and by the
+ * class of the tenant each session is currently running.
+ *
+ * Reads never lock and iterate over the live indexes (weakly consistent, no
+ * copies); registrations, renames and tenant changes are serialized so that
+ * indexes stay consistent and names stay unique. As a Map it is read-only,
+ * except for put and remove which register and unregister a session.
+ */
+public class ClientRegistry extends AbstractMap<Long, PetsciiThread> {
+
+    private final Map<Long, PetsciiThread> byId = new ConcurrentHashMap<>();
+    private final Map<String, PetsciiThread> byName = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Set<PetsciiThread>> byClass = new ConcurrentHashMap<>();
+
+    private final Map<Long, PetsciiThread> view = unmodifiableMap(byId);
+
+    @Override
+    public synchronized PetsciiThread put(Long clientId, PetsciiThread client) {
+        requireNonNull(clientId);
+        requireNonNull(client);
+        final PetsciiThread previous = remove(clientId);
+        byId.put(clientId, client);
+        if (client.getClientName() != null) byName.putIfAbsent(client.getClientName(), client);
+        addToClass(client, client.getClientClass());
+        return previous;
+    }
+
+    @Override
+    public synchronized PetsciiThread remove(Object clientId) {
+        final PetsciiThread client = byId.remove(clientId);
+        if (client == null) return null;
+        if (client.getClientName() != null) byName.remove(client.getClientName(), client);
+        for (Set<PetsciiThread> clients: byClass.values()) clients.remove(client);
+        return client;
+    }
+
+    /**
+     * Gives the session currently named sourceName the name targetName, unless
+     * another session already uses it.
+     *
+     * @return false if targetName belongs to another session
+     */
+    public synchronized boolean rename(String sourceName, String targetName) {
+        requireNonNull(targetName);
+        final PetsciiThread client = byName.get(defaultString(sourceName));
+        if (client == null) return !byName.containsKey(targetName);
+        final PetsciiThread owner = byName.putIfAbsent(targetName, client);
+        if (owner != null && owner != client) return false;
+        if (!targetName.equals(sourceName)) byName.remove(sourceName, client);
+        client.setClientName(targetName);
+        return true;
+    }
+
+    /** To be called when a registered session starts running another tenant */
+    synchronized void changeClass(PetsciiThread client, Class<?> previous, Class<?> current) {
+        if (byId.get(client.getClientId()) != client) return;
+        removeFromClass(client, previous);
+        addToClass(client, current);
+    }
+
+    private void addToClass(PetsciiThread client, Class<?> clientClass) {
+        if (clientClass != null) byClass.computeIfAbsent(clientClass, k -> ConcurrentHashMap.newKeySet()).add(client);
+    }
+
+    private void removeFromClass(PetsciiThread client, Class<?> clientClass) {
+        if (clientClass == null) return;
+        final Set<PetsciiThread> clients = byClass.get(clientClass);
+        if (clients != null) clients.remove(client);
+    }
+
+    public PetsciiThread getByName(String clientName) {
+        return byName.get(defaultString(clientName));
+    }
+
+    /** @return a live read-only view of the sessions running the given tenant class */
+    public Collection<PetsciiThread> getByClass(Class<?> clientClass) {
+        final Set<PetsciiThread> clients = clientClass == null ? null : byClass.get(clientClass);
+        return clients == null ? emptySet() : unmodifiableCollection(clients);
+    }
+
+    @Override
+    public PetsciiThread get(Object clientId) { return byId.get(clientId); }
+
+    @Override
+    public boolean containsKey(Object clientId) { return byId.containsKey(clientId); }
+
+    @Override
+    public int size() { return byId.size(); }
+
+    @Override
+    public Set<Long> keySet() { return view.keySet(); }
+
+    @Override
+    public Collection<PetsciiThread> values() { return view.values(); }
+
+    @Override
+    public Set<Map.Entry<Long, PetsciiThread>> entrySet() { return view.entrySet(); }
+
+}
@@ -0,0 +1,45 @@
+package eu.sblendorio.bbs.core;
+
+import static eu.sblendorio.bbs.core.Keys.DEL;
+
+/**
+ * Shows how much of a download was received, as a percentage or in KB when
+ * the size is unknown, rewriting it in place at the cursor. The terminal is
+ * written only when the figure changes, at most every STEP_BYTES.
+ */
+public class DownloadProgress implements SharedHttpClient.Progress {
+
+    private static final long STEP_BYTES = 4096;
+
+    private final PetsciiThread session;
+    private String shown = "";
+    private long lastRead = 0;
+
+    public DownloadProgress(PetsciiThread session) {
+        this.session = session;
+    }
+
+    @Override
+    public void update(long read, long total) {
+        if (read - lastRead < STEP_BYTES && read != total) return;
+        lastRead = read;
+        final String text = " " + (total > 0 ? (100 * read / total) + "%" : (read / 1024) + "K");
+        if (text.equals(shown)) return;
+        erase();
+        session.print(text);
+        session.flush();
+        shown = text;
+    }
+
+    /** Removes the figure from the screen */
+    public void clear() {
+        if (shown.isEmpty()) return;
+        erase();
+        session.flush();
+        shown = "";
+    }
+
+    private void erase() {
+        for (int i = 0; i < shown.length(); ++i) session.write(DEL);
+    }
+}
@@ -0,0 +1,15 @@
+package eu.sblendorio.bbs.core;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * A download refused because its body is larger than the configured limit.
+ * Not a CbmIOException: the client is still connected and can be told.
+ */
+public class DownloadTooLargeException extends IOException {
+
+    public DownloadTooLargeException(URL url, long maxBytes) {
+        super("Download from " + url + " is larger than " + (maxBytes / 1024) + "KB");
+    }
+}
@@ -0,0 +1,219 @@
+package eu.sblendorio.bbs.core;
+
+import static java.util.Collections.unmodifiableList;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.rometools.rome.feed.synd.SyndEntry;
+import com.rometools.rome.feed.synd.SyndFeed;
+import com.rometools.rome.io.FeedException;
+import com.rometools.rome.io.SyndFeedInput;
+import com.rometools.rome.io.XmlReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared store of parsed RSS feeds.
+ *
+ * The first request for a feed URL loads it synchronously, after that the URL
+ * is polled in background and readers always get the latest immutable
+ * snapshot without waiting for the network. A snapshot older than the refresh
+ * interval is still served while a new one is being fetched
+ * (stale-while-revalidate). Feeds nobody has read for a while are no longer
+ * polled, until the next read.
+ */
+public class FeedRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeedRegistry.class);
+
+    private static final long DEFAULT_REFRESH_MILLIS = 5 * 60000L;
+    private static final long DEFAULT_IDLE_MILLIS = 60 * 60000L;
+    private static final long POLL_TICK_MILLIS = 30000L;
+
+    private static final FeedRegistry instance =
+            new FeedRegistry(FeedRegistry::fetch, DEFAULT_REFRESH_MILLIS, DEFAULT_IDLE_MILLIS, true);
+
+    public static FeedRegistry getInstance() { return instance; }
+
+    /** An immutable feed item */
+    public static class FeedEntry {
+        private final Date publishedDate;
+        private final String title;
+        private final String description;
+        private final String uri;
+
+        public FeedEntry(Date publishedDate, String title, String description, String uri) {
+            this.publishedDate = publishedDate == null ? null : new Date(publishedDate.getTime());
+            this.title = title; this.description = description; this.uri = uri;
+        }
+
+        public Date getPublishedDate() { return publishedDate == null ? null : new Date(publishedDate.getTime()); }
+        public String getTitle() { return title; }
+        public String getDescription() { return description; }
+        public String getUri() { return uri; }
+    }
+
+    interface Loader {
+        List<FeedEntry> load(String url) throws IOException, FeedException;
+    }
+
+    private class Feed {
+        final String url;
+        volatile List<FeedEntry> snapshot = null;
+        volatile long lastSuccess = 0;
+        volatile long lastRead = 0;
+        volatile long lastDurationMillis = 0;
+        volatile String lastError = null;
+        final AtomicBoolean refreshing = new AtomicBoolean(false);
+        final AtomicLong refreshes = new AtomicLong(0);
+        final AtomicLong failures = new AtomicLong(0);
+        final AtomicLong reads = new AtomicLong(0);
+
+        Feed(String url) {
+            this.url = url;
+        }
+
+        List<FeedEntry> read() throws IOException, FeedException {
+            lastRead = System.currentTimeMillis();
+            reads.incrementAndGet();
+            if (snapshot == null) {
+                synchronized (this) {
+                    if (snapshot == null) refresh();
+                }
+            } else if (isStale(lastRead)) {
+                refreshAsync();
+            }
+            return snapshot;
+        }
+
+        boolean isStale(long now) {
+            return now - lastSuccess >= refreshMillis;
+        }
+
+        boolean isIdle(long now) {
+            return now - lastRead >= idleMillis;
+        }
+
+        void refresh() throws IOException, FeedException {
+            final long start = System.currentTimeMillis();
+            try {
+                final List<FeedEntry> entries = loader.load(url);
+                snapshot = unmodifiableList(new ArrayList<>(entries));
+                lastSuccess = System.currentTimeMillis();
+                lastError = null;
+            } catch (IOException | FeedException | RuntimeException e) {
+                failures.incrementAndGet();
+                lastError = e.toString();
+                throw e;
+            } finally {
+                refreshes.incrementAndGet();
+                lastDurationMillis = System.currentTimeMillis() - start;
+            }
+        }
+
+        void refreshAsync() {
+            if (!refreshing.compareAndSet(false, true)) return;
+            workers.execute(() -> {
+                try {
+                    refresh();
+                } catch (IOException | FeedException | RuntimeException e) {
+                    logger.warn("Refresh of feed {} failed, keeping previous snapshot: {}", url, e.toString());
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+
+        @Override
+        public String toString() {
+            final List<FeedEntry> current = snapshot;
+            return url +
+                    ": entries=" + (current == null ? 0 : current.size()) +
+                    ", age=" + (lastSuccess == 0 ? "-" : ((System.currentTimeMillis() - lastSuccess) / 1000) + "s") +
+                    ", reads=" + reads.get() +
+                    ", refreshes=" + refreshes.get() +
+                    ", failures=" + failures.get() +
+                    ", lastRefresh=" + lastDurationMillis + "ms" +
+                    (lastError == null ? EMPTY : ", lastError=" + lastError);
+        }
+    }
+
+    private final Loader loader;
+    private final long refreshMillis;
+    private final long idleMillis;
+    private final Map<String, Feed> feeds = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+
+    FeedRegistry(Loader loader, long refreshMillis, long idleMillis, boolean poll) {
+        this.loader = loader;
+        this.refreshMillis = refreshMillis;
+        this.idleMillis = idleMillis;
+        this.workers = Executors.newFixedThreadPool(2, daemonThreads("feed-refresh"));
+        if (poll) {
+            ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(daemonThreads("feed-poller"));
+            poller.scheduleWithFixedDelay(this::poll, POLL_TICK_MILLIS, POLL_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the latest snapshot of the feed, loading it on first use
+     */
+    public List<FeedEntry> get(String url) throws IOException, FeedException {
+        return feeds.computeIfAbsent(url, Feed::new).read();
+    }
+
+    void poll() {
+        final long now = System.currentTimeMillis();
+        for (Feed feed: feeds.values()) {
+            if (feed.snapshot != null && feed.isStale(now) && !feed.isIdle(now)) feed.refreshAsync();
+        }
+    }
+
+    public String stats() {
+        final StringBuilder sb = new StringBuilder();
+        for (Feed feed: feeds.values()) sb.append("\n * ").append(feed);
+        return sb.toString();
+    }
+
+    private static List<FeedEntry> fetch(String url) throws IOException, FeedException {
+        final SharedHttpClient.Response response = SharedHttpClient.getInstance().get(new URL(url), null);
+        if (!response.isSuccessful())
+            throw new IOException("HTTP " + response.getStatus() + " " + response.getMessage() + " from " + url);
+        // the charset may be declared only in the Content-Type header
+        final SyndFeed feed = new SyndFeedInput().build(
+                new XmlReader(new ByteArrayInputStream(response.getBody()), response.getContentType()));
+        final List<FeedEntry> result = new ArrayList<>();
+        for (SyndEntry e: feed.getEntries())
+            result.add(new FeedEntry(
+                    e.getPublishedDate(),
+                    e.getTitle(),
+                    e.getDescription() == null ? EMPTY : e.getDescription().getValue(),
+                    e.getUri()));
+        return result;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        final AtomicLong counter = new AtomicLong(0);
+        return r -> {
+            Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+}
@@ -0,0 +1,149 @@
+package eu.sblendorio.bbs.core;
+
+import static java.util.Collections.synchronizedMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.maxmind.db.CHMCache;
+import com.maxmind.db.Reader;
+import com.maxmind.db.Reader.FileMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide GeoIP lookups on a MaxMind GeoLite2 City database.
+ *
+ * The database is memory-mapped once and shared by all the sessions; recent
+ * lookups are kept in a small LRU cache. The file is checked for changes at
+ * most once a minute and reloaded when it is replaced on disk (as
+ * geoipupdate does, by renaming a new file over the old one). The previous
+ * mapping is left to the garbage collector instead of being closed, so that
+ * lookups running during a reload never fail.
+ */
+public class GeoIp {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeoIp.class);
+
+    private static final File DEFAULT_DATABASE = new File(System.getProperty("user.home") + File.separator + "GeoLite2-City.mmdb");
+    private static final int DEFAULT_CACHE_SIZE = 4096;
+    private static final long DEFAULT_CHECK_INTERVAL_MILLIS = 60000;
+
+    private static final GeoIp instance = new GeoIp(DEFAULT_DATABASE, DEFAULT_CACHE_SIZE, DEFAULT_CHECK_INTERVAL_MILLIS);
+
+    public static GeoIp getInstance() { return instance; }
+
+    public static class GeoData {
+        public final String city;
+        public final String cityGeonameId;
+        public final String country;
+        public final Double latitude;
+        public final Double longitude;
+        public final String timeZone;
+        public GeoData(final String city, final String cityGeonameId, final String country, final Double latitude, final Double longitude, final String timeZone) {
+            this.city = city;
+            this.cityGeonameId = cityGeonameId;
+            this.country = country;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.timeZone = timeZone;
+        }
+    }
+
+    /* Cached result of an address not in the database */
+    private static final GeoData NOT_FOUND = new GeoData(null, null, null, null, null, null);
+
+    private final File database;
+    private final long checkIntervalMillis;
+    private final Map<InetAddress, GeoData> cache;
+
+    private volatile Reader reader = null;
+    private volatile long loadedVersion = 0;
+    private volatile long lastCheck = 0;
+
+    private final AtomicLong lookups = new AtomicLong(0);
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong reloads = new AtomicLong(0);
+
+    GeoIp(File database, int cacheSize, long checkIntervalMillis) {
+        this.database = database;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.cache = synchronizedMap(new LinkedHashMap<InetAddress, GeoData>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InetAddress, GeoData> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * @return the location of the address, or null if there is no database
+     * or the address is not in it
+     */
+    public GeoData lookup(InetAddress address) throws IOException {
+        lookups.incrementAndGet();
+        final Reader current = currentReader();
+        if (current == null || address == null) return null;
+        GeoData result = cache.get(address);
+        if (result != null) {
+            hits.incrementAndGet();
+        } else {
+            result = toGeoData(current.get(address));
+            cache.put(address, result);
+        }
+        return result == NOT_FOUND ? null : result;
+    }
+
+    private Reader currentReader() throws IOException {
+        final long now = System.currentTimeMillis();
+        if (now - lastCheck >= checkIntervalMillis) {
+            synchronized (this) {
+                if (now - lastCheck >= checkIntervalMillis) {
+                    lastCheck = now;
+                    reloadIfChanged();
+                }
+            }
+        }
+        return reader;
+    }
+
+    private void reloadIfChanged() throws IOException {
+        final long version = database.lastModified() ^ database.length();
+        if (!database.isFile()) {
+            reader = null;
+            loadedVersion = 0;
+        } else if (reader == null || version != loadedVersion) {
+            reader = new Reader(database, FileMode.MEMORY_MAPPED, new CHMCache());
+            loadedVersion = version;
+            cache.clear();
+            reloads.incrementAndGet();
+            logger.info("GeoIP database {} loaded, built {}", database, reader.getMetadata().getBuildDate());
+        }
+    }
+
+    private static GeoData toGeoData(JsonNode response) {
+        if (response == null) return NOT_FOUND;
+        final JsonNode location = response.path("location");
+        return new GeoData(
+                response.path("city").path("names").path("en").asText(null),
+                response.path("city").path("geoname_id").asText(null),
+                response.path("country").path("names").path("en").asText(null),
+                location.has("latitude") ? location.get("latitude").asDouble() : null,
+                location.has("longitude") ? location.get("longitude").asDouble() : null,
+                location.path("time_zone").asText(null));
+    }
+
+    public String stats() {
+        return "lookups=" + lookups.get() +
+                ", hits=" + hits.get() +
+                ", cached=" + cache.size() +
+                ", reloads=" + reloads.get() +
+                ", loaded=" + (reader != null);
+    }
+
+}
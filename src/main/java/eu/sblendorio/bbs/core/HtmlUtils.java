@@ -1,14 +1,47 @@
 package eu.sblendorio.bbs.core;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static java.util.Comparator.comparing;
+import static org.apache.commons.lang3.StringUtils.containsIgnoreCase;
 import static org.apache.commons.lang3.StringUtils.defaultString;
 
 public class HtmlUtils {
 
     private static Pattern p = Pattern.compile("(?is)<pre[^>]*>(([^\n]+)\n?|\n)(.*?)</pre[^>]*>");
+    private static final Pattern PRE_OPEN = Pattern.compile("(?i)<pre");
+    private static final Pattern PRE_CLOSE = Pattern.compile("(?i)</pre");
+
     private static String replacePreTags(String s) {
+        Matcher m = p.matcher(s);
+        if (!m.find()) return s;
+
+        // Peeling one line per iteration ends up with every line of the block prefixed by <br>
+        // and a final <br>: do it in a single pass, unless blocks are nested, or the last line
+        // is not terminated and a later </pre> could be swallowed by the last peel.
+        StringBuilder sb = new StringBuilder(s.length() + 64);
+        int last = 0;
+        do {
+            final String content = s.substring(m.start(1), m.end(3));
+            if (PRE_OPEN.matcher(content).find()
+                    || (!content.endsWith("\n") && PRE_CLOSE.matcher(s).region(m.end(), s.length()).find()))
+                return replacePreTagsByIteration(s);
+            sb.append(s, last, m.start()).append("<br>").append(content.replace("\n", "\n<br>"));
+            if (!content.endsWith("\n")) sb.append("<br>");
+            last = m.end();
+        } while (m.find());
+        sb.append(s, last, s.length());
+        final String result = sb.toString();
+        if (p.matcher(result).find()) return replacePreTagsByIteration(s);
+        return result.replace("<pre></pre>", "<br>");
+    }
+
+    private static String replacePreTagsByIteration(String s) {
         Matcher m = p.matcher(s);
         while (m.find()) {
             s = m.replaceAll("<br>$1<pre>$3</pre>").replace("<pre></pre>", "<br>");
@@ -17,48 +50,158 @@ public class HtmlUtils {
         return s;
     }
 
+    private static final Pattern SCRIPT = Pattern.compile("<script(\\s|>).*?</script\\s*>");
+    private static final Pattern SCRIPT_ANY_CASE = Pattern.compile("(?is)<script(\\s|>).*?</script\\s*>");
+    private static final Pattern STYLE = Pattern.compile("(?is)<style(\\s|>).*?</style\\s*>");
+    private static final Pattern AMP_USER_NOTIFICATION = Pattern.compile("(?is)<amp-user-notification(\\s|>).*?</amp-user-notification\\s*>");
+    private static final Pattern SCRIPT_OPEN = Pattern.compile("<script.*?>");
+
+    private static final Pattern TAG = Pattern.compile("<[^>]*>");
+    private static final Pattern BR = Pattern.compile("<br( [^>]*)?>");
+    private static final Pattern P = Pattern.compile("<p( [^>]*)?>");
+    private static final Pattern DIV = Pattern.compile("<div( [^>]*)?>");
+    private static final Pattern LI = Pattern.compile("<li( [^>]*)?>");
+    private static final Pattern H_OPEN = Pattern.compile("<h[1-6]( [^>]*)?>");
+    private static final Pattern H_CLOSE = Pattern.compile("</h[1-6]( [^>]*)?>");
+
+    private static final Pattern MULTIPLE_NEWLINES = Pattern.compile("\n(\\s*\n)+");
+    private static final Pattern LEADING_SPACES = Pattern.compile("^(\n|\r|\\s)*");
+
+    /* Single characters translated by the entity pass */
+    private static final Map<Character, String> CHARACTERS = new HashMap<>();
+    /* Entities translated by the entity pass, longest first so that e.g. "&nbsp;" wins over "&nbsp" */
+    private static final List<String> ENTITY_NAMES = new ArrayList<>();
+    private static final Map<String, String> ENTITIES = new HashMap<>();
+    static {
+        entities("a'", "à", "á", "&agrave", "&agrave;", "&aacute", "&aacute;", "&#xE0;", "&#xE1;");
+        entities("A'", "À", "Á", "&Agrave", "&Agrave;", "&Aacute", "&Aacute;", "&#xC0;", "&#xC1;");
+        entities("e'", "è", "é", "&egrave", "&egrave;", "&eacute", "&eacute;", "&#xE8;", "&#xE9;");
+        entities("E'", "È", "É", "&Egrave", "&Egrave;", "&Eacute", "&Eacute;", "&#xC8;", "&#xC9;");
+        entities("i'", "ì", "í", "&igrave", "&igrave;", "&iacute", "&iacute;", "&#xEC;", "&#xED;");
+        entities("I'", "Ì", "Í", "&Igrave", "&Igrave;", "&Iacute", "&Iacute;", "&#xCC;", "&#xCD;");
+        entities("o'", "ò", "ó", "&ograve", "&ograve;", "&oacute", "&oacute;", "&#xF2;", "&#xF3;");
+        entities("O'", "Ò", "Ó", "&Ograve", "&Ograve;", "&Oacute", "&Oacute;", "&#xD2;", "&#xD3;");
+        entities("u'", "ù", "ú", "&ugrave", "&ugrave;", "&uacute", "&uacute;", "&#xF9;", "&#xFA;");
+        entities("U'", "Ù", "Ú", "&Ugrave", "&Ugrave;", "&Uacute", "&Uacute;", "&#xD9;", "&#xDA;");
+        entities(" ", "&#xA0;", "&nbsp", "&nbsp;");
+        entities("'", "’", "‘", "°", "&apos;", "&rsquo;", "&rsquor;", "&lsquo;", "&lsquor;", "&sbquo;",
+                "&#x2019;", "&#8216;", "&#8217;", "&#039;", "&#39;", "\u0300", "\u0301");
+        entities("\"", "“", "”", "&quot;", "«", "»", "&#8220;", "&#8221;", "&laquo;", "&raquo;",
+                "&#xAB;", "&#xBB;", "&#x201C;", "&#x201D;");
+        entities("&", "&amp", "&amp;");
+        ENTITY_NAMES.addAll(ENTITIES.keySet());
+        ENTITY_NAMES.sort(comparing(String::length).reversed());
+    }
+
+    private static void entities(String replacement, String... sources) {
+        for (String source: sources) {
+            if (source.length() == 1) CHARACTERS.put(source.charAt(0), replacement);
+            else ENTITIES.put(source, replacement);
+        }
+    }
+
+    /* Same as replaceAll("<[^>]*>", ...) with a replacement depending on the kind of tag */
+    private static String replaceTags(String s) {
+        int start = s.indexOf('<');
+        int end = start == -1 ? -1 : s.indexOf('>', start);
+        if (end == -1) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        int last = 0;
+        do {
+            final String tag = s.substring(start, end + 1);
+            if (tag.indexOf('<', 1) != -1) return replaceTagsByPattern(s);
+            sb.append(s, last, start).append(tagReplacement(tag));
+            last = end + 1;
+            start = s.indexOf('<', last);
+            end = start == -1 ? -1 : s.indexOf('>', start);
+        } while (end != -1);
+        return sb.append(s, last, s.length()).toString();
+    }
+
+    private static String tagReplacement(String tag) {
+        if (tag.length() < 3) return "";
+        final char first = tag.charAt(1);
+        if (first == 'b' && BR.matcher(tag).matches()) return "\n";
+        if (first == 'p' && P.matcher(tag).matches()) return "\n";
+        if (first == 'd' && DIV.matcher(tag).matches()) return "\n";
+        if (first == 'l' && LI.matcher(tag).matches()) return "\n* ";
+        if (first == 'h' && H_OPEN.matcher(tag).matches()) return "\n\n";
+        if (first == '/' && H_CLOSE.matcher(tag).matches()) return "\n";
+        return "";
+    }
+
+    /* Tags containing '<' are cleaned the classic way: each kind of tag in its own pass */
+    private static String replaceTagsByPattern(String s) {
+        s = BR.matcher(s).replaceAll("\n");
+        s = P.matcher(s).replaceAll("\n");
+        s = DIV.matcher(s).replaceAll("\n");
+        s = LI.matcher(s).replaceAll("\n* ");
+        s = H_OPEN.matcher(s).replaceAll("\n\n");
+        s = H_CLOSE.matcher(s).replaceAll("\n");
+        return TAG.matcher(s).replaceAll("");
+    }
+
+    /* Accented letters, quotes, spaces and &amp; in a single pass: none of them can overlap */
+    private static String replaceEntities(String s) {
+        StringBuilder sb = null;
+        int last = 0;
+        for (int i = 0; i < s.length(); ++i) {
+            final char c = s.charAt(i);
+            String replacement = null;
+            int length = 1;
+            if (c == '&') {
+                for (String name: ENTITY_NAMES) {
+                    if (s.startsWith(name, i)) {
+                        replacement = ENTITIES.get(name);
+                        length = name.length();
+                        break;
+                    }
+                }
+            } else if (c > 127) {
+                replacement = CHARACTERS.get(c);
+            }
+            if (replacement == null) continue;
+            if (sb == null) sb = new StringBuilder(s.length());
+            sb.append(s, last, i).append(replacement);
+            last = i + length;
+            i = last - 1;
+        }
+        return sb == null ? s : sb.append(s, last, s.length()).toString();
+    }
+
+    private static String replaceAll(Pattern pattern, String s, String replacement) {
+        return pattern.matcher(s).replaceAll(replacement);
+    }
+
     public static String htmlClean(String s) {
-        return replacePreTags(defaultString(s))
+        String result = defaultString(s);
+        if (containsIgnoreCase(result, "<pre")) result = replacePreTags(result);
+        result = result
                 .replace("\r", "")
                 .replace("©","(C)")
                 .replace("\n", " ")
-                .replace("&#215;", "x")
-                .replaceAll("<script(\\s|>).*?</script\\s*>", "")
-                .replace((char) 160, ' ')
-                .replaceAll("(?is)<script(\\s|>).*?</script\\s*>", "")
-                .replaceAll("(?is)<style(\\s|>).*?</style\\s*>", "")
-                .replaceAll("(?is)<amp-user-notification(\\s|>).*?</amp-user-notification\\s*>", "")
-                .replaceAll("<script.*?>", "")
-                .replaceAll("…|&#8230;|&hellip;", "...")
-                .replaceAll("–|&#8211;|&#8212;|&mdash;", "-")
-                .replaceAll("<br( [^>]*)?>", "\n")
-                .replaceAll("<p( [^>]*)?>", "\n")
-                .replaceAll("<div( [^>]*)?>", "\n")
-                .replaceAll("<li( [^>]*)?>", "\n* ")
-                .replaceAll("<h[1-6]( [^>]*)?>", "\n\n")
-                .replaceAll("</h[1-6]( [^>]*)?>", "\n")
-                .replaceAll("<[^>]*>", "")
-                .replaceAll("[àá]|&agrave;?|&aacute;?|&#xE0;|&#xE1;", "a'")
-                .replaceAll("[ÀÁ]|&Agrave;?|&Aacute;?|&#xC0;|&#xC1;", "A'")
-                .replaceAll("[èé]|&egrave;?|&eacute;?|&#xE8;|&#xE9;", "e'")
-                .replaceAll("[ÈÉ]|&Egrave;?|&Eacute;?|&#xC8;|&#xC9;", "E'")
-                .replaceAll("[ìí]|&igrave;?|&iacute;?|&#xEC;|&#xED;", "i'")
-                .replaceAll("[ÌÍ]|&Igrave;?|&Iacute;?|&#xCC;|&#xCD;", "I'")
-                .replaceAll("[òó]|&ograve;?|&oacute;?|&#xF2;|&#xF3;", "o'")
-                .replaceAll("[ÒÓ]|&Ograve;?|&Oacute;?|&#xD2;|&#xD3;", "O'")
-                .replaceAll("[ùú]|&ugrave;?|&uacute;?|&#xF9;|&#xFA;", "u'")
-                .replaceAll("[ÙÚ]|&Ugrave;?|&Uacute;?|&#xD9;|&#xDA;", "U'")
-                .replaceAll("&#xA0;|&nbsp;?", " ")
-                .replaceAll("’|‘|°|&apos;|&rsquo;|&rsquor;|&lsquo;|&lsquor;|&sbquo;|&#x2019;|&#8216;|&#8217;|&#039;|&#39;|\u0300|\u0301", "'")
-                .replaceAll("“|”|&quot;|«|»|&#8220;|&#8221;|&laquo;|&raquo;|&#xAB;|&#xBB;|&#x201C;|&#x201D;", "\"")
-                .replaceAll("&amp;?", "&")
+                .replace("&#215;", "x");
+        if (result.contains("<script")) result = replaceAll(SCRIPT, result, "");
+        result = result.replace((char) 160, ' ');
+        if (containsIgnoreCase(result, "<script")) result = replaceAll(SCRIPT_ANY_CASE, result, "");
+        if (containsIgnoreCase(result, "<style")) result = replaceAll(STYLE, result, "");
+        if (containsIgnoreCase(result, "<amp-user-notification")) result = replaceAll(AMP_USER_NOTIFICATION, result, "");
+        if (result.contains("<script")) result = replaceAll(SCRIPT_OPEN, result, "");
+        result = result
+                .replace("…", "...")
+                .replace("&#8230;", "...")
+                .replace("&hellip;", "...")
+                .replace("–", "-")
+                .replace("&#8211;", "-")
+                .replace("&#8212;", "-")
+                .replace("&mdash;", "-");
+        result = replaceEntities(replaceTags(result))
                 .replace("&gt;", ">")
                 .replace("&lt;", "<")
                 .replace("&#038;", "&")
-                .replace("&#38;", "&")
-                .replaceAll("\n(\\s*\n)+", "\n\n")
-                .replaceAll("^(\n|\r|\\s)*", "")
-                ;
+                .replace("&#38;", "&");
+        result = replaceAll(MULTIPLE_NEWLINES, result, "\n\n");
+        return LEADING_SPACES.matcher(result).replaceFirst("");
     }
 
     private HtmlUtils() {
@@ -0,0 +1,141 @@
+package eu.sblendorio.bbs.core;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded inbox of a session.
+ *
+ * Any thread can post a message with {@link #offer}, which never blocks and
+ * never touches the receiver's socket. The message is queued and the
+ * receiving session is woken up; {@link #drain}, called by the session's own
+ * thread while it waits for input, hands the messages to the receiver.
+ * When the inbox is full the oldest message is dropped.
+ */
+public class Mailbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(Mailbox.class);
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /* Totals across all the sessions, for the server stats */
+    private static final AtomicLong totalOffered = new AtomicLong(0);
+    private static final AtomicLong totalDelivered = new AtomicLong(0);
+    private static final AtomicLong totalDropped = new AtomicLong(0);
+    private static final AtomicLong totalQueued = new AtomicLong(0);
+    private static final AtomicInteger totalPeakDepth = new AtomicInteger(0);
+
+    public interface Receiver {
+        void receive(long senderId, Object message);
+    }
+
+    private static class Envelope {
+        final long senderId;
+        final Object message;
+
+        Envelope(long senderId, Object message) {
+            this.senderId = senderId;
+            this.message = message;
+        }
+    }
+
+    private final int capacity;
+    private final Receiver receiver;
+    private final Runnable afterDelivery;
+
+    private final ConcurrentLinkedQueue<Envelope> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger(0);
+    private final AtomicInteger peakDepth = new AtomicInteger(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private boolean draining = false;
+    private volatile Runnable wakeUp = null;
+
+    /**
+     * @param receiver called for every message, on the thread calling drain()
+     * @param afterDelivery called once after a drain() which delivered at least one message
+     */
+    public Mailbox(int capacity, Receiver receiver, Runnable afterDelivery) {
+        if (capacity <= 0) throw new IllegalArgumentException("Mailbox capacity <= 0");
+        this.capacity = capacity;
+        this.receiver = receiver;
+        this.afterDelivery = afterDelivery;
+    }
+
+    /** Sets what to call after a message is queued, e.g. to wake up the session waiting for input */
+    public void setWakeUp(Runnable wakeUp) {
+        this.wakeUp = wakeUp;
+    }
+
+    /** Queues a message, dropping the oldest one if the mailbox is full. Never blocks. */
+    public void offer(long senderId, Object message) {
+        queue.offer(new Envelope(senderId, message));
+        totalOffered.incrementAndGet();
+        totalQueued.incrementAndGet();
+        int current = depth.incrementAndGet();
+        while (current > capacity && queue.poll() != null) {
+            current = depth.decrementAndGet();
+            totalQueued.decrementAndGet();
+            dropped.incrementAndGet();
+            totalDropped.incrementAndGet();
+        }
+        updatePeak(peakDepth, current);
+        updatePeak(totalPeakDepth, current);
+        final Runnable listener = wakeUp;
+        if (listener != null) listener.run();
+    }
+
+    /**
+     * Delivers the queued messages to the receiver. Must be called by the
+     * session's own thread; nested calls (a receiver waiting for input) do nothing.
+     *
+     * @return the number of messages delivered
+     */
+    public int drain() {
+        if (draining || queue.isEmpty()) return 0;
+        draining = true;
+        int count = 0;
+        try {
+            Envelope envelope;
+            while (count < capacity && (envelope = queue.poll()) != null) {
+                depth.decrementAndGet();
+                totalQueued.decrementAndGet();
+                totalDelivered.incrementAndGet();
+                ++count;
+                try {
+                    receiver.receive(envelope.senderId, envelope.message);
+                } catch (RuntimeException e) {
+                    logger.warn("Message from #{} not delivered: {}", envelope.senderId, e.toString());
+                }
+            }
+            if (count > 0) afterDelivery.run();
+        } finally {
+            draining = false;
+        }
+        return count;
+    }
+
+    public boolean isEmpty() { return queue.isEmpty(); }
+    public int getDepth() { return depth.get(); }
+    public int getPeakDepth() { return peakDepth.get(); }
+    public long getDropped() { return dropped.get(); }
+
+    private static void updatePeak(AtomicInteger peak, int value) {
+        int current;
+        while (value > (current = peak.get()) && !peak.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    public static String stats() {
+        return "offered=" + totalOffered.get() +
+                ", delivered=" + totalDelivered.get() +
+                ", dropped=" + totalDropped.get() +
+                ", queued=" + totalQueued.get() +
+                ", peakDepth=" + totalPeakDepth.get();
+    }
+
+}
@@ -4,20 +4,16 @@ import static eu.sblendorio.bbs.core.Keys.DOWN;
 import static eu.sblendorio.bbs.core.Keys.HOME;
 import static eu.sblendorio.bbs.core.Keys.RIGHT;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
 import static org.apache.commons.lang3.StringUtils.defaultString;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
-import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.apache.commons.lang3.StringUtils.substring;
 import static org.apache.commons.lang3.StringUtils.trim;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
@@ -25,13 +21,10 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.sql.Timestamp;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.io.IOUtils;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import org.slf4j.Logger;
@@ -64,10 +57,12 @@ public abstract class PetsciiThread extends Thread {
     protected PetsciiThread child = null;
     protected PetsciiThread parent = null;
 
-    protected static Map<Long, PetsciiThread> clients = defaultClientsMapImplementation();
+    protected final Mailbox mailbox = new Mailbox(Mailbox.DEFAULT_CAPACITY, this::receive, this::receiveCompleted);
 
-    static ConcurrentHashMap<Long, PetsciiThread> defaultClientsMapImplementation() {
-        return new ConcurrentHashMap<>();
+    protected static ClientRegistry clients = defaultClientsMapImplementation();
+
+    static ClientRegistry defaultClientsMapImplementation() {
+        return new ClientRegistry();
     }
 
     protected static AtomicLong clientCount = new AtomicLong(0);
@@ -81,42 +76,40 @@ public abstract class PetsciiThread extends Thread {
             child.receive(senderId, message);
     }
 
+    /** Called after receive() has been called for a batch of messages, e.g. to redraw the screen once */
+    public void receiveCompleted() {
+        if (child != null) child.receiveCompleted();
+    }
+
+    /**
+     * Posts a message to the receiver's mailbox and returns immediately: the
+     * receiver gets it through receive(), on its own thread, while waiting for input.
+     */
     public int send(long receiverId, Object message) {
         PetsciiThread receiver = getClients().get(receiverId);
         if (receiver == null) return 1;
-        receiver.receive(getClientId(), message);
+        receiver.mailbox.offer(getClientId(), message);
         return 0;
     }
 
-    private void setClientName(final String clientName) {
+    void setClientName(final String clientName) {
         this.clientName = clientName;
     }
 
     public int changeClientName(String clientName) {
         clientName = trim(clientName);
         if (isBlank(clientName) || clientName.matches("(?i)^client[0-9]+$")) return -1;
-        for (Map.Entry<Long, PetsciiThread> entry: clients.entrySet()) {
-            if (entry.getKey() != getClientId() && isNotBlank(entry.getValue().getClientName()) && entry.getValue().getClientName().equals(clientName)) {
-                return -2;
-            }
-        }
-
-        changeClientName(this.clientName, clientName);
+        if (!clients.rename(this.clientName, clientName)) return -2;
         setClientName(clientName);
         return 0;
     }
 
     static void changeClientName(final String sourceClientName, final String targetClientName) {
-        getClientByName(sourceClientName).ifPresent(client -> client.setClientName(targetClientName));
+        clients.rename(sourceClientName, targetClientName);
     }
 
     static Optional<PetsciiThread> getClientByName(final String clientName) {
-        for (Map.Entry<Long, PetsciiThread> entry: clients.entrySet()) {
-            if (defaultString(clientName).equals(entry.getValue().getClientName())) {
-                return Optional.of(entry.getValue());
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(clients.getByName(clientName));
     }
 
     public String getClientName() { return clientName; }
@@ -142,24 +135,35 @@ public abstract class PetsciiThread extends Thread {
     public long getClientId() { return clientId; }
     
     public Long getClientIdByName(String name) {
-        return clients.entrySet().stream()
-                .filter(x -> x.getValue().getClientName().equals(name))
-                .findAny()
-                .map(thread -> thread.getKey())
-                .orElse(null);
+        final PetsciiThread client = clients.getByName(name);
+        return client == null ? null : client.getClientId();
     }
 
     public Class getClientClass() { return clientClass; }
 
+    private void setClientClass(Class clientClass) {
+        final Class previous = this.clientClass;
+        this.clientClass = clientClass;
+        clients.changeClass(this, previous, clientClass);
+    }
+
+    /** @return the other sessions currently running the same tenant as this one */
+    public List<PetsciiThread> getClientsOfSameClass() {
+        return clients.getByClass(getClientClass()).stream()
+                .filter(client -> client.getClientId() != getClientId())
+                .collect(toList());
+    }
+
     @Override
     public void run() {
         try {
             setClientId(clientCount.incrementAndGet());
             clientClass = getClass();
-            log("New connection at " + socket);
+            log("New connection at " + socket + locationOf(socket));
             Thread.sleep(200);
             cbm.resetInput();
             setClientName("client"+getClientId());
+            cbm.setMailbox(mailbox);
             clients.put(getClientId(), this);
             doLoop();
         } catch (CbmIOException e) {
@@ -185,12 +189,22 @@ public abstract class PetsciiThread extends Thread {
             logger.error("ERROR handling", e);
         } finally {
             try {
+                cbm.close();
                 socket.close();
             } catch (IOException e) {
                 log("Couldn't close a socket, what's going on?");
             }
             clients.remove(getClientId());
-            log("STOP. Connection CLOSED.");
+            log("STOP. Connection CLOSED. Output: " + cbm.getBytesWritten() + " bytes in " + cbm.getWriteCount() + " writes.");
+        }
+    }
+
+    private static String locationOf(Socket socket) {
+        try {
+            final GeoIp.GeoData geoData = GeoIp.getInstance().lookup(socket.getInetAddress());
+            return geoData == null ? EMPTY : " from " + geoData.city + ", " + geoData.country;
+        } catch (IOException | RuntimeException e) {
+            return EMPTY;
         }
     }
 
@@ -198,21 +212,22 @@ public abstract class PetsciiThread extends Thread {
         try {
             bbs.contextFrom(this);
             child = bbs;
-            clientClass = bbs.clientClass = bbs.getClass();
+            bbs.clientClass = bbs.getClass();
+            setClientClass(bbs.getClass());
             bbs.doLoop();
             return true;
         } catch (SocketException | SocketTimeoutException | CbmIOException e) {
             throw e;
         } catch (Exception e) {
             child = null;
-            clientClass = getClass();
+            setClientClass(getClass());
             if (e instanceof RuntimeException && e.getCause() != null) throw e;
             log(e.getClass().getSimpleName() + " during launching of " + bbs.getClass().getSimpleName()+" within " + this.getClass().getSimpleName()+". Launch interrupted. Stack trace:");
             logger.error("Launch interrupted", e);
             return false;
         } finally {
             child = null;
-            clientClass = getClass();
+            setClientClass(getClass());
         }
     }
 
@@ -242,6 +257,7 @@ public abstract class PetsciiThread extends Thread {
     public String readLine(int maxLength) throws IOException { return cbm.readLine(maxLength); }
     public String readPassword() throws IOException { return cbm.readPassword(); }
     public int readKey() throws IOException { return cbm.readKey(); }
+    public int readKey(long idleMillis, Runnable onIdle) throws IOException { return cbm.readKey(idleMillis, onIdle); }
     public void resetInput() throws IOException { cbm.resetInput(); }
     public void writeRawFile(String filename) throws IOException { cbm.writeRawFile(filename); }
     public byte[] readBinaryFile(String filename) throws IOException { return cbm.readBinaryFile(filename); }
@@ -271,31 +287,19 @@ public abstract class PetsciiThread extends Thread {
     }
 
     public static String httpGet(String url, String userAgent) throws IOException {
-        final URL object=new URL(url);
-        HttpURLConnection conn = (HttpURLConnection) object.openConnection();
-        conn.setRequestProperty("User-Agent", defaultString(userAgent));
-        conn.setDoOutput(true);
-        conn.setDoInput(true);
-        conn.setRequestMethod("GET");
-
-        final StringBuilder sb;
-        int responseCode = conn.getResponseCode();
-        if (responseCode >= 301 && responseCode <= 399) {
-            final String newLocation = conn.getHeaderField("Location");
-            return httpGet(newLocation, userAgent);
-        } else if (responseCode >= 200 && responseCode <= 299) {
-            sb = new StringBuilder();
-            BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), UTF_8));
-            String line;
-            while ((line = br.readLine()) != null) sb.append(line + "\n");
-            br.close();
-            conn.disconnect();
-            return sb.toString();
-        } else {
-            logger.info(conn.getResponseMessage());
+        final SharedHttpClient.Response response = SharedHttpClient.getInstance().get(new URL(url), userAgent);
+        if (!response.isSuccessful()) {
+            logger.info(response.getMessage());
+            return null;
         }
-        conn.disconnect();
-        return null;
+        return normalizeLines(new String(response.getBody(), UTF_8));
+    }
+
+    /** Every line terminated by "\n", as if read line by line by a BufferedReader */
+    static String normalizeLines(String s) {
+        if (s.isEmpty()) return s;
+        final String result = s.replace("\r\n", "\n").replace('\r', '\n');
+        return result.endsWith("\n") ? result : result + "\n";
     }
 
     public static byte[] downloadFile(URL url) throws IOException {
@@ -311,56 +315,61 @@ public abstract class PetsciiThread extends Thread {
     }
 
     public static DownloadData download(URL url, String userAgent) throws IOException {
+        return download(url, userAgent, null);
+    }
+
+    /**
+     * @throws DownloadTooLargeException if the file is larger than SharedHttpClient's limit
+     */
+    public static DownloadData download(URL url, String userAgent, SharedHttpClient.Progress progress) throws IOException {
+        return download(url, userAgent, progress, true);
+    }
+
+    /**
+     * @param useCache false not to keep the file in SharedHttpClient's cache, for callers caching it by themselves
+     * @throws DownloadTooLargeException if the file is larger than SharedHttpClient's limit
+     */
+    public static DownloadData download(URL url, String userAgent, SharedHttpClient.Progress progress, boolean useCache) throws IOException {
         if ("ftp".equalsIgnoreCase(url.getProtocol()))
-            return ftpDownload(url);
+            return ftpDownload(url, progress);
+        final SharedHttpClient.Response response;
         try {
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestProperty("User-Agent", defaultString(userAgent));
-            conn.setConnectTimeout(30000);
-            conn.setReadTimeout(30000);
-
-            int responseCode = conn.getResponseCode();
-            final String contentDisposition = defaultString(conn.getHeaderField("Content-Disposition"));
-            final String contentPart = contentDisposition.replaceAll("(?is)^.*?;\\s*?filename=['\"](.*?)['\"].*$", "$1");
-            final String filename = isEmpty(contentPart) ? url.toString().replaceAll("(?is)^.*/([^\\?&#]+).*$","$1") : contentPart;
-            if (responseCode >= 301 && responseCode <= 399) {
-                final String newLocation = conn.getHeaderField("Location");
-                return download(new URL(newLocation), userAgent);
-            } else if (responseCode >= 200 && responseCode <= 299) {
-                conn.connect();
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                IOUtils.copy(conn.getInputStream(), baos);
-                return new DownloadData(filename, baos.toByteArray());
-            } else {
-                throw new CbmIOException("Error during download from "+url);
-            }
-        }
-        catch (IOException e) {
+            response = useCache
+                    ? SharedHttpClient.getInstance().get(url, userAgent, progress)
+                    : SharedHttpClient.getInstance().getUncached(url, userAgent, progress);
+        } catch (CbmIOException | DownloadTooLargeException e) {
+            throw e;
+        } catch (IOException e) {
             throw new CbmIOException("Timeout during download from "+url);
         }
+        if (!response.isSuccessful())
+            throw new CbmIOException("Error during download from "+url);
+
+        final String contentDisposition = defaultString(response.getContentDisposition());
+        final String contentPart = contentDisposition.replaceAll("(?is)^.*?;\\s*?filename=['\"](.*?)['\"].*$", "$1");
+        final String filename = isEmpty(contentPart) ? response.getUrl().toString().replaceAll("(?is)^.*/([^\\?&#]+).*$","$1") : contentPart;
+        return new DownloadData(filename, useCache ? response.getBody().clone() : response.getBody());
     }
 
     public static DownloadData ftpDownload(URL url) throws IOException {
-        URLConnection conn = url.openConnection();
-        InputStream inputStream = conn.getInputStream();
+        return ftpDownload(url, null);
+    }
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        byte[] buffer = new byte[16384];
-        int bytesRead = -1;
-        while ((bytesRead = inputStream.read(buffer)) != -1) {
-            outputStream.write(buffer, 0, bytesRead);
+    public static DownloadData ftpDownload(URL url, SharedHttpClient.Progress progress) throws IOException {
+        URLConnection conn = url.openConnection();
+        final byte[] content;
+        try (InputStream inputStream = conn.getInputStream()) {
+            content = SharedHttpClient.readBody(inputStream, conn.getContentLengthLong(),
+                    SharedHttpClient.getInstance().getMaxBodyBytes(), progress, url);
         }
 
-        outputStream.close();
-        inputStream.close();
-
         return new DownloadData(
                 url.toString().replaceAll("(?is)^.*/([^\\?&#]+).*$","$1"),
-                outputStream.toByteArray()
+                content
         );
     }
 
-    public static Map<Long, PetsciiThread> getClients() {
+    public static ClientRegistry getClients() {
         return clients;
     }
 
@@ -0,0 +1,129 @@
+package eu.sblendorio.bbs.core;
+
+import static java.util.Collections.unmodifiableList;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide cache of pages already cleaned and wrapped for the screen, so
+ * that a popular article is rendered once and then just printed.
+ *
+ * Entries are immutable row lists kept in an LRU map bounded by the total
+ * size of their characters. The key must identify everything the rows depend
+ * on (site, article, revision, screen width...): entries are never expired,
+ * a new revision simply gets a new key and the old one is evicted when space
+ * is needed.
+ */
+public class RenderedPageCache {
+
+    private static final long DEFAULT_MAX_CACHE_BYTES = 16L * 1024 * 1024;
+    private static final long DEFAULT_MAX_ENTRY_BYTES = 512L * 1024;
+    private static final int ROW_OVERHEAD_BYTES = 48;
+
+    private static final RenderedPageCache instance =
+            new RenderedPageCache(DEFAULT_MAX_CACHE_BYTES, DEFAULT_MAX_ENTRY_BYTES);
+
+    public static RenderedPageCache getInstance() { return instance; }
+
+    private static class Page {
+        final List<String> rows;
+        final long bytes;
+
+        Page(List<String> rows, long bytes) {
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+    }
+
+    private final long maxCacheBytes;
+    private final long maxEntryBytes;
+
+    private final LinkedHashMap<String, Page> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cacheBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    RenderedPageCache(long maxCacheBytes, long maxEntryBytes) {
+        this.maxCacheBytes = maxCacheBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    /**
+     * @return the rows cached under key, rendering and caching them on a miss.
+     * The returned list is unmodifiable. Two sessions missing the same key at
+     * the same time both render it: the result is the same either way.
+     */
+    public List<String> get(String key, Supplier<List<String>> renderer) {
+        synchronized (cache) {
+            final Page page = cache.get(key);
+            if (page != null) {
+                hits.incrementAndGet();
+                return page.rows;
+            }
+        }
+        misses.incrementAndGet();
+        final List<String> rows = unmodifiableList(new ArrayList<>(renderer.get()));
+        final long bytes = sizeOf(rows);
+        if (bytes <= maxEntryBytes) store(key, new Page(rows, bytes));
+        return rows;
+    }
+
+    private void store(String key, Page page) {
+        synchronized (cache) {
+            final Page previous = cache.put(key, page);
+            if (previous != null) cacheBytes -= previous.bytes;
+            cacheBytes += page.bytes;
+            final Iterator<Page> eldest = cache.values().iterator();
+            while (cacheBytes > maxCacheBytes && eldest.hasNext()) {
+                cacheBytes -= eldest.next().bytes;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static long sizeOf(List<String> rows) {
+        long result = 0;
+        for (String row: rows) result += ROW_OVERHEAD_BYTES + 2L * row.length();
+        return result;
+    }
+
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+            cacheBytes = 0;
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+
+    public long getCacheBytes() {
+        synchronized (cache) {
+            return cacheBytes;
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public String stats() {
+        return "hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                ", pages=" + size() +
+                ", cached=" + (getCacheBytes() / 1024) + "KB";
+    }
+
+}
@@ -0,0 +1,155 @@
+package eu.sblendorio.bbs.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs BBS sessions on a bounded set of carrier threads instead of starting
+ * one platform thread per socket. On JDKs providing virtual threads each
+ * session gets a virtual thread, otherwise sessions run on a cached pool of
+ * small-stack platform threads, so idle terminals parked in readKey() or
+ * readLine() do not hold a full default-sized stack each.
+ */
+public class SessionScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionScheduler.class);
+
+    private static final long RATE_WINDOW_MILLIS = 60000;
+
+    private final int maxSessions;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    private final AtomicInteger active = new AtomicInteger(0);
+    private final AtomicInteger peak = new AtomicInteger(0);
+    private final AtomicLong accepted = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    private long windowStart = System.currentTimeMillis();
+    private long windowCount = 0;
+    private long lastWindowCount = 0;
+
+    /**
+     * @param maxSessions maximum number of concurrent sessions, 0 means unlimited
+     * @param stackSize stack size in bytes for platform session threads, 0 means JVM default
+     */
+    public SessionScheduler(int maxSessions, long stackSize) {
+        this.maxSessions = maxSessions;
+        this.permits = maxSessions > 0 ? new Semaphore(maxSessions) : null;
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtualThreads ? virtual : newPlatformThreadExecutor(stackSize);
+    }
+
+    /**
+     * Schedules a session, unless the max-sessions limit has been reached.
+     *
+     * @return false if the session has been rejected
+     */
+    public boolean submit(Runnable session) {
+        countAccept();
+        if (permits != null && !permits.tryAcquire()) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    session.run();
+                } finally {
+                    if (permits != null) permits.release();
+                    active.decrementAndGet();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (permits != null) permits.release();
+            rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public int getMaxSessions() { return maxSessions; }
+    public int getActiveSessions() { return active.get(); }
+    public int getPeakSessions() { return peak.get(); }
+    public long getAcceptedCount() { return accepted.get(); }
+    public long getRejectedCount() { return rejected.get(); }
+    public boolean isUsingVirtualThreads() { return virtualThreads; }
+
+    /**
+     * @return connections accepted during the last full minute
+     */
+    public synchronized long getAcceptsPerMinute() {
+        rollWindow(System.currentTimeMillis());
+        return lastWindowCount;
+    }
+
+    public String stats() {
+        return "active=" + getActiveSessions() +
+                ", peak=" + getPeakSessions() +
+                ", max=" + (maxSessions > 0 ? String.valueOf(maxSessions) : "unlimited") +
+                ", accepted=" + getAcceptedCount() +
+                ", rejected=" + getRejectedCount() +
+                ", accepts/min=" + getAcceptsPerMinute();
+    }
+
+    private synchronized void countAccept() {
+        accepted.incrementAndGet();
+        rollWindow(System.currentTimeMillis());
+        ++windowCount;
+    }
+
+    private void rollWindow(long now) {
+        if (now - windowStart < RATE_WINDOW_MILLIS) return;
+        lastWindowCount = (now - windowStart < 2 * RATE_WINDOW_MILLIS) ? windowCount : 0;
+        windowCount = 0;
+        windowStart = now;
+    }
+
+    /**
+     * @return an executor running each task on a new virtual thread, null if
+     * the JVM has no virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // virtual threads not available (or preview not enabled) on this JVM
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformThreadExecutor(long stackSize) {
+        final AtomicLong counter = new AtomicLong(0);
+        final ThreadFactory factory = r -> {
+            Thread t = new Thread(null, r, "bbs-session-" + counter.incrementAndGet(), stackSize);
+            t.setDaemon(false);
+            return t;
+        };
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                60L, TimeUnit.SECONDS, new SynchronousQueue<>(), factory);
+        logger.debug("Virtual threads not available, using platform session threads (stack size = {})",
+                stackSize > 0 ? String.valueOf(stackSize) : "default");
+        return pool;
+    }
+
+}
@@ -0,0 +1,337 @@
+package eu.sblendorio.bbs.core;
+
+import static org.apache.commons.lang3.StringUtils.defaultString;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide HTTP fetcher used by {@link PetsciiThread#httpGet} and
+ * {@link PetsciiThread#download}.
+ *
+ * Responses are kept in a byte-bounded LRU cache keyed by URL and User-Agent
+ * for a short time-to-live; once expired they are revalidated with
+ * If-None-Match / If-Modified-Since when the server sent an ETag or a
+ * Last-Modified header. Concurrent requests for the same key share a single
+ * in-flight fetch. Connections are always fully read and closed (never
+ * disconnected) so that HttpURLConnection can keep them alive and reuse them.
+ *
+ * Bodies larger than a configurable limit are refused, from their
+ * Content-Length when the server sends one, or as soon as the limit is
+ * passed while reading. A body is read straight into a buffer of its
+ * Content-Length, reporting the bytes received to an optional Progress.
+ */
+public class SharedHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedHttpClient.class);
+
+    private static final long DEFAULT_TTL_MILLIS = 60000;
+    private static final long DEFAULT_MAX_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final long DEFAULT_MAX_ENTRY_BYTES = 2L * 1024 * 1024;
+    private static final int TIMEOUT_MILLIS = 30000;
+    private static final int MAX_REDIRECTS = 10;
+    private static final long DEFAULT_MAX_BODY_BYTES = 8L * 1024 * 1024;
+    /* the largest array a JVM allocates */
+    private static final long UNLIMITED_BODY_BYTES = Integer.MAX_VALUE - 8;
+    private static final int READ_BUFFER_BYTES = 16384;
+
+    private static final SharedHttpClient instance =
+            new SharedHttpClient(DEFAULT_TTL_MILLIS, DEFAULT_MAX_CACHE_BYTES, DEFAULT_MAX_ENTRY_BYTES);
+
+    public static SharedHttpClient getInstance() { return instance; }
+
+    /** Receives the number of bytes read so far and the total, -1 if unknown */
+    public interface Progress {
+        void update(long read, long total);
+    }
+
+    /** An immutable HTTP response. The body must not be modified by callers. */
+    public static class Response {
+        private final URL url;
+        private final int status;
+        private final String message;
+        private final byte[] body;
+        private final String contentType;
+        private final String contentDisposition;
+        private final String etag;
+        private final String lastModified;
+        private final long fetchedAt;
+
+        Response(URL url, int status, String message, byte[] body, String contentType,
+                 String contentDisposition, String etag, String lastModified, long fetchedAt) {
+            this.url = url;
+            this.status = status;
+            this.message = message;
+            this.body = body;
+            this.contentType = contentType;
+            this.contentDisposition = contentDisposition;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+        }
+
+        Response refreshed(long now) {
+            return new Response(url, status, message, body, contentType, contentDisposition, etag, lastModified, now);
+        }
+
+        /** Final URL, after redirects */
+        public URL getUrl() { return url; }
+        public int getStatus() { return status; }
+        public String getMessage() { return message; }
+        public byte[] getBody() { return body; }
+        public String getContentType() { return contentType; }
+        public String getContentDisposition() { return contentDisposition; }
+        public boolean isSuccessful() { return status >= 200 && status <= 299; }
+    }
+
+    private final long ttlMillis;
+    private final long maxCacheBytes;
+    private final long maxEntryBytes;
+    private volatile long maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+
+    private final LinkedHashMap<String, Response> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cacheBytes = 0;
+    private final Map<String, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong revalidated = new AtomicLong(0);
+    private final AtomicLong coalesced = new AtomicLong(0);
+    private final AtomicLong fetches = new AtomicLong(0);
+    private final AtomicLong fetchNanos = new AtomicLong(0);
+    private final AtomicLong refused = new AtomicLong(0);
+
+    SharedHttpClient(long ttlMillis, long maxCacheBytes, long maxEntryBytes) {
+        this.ttlMillis = ttlMillis;
+        this.maxCacheBytes = maxCacheBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    public Response get(URL url, String userAgent) throws IOException {
+        return get(url, userAgent, null);
+    }
+
+    /**
+     * @param progress notified while the body is read, not when the response
+     * comes from cache or from a request made by someone else
+     * @throws DownloadTooLargeException if the body is larger than the limit
+     */
+    public Response get(URL url, String userAgent, Progress progress) throws IOException {
+        final String key = url.toString() + '\n' + defaultString(userAgent);
+        final long now = System.currentTimeMillis();
+        final Response cached = lookup(key);
+        if (cached != null && now - cached.fetchedAt < ttlMillis) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        final CompletableFuture<Response> mine = new CompletableFuture<>();
+        final CompletableFuture<Response> pending = inFlight.putIfAbsent(key, mine);
+        if (pending != null) {
+            coalesced.incrementAndGet();
+            return await(pending);
+        }
+
+        misses.incrementAndGet();
+        try {
+            final Response response = fetch(url, userAgent, cached, progress);
+            if (response.isSuccessful()) store(key, response);
+            mine.complete(response);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Like {@link #get(URL, String, Progress)}, but always requests url and
+     * doesn't keep the response: for callers caching bodies by themselves.
+     */
+    public Response getUncached(URL url, String userAgent, Progress progress) throws IOException {
+        misses.incrementAndGet();
+        return fetch(url, userAgent, null, progress);
+    }
+
+    public void invalidate(URL url, String userAgent) {
+        final String key = url.toString() + '\n' + defaultString(userAgent);
+        synchronized (cache) {
+            final Response removed = cache.remove(key);
+            if (removed != null) cacheBytes -= removed.body.length;
+        }
+    }
+
+    public long getMaxBodyBytes() { return maxBodyBytes; }
+
+    /**
+     * @param maxBodyBytes largest body read, 0 or less for no limit but the size of an array
+     */
+    public void setMaxBodyBytes(long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes <= 0 ? UNLIMITED_BODY_BYTES : Math.min(maxBodyBytes, UNLIMITED_BODY_BYTES);
+    }
+
+    private Response fetch(URL url, String userAgent, Response stale, Progress progress) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            URL current = url;
+            for (int redirects = 0; redirects <= MAX_REDIRECTS; ++redirects) {
+                final HttpURLConnection conn = (HttpURLConnection) current.openConnection();
+                conn.setRequestProperty("User-Agent", defaultString(userAgent));
+                conn.setConnectTimeout(TIMEOUT_MILLIS);
+                conn.setReadTimeout(TIMEOUT_MILLIS);
+                // compared as strings: URL.equals resolves host names
+                if (stale != null && current.toString().equals(stale.url.toString())) {
+                    if (isNotEmpty(stale.etag)) conn.setRequestProperty("If-None-Match", stale.etag);
+                    if (isNotEmpty(stale.lastModified)) conn.setRequestProperty("If-Modified-Since", stale.lastModified);
+                }
+
+                final int responseCode = conn.getResponseCode();
+                if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && stale != null) {
+                    drain(conn);
+                    revalidated.incrementAndGet();
+                    return stale.refreshed(System.currentTimeMillis());
+                } else if (responseCode >= 301 && responseCode <= 399) {
+                    final String newLocation = conn.getHeaderField("Location");
+                    drain(conn);
+                    if (newLocation == null) throw new IOException("Redirect without Location from " + current);
+                    current = new URL(current, newLocation);
+                } else if (responseCode >= 200 && responseCode <= 299) {
+                    final byte[] body;
+                    try (InputStream in = conn.getInputStream()) {
+                        body = readBody(in, conn.getContentLengthLong(), maxBodyBytes, progress, current);
+                    } catch (DownloadTooLargeException e) {
+                        // dropping the connection is cheaper than draining the rest
+                        conn.disconnect();
+                        refused.incrementAndGet();
+                        throw e;
+                    }
+                    return new Response(current, responseCode, conn.getResponseMessage(), body,
+                            conn.getContentType(),
+                            conn.getHeaderField("Content-Disposition"),
+                            conn.getHeaderField("ETag"),
+                            conn.getHeaderField("Last-Modified"),
+                            System.currentTimeMillis());
+                } else {
+                    final String message = conn.getResponseMessage();
+                    drain(conn);
+                    return new Response(current, responseCode, message, new byte[0], null, null, null, null,
+                            System.currentTimeMillis());
+                }
+            }
+            throw new IOException("Too many redirects from " + url);
+        } finally {
+            fetches.incrementAndGet();
+            fetchNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Reads a body of contentLength bytes, -1 if unknown, into an array of
+     * its size, failing as soon as it is known to be larger than maxBytes.
+     */
+    static byte[] readBody(InputStream in, long contentLength, long maxBytes, Progress progress, URL url) throws IOException {
+        if (contentLength > maxBytes) throw new DownloadTooLargeException(url, maxBytes);
+        byte[] buffer = new byte[contentLength >= 0 ? (int) contentLength : (int) Math.min(READ_BUFFER_BYTES, maxBytes)];
+        int length = 0;
+        while (true) {
+            if (length == buffer.length) {
+                final int next = in.read();
+                if (next < 0) break;
+                if (length >= maxBytes) throw new DownloadTooLargeException(url, maxBytes);
+                buffer = Arrays.copyOf(buffer, (int) Math.min(maxBytes, Math.max(2L * length, READ_BUFFER_BYTES)));
+                buffer[length++] = (byte) next;
+            }
+            final int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) break;
+            length += read;
+            if (progress != null) progress.update(length, contentLength);
+        }
+        return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    /** Reads what's left so the underlying connection can go back to the keep-alive pool */
+    private static void drain(HttpURLConnection conn) {
+        try (InputStream in = conn.getErrorStream() != null ? conn.getErrorStream() : conn.getInputStream()) {
+            if (in != null) IOUtils.skip(in, Long.MAX_VALUE);
+        } catch (IOException e) {
+            logger.debug("Couldn't drain connection to {}: {}", conn.getURL(), e.toString());
+        }
+    }
+
+    private Response lookup(String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    private void store(String key, Response response) {
+        if (response.body.length > maxEntryBytes) return;
+        synchronized (cache) {
+            final Response previous = cache.put(key, response);
+            if (previous != null) cacheBytes -= previous.body.length;
+            cacheBytes += response.body.length;
+            final Iterator<Response> eldest = cache.values().iterator();
+            while (cacheBytes > maxCacheBytes && eldest.hasNext()) {
+                cacheBytes -= eldest.next().body.length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static Response await(CompletableFuture<Response> pending) throws IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a shared request", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getRevalidated() { return revalidated.get(); }
+    public long getCoalesced() { return coalesced.get(); }
+
+    public long getAverageFetchMillis() {
+        final long n = fetches.get();
+        return n == 0 ? 0 : fetchNanos.get() / n / 1000000;
+    }
+
+    public long getCacheBytes() {
+        synchronized (cache) {
+            return cacheBytes;
+        }
+    }
+
+    public String stats() {
+        return "hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", revalidated=" + getRevalidated() +
+                ", coalesced=" + getCoalesced() +
+                ", avgFetch=" + getAverageFetchMillis() + "ms" +
+                ", refused=" + refused.get() +
+                ", cached=" + (getCacheBytes() / 1024) + "KB";
+    }
+
+}
@@ -169,12 +169,12 @@ public class XModem {
     }
 
     private byte getchar() throws IOException {
+        outStream.flush();
         return (byte)inStream.read();
     }
 
     private void putchar(int c) {
         outStream.write(c);
-        outStream.flush();
     }
 
     private void xerror() {
@@ -46,6 +46,8 @@ import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.text.WordUtils;
 
 import net.sourceforge.droid64.addons.DiskUtilities;
+import eu.sblendorio.bbs.core.DownloadProgress;
+import eu.sblendorio.bbs.core.DownloadTooLargeException;
 import eu.sblendorio.bbs.core.HtmlUtils;
 import eu.sblendorio.bbs.core.PetsciiThread;
 import eu.sblendorio.bbs.core.XModem;
@@ -176,7 +178,15 @@ public class ArnoldC64 extends PetsciiThread {
         final String url = p.url;
         final String title = p.name;
         final String type = p.fileType;
-        byte[] content = DiskUtilities.getPrgContentFromUrl(url);
+        final DownloadProgress progress = new DownloadProgress(this);
+        byte[] content;
+        try {
+            content = DiskUtilities.getPrgContentFromUrl(url, progress);
+        } catch (DownloadTooLargeException e) {
+            log(e.getMessage());
+            content = null;
+        }
+        progress.clear();
         waitOff();
 
         write(GREY3);
@@ -19,7 +19,6 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.stream.Collectors;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -146,10 +145,8 @@ public class Chat extends PetsciiThread {
     }
 
     private synchronized void sendToAll(ChatMessage chatMessage) {
-        getClients().keySet().stream()
-                .filter(id -> getClients().get(id) != null)
-                .filter(id -> id != getClientId() && getClientClass().equals(getClients().get(id).getClientClass()))
-                .forEach(id -> send(id, chatMessage));
+        for (PetsciiThread client: getClientsOfSameClass())
+            send(client.getClientId(), chatMessage);
     }
 
     private void notifyEnteringUser() {
@@ -279,11 +276,7 @@ public class Chat extends PetsciiThread {
     }
 
     private List<PetsciiThread> getConnectedUsers() {
-        return getClients().values()
-                .stream()
-                .filter(x -> x.getClientClass().equals(this.getClientClass()) &&
-                             x.getClientId() != this.getClientId())
-                .collect(Collectors.toList());
+        return getClientsOfSameClass();
     }
 
     private void displayMessages() {
@@ -350,7 +343,11 @@ public class Chat extends PetsciiThread {
         ChatMessage chatMessage = (ChatMessage) message;
         rows.addLast(new Row(senderId, chatMessage));
         while (rows.size() > 10) rows.removeFirst();
-        if (canRedraw && (/* chatMessage.receiverId > 0 || */ commandLine.length() == 0)) {
+    }
+
+    @Override
+    public synchronized void receiveCompleted() {
+        if (canRedraw && commandLine.length() == 0) {
             redraw();
             write(INPUT_COLOR);
             print(commandLine);
@@ -1,11 +1,10 @@
 package eu.sblendorio.bbs.tenants;
 
-import com.rometools.rome.feed.synd.SyndEntry;
-import com.rometools.rome.feed.synd.SyndFeed;
 import com.rometools.rome.io.FeedException;
-import com.rometools.rome.io.SyndFeedInput;
-import com.rometools.rome.io.XmlReader;
 import net.sourceforge.droid64.addons.DiskUtilities;
+import eu.sblendorio.bbs.core.DownloadProgress;
+import eu.sblendorio.bbs.core.DownloadTooLargeException;
+import eu.sblendorio.bbs.core.FeedRegistry;
 import eu.sblendorio.bbs.core.HtmlUtils;
 import eu.sblendorio.bbs.core.PetsciiThread;
 import eu.sblendorio.bbs.core.XModem;
@@ -218,7 +217,15 @@ public class CsdbReleases extends PetsciiThread {
         final String url = isEmpty(p.links) ? findDownloadLink(new URL(p.releaseUri)) : p.links.get(0);
         final String title = p.title;
         final String type = p.type;
-        byte[] content = DiskUtilities.getPrgContentFromUrl(url);
+        final DownloadProgress progress = new DownloadProgress(this);
+        byte[] content;
+        try {
+            content = DiskUtilities.getPrgContentFromUrl(url, progress);
+        } catch (DownloadTooLargeException e) {
+            log(e.getMessage());
+            content = null;
+        }
+        progress.clear();
         waitOff();
 
         write(WHITE); println(title);
@@ -331,16 +338,12 @@ public class CsdbReleases extends PetsciiThread {
     }
 
     private static List<NewsFeed> getFeeds(String urlString) throws IOException, FeedException {
-        URL url = new URL(urlString);
-        SyndFeedInput input = new SyndFeedInput();
-        SyndFeed feed = input.build(new XmlReader(url));
         List<CsdbReleases.NewsFeed> result = new LinkedList<>();
-        List<SyndEntry> entries = feed.getEntries();
-        for (SyndEntry e : entries)
+        for (FeedRegistry.FeedEntry e : FeedRegistry.getInstance().get(urlString))
             result.add(new CsdbReleases.NewsFeed(
                     e.getPublishedDate(),
                     e.getTitle().replaceAll("(?is) by .*?$", EMPTY),
-                    e.getDescription().getValue(),
+                    e.getDescription(),
                     e.getUri()));
         return result;
     }
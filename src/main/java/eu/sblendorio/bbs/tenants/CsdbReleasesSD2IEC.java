@@ -46,13 +46,13 @@ import java.util.regex.Pattern;
 
 import org.apache.commons.text.WordUtils;
 
-import com.rometools.rome.feed.synd.SyndEntry;
-import com.rometools.rome.feed.synd.SyndFeed;
 import com.rometools.rome.io.FeedException;
-import com.rometools.rome.io.SyndFeedInput;
-import com.rometools.rome.io.XmlReader;
 
 import net.sourceforge.droid64.addons.DiskUtilities;
+import net.sourceforge.droid64.addons.DownloadCache;
+import eu.sblendorio.bbs.core.DownloadProgress;
+import eu.sblendorio.bbs.core.DownloadTooLargeException;
+import eu.sblendorio.bbs.core.FeedRegistry;
 import eu.sblendorio.bbs.core.HtmlUtils;
 import eu.sblendorio.bbs.core.PetsciiThread;
 import eu.sblendorio.bbs.core.XModem;
@@ -246,7 +246,20 @@ public class CsdbReleasesSD2IEC extends PetsciiThread {
 
 
         //Get Content File and get fileName
-        DownloadData file = PetsciiThread.download(new URL(url));
+        final DownloadProgress progress = new DownloadProgress(this);
+        final DownloadData file;
+        try {
+            file = DownloadCache.getInstance().download(url, progress);
+        } catch (DownloadTooLargeException e) {
+            log(e.getMessage());
+            progress.clear();
+            waitOff();
+            newline();
+            print("----------------------------------------");
+            cantHandle(releaseUri);
+            return;
+        }
+        progress.clear();
         String fileName = file.getFilename();
         byte[] content = null;
 
@@ -290,7 +303,7 @@ public class CsdbReleasesSD2IEC extends PetsciiThread {
             content = null;
         }
         else {
-            content = DiskUtilities.getPrgContentFromFile(file);
+            content = DownloadCache.getInstance().getPrgContent(file);
         }
 
         waitOff();
@@ -322,18 +335,12 @@ public class CsdbReleasesSD2IEC extends PetsciiThread {
 
         if (content == null) {
             if(!noChoice) {
-                log("Can't download " + releaseUri);
-                write(RED, REVON); println("      ");
-                write(RED, REVON); print(" WARN "); write(WHITE, REVOFF); println("Ops! Can't handle this. Use browser.");
-                write(RED, REVON); println("      "); write(WHITE, REVOFF);
-                write(CYAN); println();
-                println("       Press any key to go back");
-            }
-            else {
-                newline();
-                println("          Key not allowed....");
-                println("       Press any key to go back");
+                cantHandle(releaseUri);
+                return;
             }
+            newline();
+            println("          Key not allowed....");
+            println("       Press any key to go back");
             readKey();
             resetInput();
         } else {
@@ -363,6 +370,17 @@ public class CsdbReleasesSD2IEC extends PetsciiThread {
         }
     }
 
+    private void cantHandle(String releaseUri) throws IOException {
+        log("Can't download " + releaseUri);
+        write(RED, REVON); println("      ");
+        write(RED, REVON); print(" WARN "); write(WHITE, REVOFF); println("Ops! Can't handle this. Use browser.");
+        write(RED, REVON); println("      "); write(WHITE, REVOFF);
+        write(CYAN); println();
+        println("       Press any key to go back");
+        readKey();
+        resetInput();
+    }
+
     private void listPosts(String rssUrl) throws IOException, FeedException {
         cls();
         drawLogo();
@@ -424,16 +442,12 @@ public class CsdbReleasesSD2IEC extends PetsciiThread {
     }
 
     private static List<NewsFeed> getFeeds(String urlString) throws IOException, FeedException {
-        URL url = new URL(urlString);
-        SyndFeedInput input = new SyndFeedInput();
-        SyndFeed feed = input.build(new XmlReader(url));
         List<CsdbReleasesSD2IEC.NewsFeed> result = new LinkedList<>();
-        List<SyndEntry> entries = feed.getEntries();
-        for (SyndEntry e : entries)
+        for (FeedRegistry.FeedEntry e : FeedRegistry.getInstance().get(urlString))
             result.add(new CsdbReleasesSD2IEC.NewsFeed(
                     e.getPublishedDate(),
                     e.getTitle().replaceAll("(?is) by .*?$", EMPTY),
-                    e.getDescription().getValue(),
+                    e.getDescription(),
                     e.getUri()));
         return result;
     }
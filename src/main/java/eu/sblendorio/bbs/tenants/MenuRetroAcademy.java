@@ -4,58 +4,24 @@ import static eu.sblendorio.bbs.core.Colors.GREY3;
 import static eu.sblendorio.bbs.core.Colors.WHITE;
 import static eu.sblendorio.bbs.core.Keys.*;
 
-import java.io.File;
 import java.io.IOException;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.maxmind.db.Reader;
-
 import eu.sblendorio.bbs.core.CbmInputOutput;
+import eu.sblendorio.bbs.core.GeoIp;
+import eu.sblendorio.bbs.core.GeoIp.GeoData;
 import eu.sblendorio.bbs.core.PetsciiThread;
 import eu.sblendorio.bbs.core.Utils;
 
 public class MenuRetroAcademy extends PetsciiThread {
 
-    public static class GeoData {
-        public final String city;
-        public final String cityGeonameId;
-        public final String country;
-        public final Double latitude;
-        public final Double longitude;
-        public final String timeZone;
-        public GeoData(final String city, final String cityGeonameId, final String country, final Double latitude, final Double longitude, final String timeZone) {
-            this.city = city;
-            this.cityGeonameId = cityGeonameId;
-            this.country = country;
-            this.latitude = latitude;
-            this.longitude = longitude;
-            this.timeZone = timeZone;
-        }
-    }
-
-    private static final String MAXMIND_DB = System.getProperty("user.home") + File.separator + "GeoLite2-City.mmdb";
-    private Reader maxmindReader;
-    private JsonNode maxmindResponse;
     private GeoData geoData;
 
     public void init() throws IOException {
         try {
-            File maxmindDb = new File(MAXMIND_DB);
-            maxmindReader = new Reader(maxmindDb);
-            maxmindResponse = maxmindReader.get(socket.getInetAddress());
-            maxmindReader.close();
-
-            geoData = new GeoData(
-                    maxmindResponse.get("city").get("names").get("en").asText(),
-                    maxmindResponse.get("city").get("geoname_id").asText(),
-                    maxmindResponse.get("country").get("names").get("en").asText(),
-                    maxmindResponse.get("location").get("latitude").asDouble(),
-                    maxmindResponse.get("location").get("longitude").asDouble(),
-                    maxmindResponse.get("location").get("time_zone").asText()
-            );
-            log("Location: " + geoData.city + ", " + geoData.country);
+            geoData = GeoIp.getInstance().lookup(socket.getInetAddress());
+            if (geoData != null)
+                log("Location: " + geoData.city + ", " + geoData.country);
         } catch (Exception e) {
-            maxmindResponse = null;
             geoData = null;
             log("Error retrieving GeoIP data: " + e.getClass().getName());
         }
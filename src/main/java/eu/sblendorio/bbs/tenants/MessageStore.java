@@ -0,0 +1,444 @@
+package eu.sblendorio.bbs.tenants;
+
+import static org.apache.commons.codec.CharEncoding.UTF_8;
+import static org.apache.commons.codec.digest.DigestUtils.sha256Hex;
+import static org.apache.commons.lang3.StringUtils.defaultString;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.sblendorio.bbs.tenants.UserLogon.Message;
+import eu.sblendorio.bbs.tenants.UserLogon.User;
+
+/**
+ * SQLite store of users and private messages shared by all the
+ * {@link UserLogon} sessions.
+ *
+ * Connections come from a small pool, run in WAL mode (readers don't wait for
+ * the writer) and keep their prepared statements for reuse. The schema is
+ * created or upgraded on first use according to PRAGMA user_version. Messages
+ * marked as read are written in batches: on the next query, or within a
+ * second.
+ */
+public class MessageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageStore.class);
+
+    public static final String DEFAULT_DB_FILE = System.getProperty("user.home") + "/bbs-data.db";
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+    private static final long BORROW_TIMEOUT_MILLIS = 10000;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private static final MessageStore instance = new MessageStore(DEFAULT_DB_FILE, DEFAULT_POOL_SIZE, true);
+
+    public static MessageStore getInstance() { return instance; }
+
+    /* Each entry upgrades the schema from version i to version i+1 */
+    private static final String[][] MIGRATIONS = {
+        {
+            "CREATE TABLE IF NOT EXISTS users (id INTEGER PRIMARY KEY AUTOINCREMENT, nick TEXT, realname TEXT, email TEXT, salt text, password TEXT)",
+            "CREATE TABLE IF NOT EXISTS messages (user_from TEXT, user_to TEXT, datetime INTEGER, is_read INTEGER, subject TEXT, message TEXT)",
+            "CREATE TABLE IF NOT EXISTS user_vault (hash TEXT)"
+        },
+        {
+            "CREATE INDEX IF NOT EXISTS messages_inbox ON messages (user_to, is_read, datetime)",
+            "CREATE INDEX IF NOT EXISTS users_nick ON users (nick)",
+            "CREATE INDEX IF NOT EXISTS user_vault_hash ON user_vault (hash)"
+        }
+    };
+
+    private static final String SELECT_MESSAGES =
+            "SELECT messages.rowid, user_from, user_to, datetime, is_read, subject, message, id " +
+            "FROM messages LEFT JOIN users ON user_from=nick WHERE user_to=? ";
+    private static final String SELECT_ALL_MESSAGES = SELECT_MESSAGES + "ORDER BY datetime DESC";
+    private static final String SELECT_UNREAD_MESSAGES = SELECT_MESSAGES + "AND is_read = 0 ORDER BY datetime DESC";
+
+    interface SqlWork<T> {
+        T run(PooledConnection c) throws SQLException;
+    }
+
+    /** A connection with its own cache of prepared statements */
+    static class PooledConnection {
+        final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                ps = connection.prepareStatement(sql);
+                statements.put(sql, ps);
+            } else {
+                ps.clearParameters();
+            }
+            return ps;
+        }
+
+        void close() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.warn("Couldn't close database connection: {}", e.toString());
+            }
+        }
+    }
+
+    private final String dbFile;
+    private final int poolSize;
+    private final BlockingQueue<PooledConnection> idle;
+    private final AtomicInteger opened = new AtomicInteger(0);
+    private volatile boolean migrated = false;
+
+    private final ConcurrentLinkedQueue<Long> pendingReads = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong queries = new AtomicLong(0);
+    private final AtomicLong queryNanos = new AtomicLong(0);
+    private final AtomicLong readBatches = new AtomicLong(0);
+
+    MessageStore(String dbFile, int poolSize, boolean flushInBackground) {
+        this.dbFile = dbFile;
+        this.poolSize = poolSize;
+        this.idle = new ArrayBlockingQueue<>(poolSize);
+        if (flushInBackground) {
+            ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "message-store-flush");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushReadsQuietly, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        final Properties properties = new Properties();
+        properties.setProperty("characterEncoding", UTF_8);
+        properties.setProperty("encoding", "\"" + UTF_8 + "\"");
+        final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile, properties);
+        try (Statement s = connection.createStatement()) {
+            s.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS);
+            s.execute("PRAGMA journal_mode = WAL");
+            s.execute("PRAGMA synchronous = NORMAL");
+        }
+        return new PooledConnection(connection);
+    }
+
+    private PooledConnection borrow() throws SQLException {
+        PooledConnection c = idle.poll();
+        if (c != null) return c;
+        if (opened.incrementAndGet() <= poolSize) {
+            try {
+                return open();
+            } catch (SQLException | RuntimeException e) {
+                opened.decrementAndGet();
+                throw e;
+            }
+        }
+        opened.decrementAndGet();
+        try {
+            c = idle.poll(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (c == null) throw new SQLException("Timeout waiting for a connection to " + dbFile);
+        return c;
+    }
+
+    private void release(PooledConnection c, boolean broken) {
+        if (broken) {
+            opened.decrementAndGet();
+            c.close();
+        } else if (!idle.offer(c)) {
+            opened.decrementAndGet();
+            c.close();
+        }
+    }
+
+    private <T> T withConnection(SqlWork<T> work) throws SQLException {
+        if (!migrated) migrate();
+        final long start = System.nanoTime();
+        final PooledConnection c = borrow();
+        boolean broken = false;
+        try {
+            writePendingReads(c);
+            return work.run(c);
+        } catch (SQLException | RuntimeException e) {
+            broken = c.connection.isClosed();
+            throw e;
+        } finally {
+            release(c, broken);
+            queries.incrementAndGet();
+            queryNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private <T> T inTransaction(PooledConnection c, SqlWork<T> work) throws SQLException {
+        c.connection.setAutoCommit(false);
+        try {
+            final T result = work.run(c);
+            c.connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            c.connection.rollback();
+            throw e;
+        } finally {
+            c.connection.setAutoCommit(true);
+        }
+    }
+
+    private synchronized void migrate() throws SQLException {
+        if (migrated) return;
+        final PooledConnection c = borrow();
+        try (Statement s = c.connection.createStatement()) {
+            int version;
+            try (ResultSet rs = s.executeQuery("PRAGMA user_version")) {
+                version = rs.next() ? rs.getInt(1) : 0;
+            }
+            for (; version < MIGRATIONS.length; ++version) {
+                final int target = version + 1;
+                inTransaction(c, tx -> {
+                    for (String sql: MIGRATIONS[target - 1]) s.executeUpdate(sql);
+                    s.executeUpdate("PRAGMA user_version = " + target);
+                    return null;
+                });
+                logger.info("Database {} upgraded to schema version {}", dbFile, target);
+            }
+            migrated = true;
+        } finally {
+            release(c, c.connection.isClosed());
+        }
+    }
+
+    private void writePendingReads(PooledConnection c) throws SQLException {
+        if (pendingReads.isEmpty()) return;
+        final List<Long> rowIds = new ArrayList<>();
+        for (Long rowId = pendingReads.poll(); rowId != null; rowId = pendingReads.poll()) rowIds.add(rowId);
+        if (rowIds.isEmpty()) return;
+        try {
+            inTransaction(c, tx -> {
+                final PreparedStatement ps = tx.prepare("UPDATE messages SET is_read=1 WHERE rowid=?");
+                for (Long rowId: rowIds) {
+                    ps.setLong(1, rowId);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                return null;
+            });
+            readBatches.incrementAndGet();
+        } catch (SQLException | RuntimeException e) {
+            pendingReads.addAll(rowIds);
+            throw e;
+        }
+    }
+
+    /** Writes the messages marked as read so far, if any */
+    public void flushReads() throws SQLException {
+        if (!pendingReads.isEmpty()) withConnection(c -> null);
+    }
+
+    private void flushReadsQuietly() {
+        try {
+            flushReads();
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Couldn't mark messages as read, will retry: {}", e.toString());
+        }
+    }
+
+    /** Queues the message to be marked as read; any later query of this store sees it as read */
+    public void markAsRead(long rowId) {
+        pendingReads.add(rowId);
+    }
+
+    public void sendMessage(String from, String to, String subject, String message) throws SQLException {
+        withConnection(c -> {
+            final PreparedStatement ps = c.prepare("INSERT INTO messages (user_from, user_to, datetime, is_read, subject, message) values (?,?,?,?,?,?)");
+            ps.setString(1, from);
+            ps.setString(2, to);
+            ps.setLong(3, System.currentTimeMillis());
+            ps.setLong(4, 0);
+            ps.setString(5, subject);
+            ps.setString(6, message);
+            return ps.executeUpdate();
+        });
+    }
+
+    public List<Message> getMessages(String userTo, boolean onlyUnread) throws SQLException {
+        return withConnection(c -> {
+            final PreparedStatement ps = c.prepare(onlyUnread ? SELECT_UNREAD_MESSAGES : SELECT_ALL_MESSAGES);
+            ps.setString(1, userTo);
+            final List<Message> result = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    result.add(new Message(
+                            rs.getLong("rowid"),
+                            rs.getString("user_from"),
+                            rs.getString("user_to"),
+                            new Date(rs.getLong("datetime")),
+                            rs.getLong("is_read") != 0,
+                            rs.getString("subject"),
+                            rs.getString("message"),
+                            rs.getString("id") != null
+                    ));
+            }
+            return result;
+        });
+    }
+
+    public long countTotalMessages(String nick) throws SQLException {
+        return count("SELECT count(*) FROM messages WHERE user_to=?", nick);
+    }
+
+    public long countUnreadMessages(String nick) throws SQLException {
+        return count("SELECT count(*) FROM messages WHERE user_to=? AND is_read=0", nick);
+    }
+
+    private long count(String sql, String nick) throws SQLException {
+        return withConnection(c -> {
+            final PreparedStatement ps = c.prepare(sql);
+            ps.setString(1, nick);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+    }
+
+    public List<User> getUsers() throws SQLException {
+        return withConnection(c -> {
+            final List<User> result = new LinkedList<>();
+            try (ResultSet r = c.prepare("SELECT id, nick, realname, email FROM users ORDER BY nick").executeQuery()) {
+                while (r.next())
+                    result.add(new User(r.getLong("id"), r.getString("nick"), r.getString("realname"), r.getString("email")));
+            }
+            return result;
+        });
+    }
+
+    public User getUserById(Long id) throws SQLException {
+        return withConnection(c -> {
+            final PreparedStatement ps = c.prepare("SELECT id, nick, realname, email FROM users WHERE id=?");
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return new User(rs.getLong("id"), rs.getString("nick"), rs.getString("realname"), rs.getString("email"));
+            }
+        });
+    }
+
+    /** @return the user, or null if the nick doesn't exist or the password is wrong */
+    public User getUser(String nick, String givenPassword) throws SQLException {
+        return withConnection(c -> {
+            final PreparedStatement ps = c.prepare("SELECT id, realname, email, salt, password FROM users WHERE nick=?");
+            ps.setString(1, nick);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                final String salt = defaultString(rs.getString("salt"));
+                final String password = defaultString(rs.getString("password"));
+                if (!sha256Hex(salt + givenPassword).equals(password)) return null;
+                return new User(rs.getLong("id"), nick, rs.getString("realname"), rs.getString("email"));
+            }
+        });
+    }
+
+    public boolean existsUser(String nick) throws SQLException {
+        return exists("SELECT 1 FROM users WHERE nick=?", nick);
+    }
+
+    public boolean userInVault(String nick) throws SQLException {
+        return exists("SELECT 1 FROM user_vault WHERE hash=?", sha256Hex(nick));
+    }
+
+    private boolean exists(String sql, String value) throws SQLException {
+        return withConnection(c -> {
+            final PreparedStatement ps = c.prepare(sql);
+            ps.setString(1, value);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        });
+    }
+
+    public void addUser(String nick, String realname, String email, String salt, String password) throws SQLException {
+        withConnection(c -> {
+            final PreparedStatement ps = c.prepare("INSERT INTO users (nick, realname, email, salt, password) values (?,?,?,?,?)");
+            ps.setString(1, nick);
+            ps.setString(2, realname);
+            ps.setString(3, email);
+            ps.setString(4, salt);
+            ps.setString(5, password);
+            return ps.executeUpdate();
+        });
+    }
+
+    public void changeRealname(Long id, String realname) throws SQLException {
+        withConnection(c -> {
+            final PreparedStatement ps = c.prepare("UPDATE users SET realname=? WHERE id=?");
+            ps.setString(1, realname);
+            ps.setLong(2, id);
+            return ps.executeUpdate();
+        });
+    }
+
+    /** Deletes the user and its messages, and keeps its nick from being used again */
+    public void killUser(String nick) throws SQLException {
+        withConnection(c -> inTransaction(c, tx -> {
+            PreparedStatement ps = tx.prepare("DELETE FROM users WHERE nick=?");
+            ps.setString(1, nick);
+            ps.executeUpdate();
+
+            ps = tx.prepare("DELETE FROM messages WHERE user_to=?");
+            ps.setString(1, nick);
+            ps.executeUpdate();
+
+            ps = tx.prepare("INSERT INTO user_vault (hash) values (?)");
+            ps.setString(1, sha256Hex(nick));
+            return ps.executeUpdate();
+        }));
+    }
+
+    /** Closes the idle connections, e.g. at the end of a test */
+    void close() {
+        for (PooledConnection c = idle.poll(); c != null; c = idle.poll()) {
+            opened.decrementAndGet();
+            c.close();
+        }
+    }
+
+    public long getAverageQueryMicros() {
+        final long n = queries.get();
+        return n == 0 ? 0 : queryNanos.get() / n / 1000;
+    }
+
+    public String stats() {
+        return "queries=" + queries.get() +
+                ", avgQuery=" + getAverageQueryMicros() + "us" +
+                ", readBatches=" + readBatches.get() +
+                ", pendingReads=" + pendingReads.size() +
+                ", connections=" + opened.get() + "/" + poolSize;
+    }
+
+}
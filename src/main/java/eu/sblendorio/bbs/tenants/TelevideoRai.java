@@ -28,7 +28,6 @@ import static org.apache.commons.lang3.StringUtils.substring;
 import static org.apache.commons.lang3.StringUtils.trim;
 
 import java.io.IOException;
-import java.net.URL;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
@@ -43,11 +42,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.WordUtils;
 
 import com.google.common.collect.ImmutableMap;
-import com.rometools.rome.feed.synd.SyndEntry;
-import com.rometools.rome.feed.synd.SyndFeed;
-import com.rometools.rome.io.SyndFeedInput;
-import com.rometools.rome.io.XmlReader;
 
+import eu.sblendorio.bbs.core.FeedRegistry;
 import eu.sblendorio.bbs.core.HtmlUtils;
 import eu.sblendorio.bbs.core.PetsciiThread;
 
@@ -145,13 +141,9 @@ public class TelevideoRai extends PetsciiThread {
     }
 
     public static List<NewsFeed> getFeeds(String urlString) throws IOException, FeedException {
-        URL url = new URL(urlString);
-        SyndFeedInput input = new SyndFeedInput();
-        SyndFeed feed = input.build(new XmlReader(url));
         List<NewsFeed> result = new LinkedList<>();
-        List<SyndEntry> entries = feed.getEntries();
-        for (SyndEntry e : entries)
-            result.add(new NewsFeed(e.getPublishedDate(), e.getTitle(), e.getDescription().getValue(), e.getUri()));
+        for (FeedRegistry.FeedEntry e : FeedRegistry.getInstance().get(urlString))
+            result.add(new NewsFeed(e.getPublishedDate(), e.getTitle(), e.getDescription(), e.getUri()));
         return result;
     }
 
@@ -12,7 +12,6 @@ import static eu.sblendorio.bbs.core.Keys.LOWERCASE;
 import static eu.sblendorio.bbs.core.Keys.REVOFF;
 import static eu.sblendorio.bbs.core.Keys.REVON;
 import static java.util.Arrays.asList;
-import static org.apache.commons.codec.CharEncoding.UTF_8;
 import static org.apache.commons.codec.digest.DigestUtils.sha256Hex;
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
@@ -25,21 +24,13 @@ import static org.apache.commons.lang3.StringUtils.lowerCase;
 import static org.apache.commons.lang3.StringUtils.trim;
 import static org.apache.commons.lang3.math.NumberUtils.toInt;
 
-import java.io.File;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.Statement;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Properties;
 import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
@@ -49,17 +40,9 @@ import eu.sblendorio.bbs.core.PetsciiThread;
 
 public class UserLogon extends PetsciiThread {
 
-    protected static final String DB_FILE = System.getProperty("user.home") + "/bbs-data.db";
-    protected static final Properties properties;
     SecureRandom random;
 
-    static {
-        properties = new Properties();
-        properties.setProperty("characterEncoding", UTF_8);
-        properties.setProperty("encoding", "\"" + UTF_8 + "\"");
-    }
-
-    private Connection conn = null;
+    private MessageStore store;
     private User user;
 
     public static class User {
@@ -102,12 +85,6 @@ public class UserLogon extends PetsciiThread {
         }
     }
 
-    private void openConnection() throws Exception {
-        if (!new File(DB_FILE).exists()) createDatabase(properties);
-        if (conn == null || conn.isClosed())
-            conn = DriverManager.getConnection("jdbc:sqlite:"+ DB_FILE, properties);
-    }
-
     public void init() throws Exception {
         try {
             random = SecureRandom.getInstance("SHA1PRNG");
@@ -120,7 +97,7 @@ public class UserLogon extends PetsciiThread {
         } catch (NullPointerException | ClassCastException e) {
             log("User not logged " + e.getClass().getName() + " " + e.getMessage() );
         }
-        openConnection();
+        store = MessageStore.getInstance();
     }
 
     @Override
@@ -261,15 +238,7 @@ public class UserLogon extends PetsciiThread {
     }
 
     public void sendMessage(String from, String to, String subject, String message) throws Exception {
-        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO messages (user_from, user_to, datetime, is_read, subject, message) values (?,?,?,?,?,?)")) {
-            ps.setString(1, from);
-            ps.setString(2, to);
-            ps.setLong(3, System.currentTimeMillis());
-            ps.setLong(4, 0);
-            ps.setString(5, subject);
-            ps.setString(6, message);
-            ps.executeUpdate();
-        }
+        store.sendMessage(from, to, subject, message);
     }
 
     public void listMessages(boolean onlyUnread) throws Exception {
@@ -383,48 +352,15 @@ public class UserLogon extends PetsciiThread {
 
     void markAsRead(Message m) throws Exception {
         m.setIsRead(true);
-        try (PreparedStatement ps = conn.prepareStatement("update messages set is_read=1 where rowid=?")) {
-            ps.setLong(1, m.rowId);
-            ps.executeUpdate();
-        }
+        store.markAsRead(m.rowId);
     }
 
     public List<User> getUsers() throws Exception {
-        List<User> result = new LinkedList<>();
-        try (Statement s = conn.createStatement();
-                ResultSet r = s.executeQuery("select id, nick, realname, email from users order by nick")) {
-            while (r.next())
-                result.add(new User(
-                    r.getLong("id"),
-                    r.getString("nick"),
-                    r.getString("realname"),
-                    r.getString("email")
-            ));
-        }
-        return result;
+        return store.getUsers();
     }
 
     public List<Message> getMessages(String userTo, boolean onlyUnread) throws Exception {
-        List<Message> result = new ArrayList<>();
-        try (PreparedStatement ps = conn.prepareStatement("" +
-                "SELECT messages.rowid, user_from, user_to, datetime, is_read, subject, message, id FROM messages LEFT JOIN users ON user_from=nick WHERE user_to=? "+
-                (onlyUnread ? " AND is_read = 0 " : EMPTY) + " ORDER BY datetime DESC") ) {
-            ps.setString(1, userTo);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next())
-                    result.add(new Message(
-                            rs.getLong("rowid"),
-                            rs.getString("user_from"),
-                            rs.getString("user_to"),
-                            new Date(rs.getLong("datetime")),
-                            rs.getLong("is_read") != 0,
-                            rs.getString("subject"),
-                            rs.getString("message"),
-                            rs.getString("id") != null
-                    ));
-            }
-        }
-        return result;
+        return store.getMessages(userTo, onlyUnread);
     }
 
     public void userPreferences() throws Exception {
@@ -518,126 +454,41 @@ public class UserLogon extends PetsciiThread {
             return false;
         }
 
-        try (PreparedStatement ps = conn.prepareStatement(
-                "insert into users (nick, realname, email, salt, password) values (?,?,?,?,?)")) {
-            String salt = generateId();
-            String hash = sha256Hex(salt + password);
-            ps.setString(1, nick);
-            ps.setString(2, realname);
-            ps.setString(3, email);
-            ps.setString(4, salt);
-            ps.setString(5, hash);
-            ps.execute();
-        }
+        String salt = generateId();
+        store.addUser(nick, realname, email, salt, sha256Hex(salt + password));
         return true;
     }
 
     public long countTotalMessages(String nick) throws Exception {
-        try (PreparedStatement ps = conn.prepareStatement("select count(*) from messages where user_to=?")) {
-            ps.setString(1, nick);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next() ? rs.getLong(1) : 0;
-            }
-        }
+        return store.countTotalMessages(nick);
     }
     public long countUnreadMessages(String nick) throws Exception {
-        try (PreparedStatement ps = conn.prepareStatement("select count(*) from messages where user_to=? and is_read=0")) {
-            ps.setString(1, nick);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next() ? rs.getLong(1) : 0;
-            }
-        }
+        return store.countUnreadMessages(nick);
     }
 
     public User getUserById(Long id) throws Exception {
-        try (PreparedStatement ps = conn.prepareStatement("select id, nick, realname, email, salt, password from users where id=?")) {
-            ps.setLong(1, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                return new User(rs.getLong("id"), rs.getString("nick"), rs.getString("realname"), rs.getString("email"));
-            }
-        }
+        return store.getUserById(id);
     }
 
     public User changeUserName(User user, String newName) throws Exception {
-        try (PreparedStatement ps = conn.prepareStatement("update users set realname=? where id=?")) {
-            ps.setString(1, newName);
-            ps.setLong(2, user.id);
-            ps.executeUpdate();
-        }
-
+        store.changeRealname(user.id, newName);
         return getUserById(user.id);
     }
 
     public boolean existsUser(String nick) throws Exception {
-        try (PreparedStatement ps = conn.prepareStatement("select id, realname, email, salt, password from users where nick=?")) {
-            ps.setString(1, nick);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
-            }
-        }
+        return store.existsUser(nick);
     }
 
     public boolean userInVault(String nick) throws Exception {
-        try (PreparedStatement ps = conn.prepareStatement("select hash from user_vault where hash=?")) {
-            ps.setString(1, sha256Hex(nick));
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
-            }
-        }
+        return store.userInVault(nick);
     }
 
     public User getUser(String nick, String givenPassword) throws Exception {
-        try (PreparedStatement ps = conn.prepareStatement("select id, realname, email, salt, password from users where nick=?");) {
-            ps.setString(1, nick);
-            try (ResultSet rs = ps.executeQuery()) {
-                boolean found = rs.next();
-                if (!found) return null;
-                String salt = defaultString(rs.getString("salt"));
-                String password = defaultString(rs.getString("password"));
-                if (!sha256Hex(salt + givenPassword).equals(password)) return null;
-                Long id = rs.getLong("id");
-                String realname = rs.getString("realname");
-                String email = rs.getString("email");
-                return new User(id, nick, realname, email);
-            }
-        }
+        return store.getUser(nick, givenPassword);
     }
 
     public void killUser(String nick) throws Exception {
-        try (PreparedStatement ps = conn.prepareStatement("delete from users where nick=?")) {
-            ps.setString(1, nick);
-            ps.executeUpdate();
-        }
-
-        try (PreparedStatement ps = conn.prepareStatement("delete from messages where user_to=?")) {
-            ps.setString(1, nick);
-            ps.executeUpdate();
-        }
-
-        try (PreparedStatement ps = conn.prepareStatement("insert into user_vault (hash) values (?)")) {
-            ps.setString(1, sha256Hex(nick));
-            ps.executeUpdate();
-        }
-    }
-
-    public void createDatabase(Properties properties) throws Exception {
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DB_FILE, properties)) {
-
-            try (Statement s = conn.createStatement()) {
-                s.executeUpdate(
-                        "CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, nick TEXT, realname TEXT, email TEXT, salt text, password TEXT)");
-            }
-
-            try (Statement s = conn.createStatement()) {
-                s.executeUpdate(
-                        "CREATE TABLE messages (user_from TEXT, user_to TEXT, datetime INTEGER, is_read INTEGER, subject TEXT, message TEXT)");
-            }
-
-            try (Statement s = conn.createStatement()) {
-                s.executeUpdate("CREATE TABLE user_vault (hash TEXT)");
-            }
-        }
+        store.killUser(nick);
     }
 
     private static final byte[] LOGO_BYTES = new byte[] {
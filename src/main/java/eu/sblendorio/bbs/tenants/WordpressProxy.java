@@ -11,6 +11,7 @@ import static eu.sblendorio.bbs.core.Utils.filterPrintableWithNewline;
 import static eu.sblendorio.bbs.core.Utils.normalizeDomain;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyMap;
+import static java.util.Collections.synchronizedMap;
 import static org.apache.commons.collections4.MapUtils.isEmpty;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
 import static org.apache.commons.lang3.StringUtils.SPACE;
@@ -38,6 +39,7 @@ import org.slf4j.LoggerFactory;
 import eu.sblendorio.bbs.core.Hidden;
 import eu.sblendorio.bbs.core.HtmlUtils;
 import eu.sblendorio.bbs.core.PetsciiThread;
+import eu.sblendorio.bbs.core.RenderedPageCache;
 
 @Hidden
 public class WordpressProxy extends PetsciiThread {
@@ -45,10 +47,21 @@ public class WordpressProxy extends PetsciiThread {
     static final String HR_TOP = StringUtils.repeat(chr(163), 39);
     private static final Logger logger = LoggerFactory.getLogger(WordpressProxy.class);
 
+    private static final int MAX_AUTHORS = 4096;
+
+    /* Author names by domain and author id, shared by all the sessions */
+    private static final Map<String, String> authors = synchronizedMap(new LinkedHashMap<String, String>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_AUTHORS;
+        }
+    });
+
     static class Post {
         long id;
         String title;
         String date;
+        String modified;
         String content;
         String excerpt;
         Long authorId;
@@ -58,6 +71,7 @@ public class WordpressProxy extends PetsciiThread {
     protected byte[] logo = LOGO_WORDPRESS;
     protected int pageSize = 10;
     protected int screenRows = 19;
+    protected int screenWidth = 39;
     protected boolean showAuthor = false;
 
     protected Map<Integer, Post> posts = emptyMap();
@@ -187,6 +201,7 @@ public class WordpressProxy extends PetsciiThread {
             post.id = (Long) postJ.get("id");
             post.content = ((String) ((JSONObject) postJ.get("content")).get("rendered")).replaceAll("(?is)(\\[/?vc_[^]]*\\])*", EMPTY);
             post.title = (String) ((JSONObject) postJ.get("title")).get("rendered");
+            post.modified = defaultString((String) postJ.get("modified"), String.valueOf(post.content.hashCode()));
             post.date = ((String) postJ.get("date")).replace("T", SPACE).replaceAll(":\\d\\d\\s*$", EMPTY);
             post.excerpt = (String) ((JSONObject) postJ.get("excerpt")).get("rendered");
             post.authorId = toLong(postJ.get("author").toString());
@@ -219,7 +234,7 @@ public class WordpressProxy extends PetsciiThread {
         List<String> result = new ArrayList<>();
         for (String item: cleaned) {
             String[] wrappedLine = WordUtils
-                    .wrap(item, 39, "\n", true)
+                    .wrap(item, screenWidth, "\n", true)
                     .split("\n");
             result.addAll(asList(wrappedLine));
         }
@@ -240,32 +255,11 @@ public class WordpressProxy extends PetsciiThread {
         drawLogo();
         waitOn();
 
-        String author = null;
         final Post p = posts.get(n);
-
-        try {
-            if (showAuthor) {
-                JSONObject authorJ = (JSONObject) httpGetJson(getApi() + "users/" + p.authorId);
-                author = authorJ.get("name").toString();
-            }
-        } catch (Exception e) {
-            log("Error during retrieving author");
-            logger.error("Error during retrieving author", e);
-        }
-        final String content = p.content
-                .replaceAll("(?is)<style>.*</style>", EMPTY)
-                .replaceAll("(?is)<script .*</script>", EMPTY)
-                .replaceAll("</p>", "<br><br>")  
-                .replaceAll("<p>", EMPTY) 
-                .replaceAll("(?is)^[\\s\\n\\r]+|^\\s*(</?(div|figure|iframe|img|h[0-9])[^>]*>\\s*)+", EMPTY)
-                .replaceAll("(?is)^(<[^>]+>(\\s|\n|\r)*)+", EMPTY);
-        final String head = p.title + (isNotBlank(author) ? " - di " + author : EMPTY) + "<br>" + HR_TOP ;
-        List<String> rows = wordWrap(head);
-
-        List<String> article = wordWrap(p.date.replaceAll("^(\\d\\d\\d\\d).(\\d\\d).(\\d\\d).*","$3/$2/$1") +
-                " - " + content
-        );
-        rows.addAll(article);
+        final String author = showAuthor ? getAuthor(p.authorId) : null;
+        final List<String> rows = RenderedPageCache.getInstance().get(
+                domain + "\n" + p.id + "\n" + p.modified + "\n" + screenWidth + "\n" + defaultString(author),
+                () -> renderPost(p, author));
         waitOff();
         int page = 1;
         int j = 0;
@@ -303,6 +297,39 @@ public class WordpressProxy extends PetsciiThread {
         println();
     }
 
+    protected String getAuthor(Long authorId) {
+        final String key = domain + "\n" + authorId;
+        String author = authors.get(key);
+        if (author != null) return author;
+        try {
+            JSONObject authorJ = (JSONObject) httpGetJson(getApi() + "users/" + authorId);
+            author = authorJ.get("name").toString();
+            authors.put(key, author);
+        } catch (Exception e) {
+            log("Error during retrieving author");
+            logger.error("Error during retrieving author", e);
+        }
+        return author;
+    }
+
+    protected List<String> renderPost(Post p, String author) {
+        final String content = p.content
+                .replaceAll("(?is)<style>.*</style>", EMPTY)
+                .replaceAll("(?is)<script .*</script>", EMPTY)
+                .replaceAll("</p>", "<br><br>")  
+                .replaceAll("<p>", EMPTY) 
+                .replaceAll("(?is)^[\\s\\n\\r]+|^\\s*(</?(div|figure|iframe|img|h[0-9])[^>]*>\\s*)+", EMPTY)
+                .replaceAll("(?is)^(<[^>]+>(\\s|\n|\r)*)+", EMPTY);
+        final String head = p.title + (isNotBlank(author) ? " - di " + author : EMPTY) + "<br>" + HR_TOP ;
+        List<String> rows = wordWrap(head);
+
+        List<String> article = wordWrap(p.date.replaceAll("^(\\d\\d\\d\\d).(\\d\\d).(\\d\\d).*","$3/$2/$1") +
+                " - " + content
+        );
+        rows.addAll(article);
+        return rows;
+    }
+
     protected void waitOn() {
         print("PLEASE WAIT...");
         flush();
@@ -3,6 +3,8 @@ package eu.sblendorio.bbs.tenants;
 import org.apache.commons.lang3.StringUtils;
 import org.zmpp.textui.VirtualConsole;
 import org.zmpp.textui.bbs.BBSMachineFactory;
+import org.zmpp.textui.bbs.StoryRegistry;
+import org.zmpp.vm.StoryTemplate;
 
 import eu.sblendorio.bbs.core.Colors;
 import eu.sblendorio.bbs.core.Keys;
@@ -37,9 +39,9 @@ public class ZorkMachine extends PetsciiThread {
         write(Colors.GREY3);
 
         try {
-            final byte[] story = readBinaryFile(filename);
+            final StoryTemplate story = StoryRegistry.getInstance().get(filename, () -> readBinaryFile(filename));
             BBSMachineFactory factory;
-            factory = new BBSMachineFactory(story, this);
+            factory = new BBSMachineFactory(story, this, loggedUser());
             factory.buildMachine();
             VirtualConsole console = factory.getUI();
             console.runTheGame();
@@ -51,4 +53,12 @@ public class ZorkMachine extends PetsciiThread {
             log("Exiting zork machine (" + filename + ")");
         }
     }
+
+    /**
+     * @return the nick of the user logged in from the menu, null for guests
+     */
+    private String loggedUser() {
+        final Object custom = parent == null ? null : parent.getCustomObject();
+        return custom instanceof UserLogon.User ? ((UserLogon.User) custom).nick : null;
+    }
 }
@@ -1,30 +1,32 @@
 package net.sourceforge.droid64.addons;
 
+import eu.sblendorio.bbs.core.SharedHttpClient;
 import net.sourceforge.droid64.d64.CbmException;
 import net.sourceforge.droid64.d64.CbmFile;
 import net.sourceforge.droid64.d64.DiskImage;
+import net.sourceforge.droid64.d64.Utility;
 import net.sourceforge.droid64.db.DiskFile;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.zip.*;
 
 import static eu.sblendorio.bbs.core.PetsciiThread.DownloadData;
-import static eu.sblendorio.bbs.core.PetsciiThread.download;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
 import static org.apache.commons.lang3.StringUtils.defaultString;
 
 public class DiskUtilities {
 
+    /* A .d64.gz in a zip, possibly gzipped once more */
+    private static final int MAX_ARCHIVE_DEPTH = 3;
+
     /* This main is for testing purposes only */
     public static void main(String[] args) throws IOException, CbmException {
         String url = "http://www.sblendorio.eu/b.t64.gz";
@@ -37,20 +39,17 @@ public class DiskUtilities {
     }
 
     public static byte[] getPrgContentFromUrl(String urlString) throws IOException, CbmException {
-        DownloadData file = download(new URL(urlString));
-        return getPrgContentFromFile(file);
+        return getPrgContentFromUrl(urlString, null);
+    }
+
+    public static byte[] getPrgContentFromUrl(String urlString, SharedHttpClient.Progress progress) throws IOException, CbmException {
+        return DownloadCache.getInstance().getPrgContent(urlString, progress);
     }
 
     public static byte[] getPrgContentFromFile(DownloadData file) throws CbmException, IOException {
         byte[] result;
 
-        if (defaultString(file.getFilename()).matches("(?is)^.*\\.gz$"))
-            file = new DownloadData(
-                    defaultString(file.getFilename()).replaceAll("(?is)\\.gz$", EMPTY),
-                    readGZippedBytes(file.getContent()));
-
-        if (isValidZip(file.getContent()))
-            file = singleFileInZip(file.getContent());
+        file = unpack(file);
 
         if (file == null || !isValidFilename(file.getFilename()))
             return null;
@@ -70,20 +69,25 @@ public class DiskUtilities {
         return result;
     }
 
-    private static boolean isValidZip(byte[] content) throws IOException {
-        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(content))) {
-            return zis.getNextEntry() != null;
-        } catch (ZipException e) {
-            return false;
+    /* Removes gzip and zip layers, told apart by their magic bytes, in a single pass over each */
+    private static DownloadData unpack(DownloadData file) throws CbmException, IOException {
+        for (int depth = 0; file != null; ++depth) {
+            final byte[] content = file.getContent();
+            final boolean gzipped = Utility.isGZipped(content);
+            if (!gzipped && !isZip(content))
+                return file;
+            if (depth == MAX_ARCHIVE_DEPTH)
+                return null;
+            file = gzipped
+                    ? new DownloadData(defaultString(file.getFilename()).replaceAll("(?is)\\.gz$", EMPTY), readGZippedBytes(content))
+                    : singleFileInZip(content);
         }
+        return null;
     }
 
-    private static List<String> getZipEntries(byte[] content) throws IOException {
-        List<String> result = new ArrayList<>();
-        ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(content));
-        ZipEntry entry;
-        while ((entry = zis.getNextEntry()) != null) result.add(entry.getName());
-        return result;
+    private static boolean isZip(byte[] content) {
+        return content != null && content.length >= 4
+                && content[0] == 'P' && content[1] == 'K' && content[2] == 3 && content[3] == 4;
     }
 
     private static boolean isValidFilename(String filename) {
@@ -129,41 +133,30 @@ public class DiskUtilities {
         }
     }
 
+    /* Extracts the only wanted entry while listing the zip, null if there are none or more than one */
     private static DownloadData singleFileInZip(byte[] content) throws IOException {
-        List<String> fileList = getZipEntries(content);
-        int count = 0;
-        String filename = null;
-        for (String file: fileList) {
-            if (file.matches("(?is)^.*\\.(p00|prg|d64|d71|d81|d82|t64|d64\\.gz|d71\\.gz|d81\\.gz|d82\\.gz|t64\\.gz)$") &&
-                !file.matches("^.*/\\.[^/]+?$")) {
-                ++count;
-                filename = file;
+        DownloadData result = null;
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(content))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (!isWantedEntry(entry.getName()))
+                    continue;
+                if (result != null)
+                    return null;
+                result = new DownloadData(entry.getName(), readEntry(zis, entry));
             }
         }
-        return getDownloadData(content, count, filename);
+        return result;
     }
 
-    static DownloadData getDownloadData(byte[] content, int count, String filename) throws IOException {
-        if(count != 1) {
-            return null;
-        }
+    private static boolean isWantedEntry(String name) {
+        return name.matches("(?is)^.*\\.(p00|prg|d64|d71|d81|d82|t64|d64\\.gz|d71\\.gz|d81\\.gz|d82\\.gz|t64\\.gz)$") &&
+                !name.matches("^.*/\\.[^/]+?$");
+    }
 
-        byte[] buffer = new byte[8192];
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(content));
-        ZipEntry entry = zis.getNextEntry();
-        while (entry != null) {
-            if (entry.getName().equals(filename)) {
-                int len;
-                while ((len = zis.read(buffer)) > 0) {
-                    baos.write(buffer, 0, len);
-                }
-                baos.close();
-                break;
-            }
-            entry = zis.getNextEntry();
-        }
-        return new DownloadData(filename, baos.toByteArray());
+    private static byte[] readEntry(InputStream zis, ZipEntry entry) throws IOException {
+        final long size = entry.getSize();
+        return Utility.readFully(zis, size > 0 && size <= Integer.MAX_VALUE ? (int) size : 0, Utility.MAX_UNCOMPRESSED_SIZE);
     }
 
     public static byte[] zipBytes(String filename, byte[] input) throws IOException {
@@ -179,13 +172,8 @@ public class DiskUtilities {
     }
 
     public static byte[] readGZippedBytes(byte[] content) throws CbmException {
-        try (ByteArrayInputStream fis = new ByteArrayInputStream(content);
-             GZIPInputStream gis = new GZIPInputStream(fis, 65536);
-             ByteArrayOutputStream bos = new ByteArrayOutputStream(1048576)) {
-            while (gis.available() == 1) {
-                bos.write(gis.read());
-            }
-            return bos.toByteArray();
+        try {
+            return Utility.gunzip(content);
         } catch (IOException e) {
             throw new CbmException("Error during GUnZipping" + e.getMessage(), e);
         }
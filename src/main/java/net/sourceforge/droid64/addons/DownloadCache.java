@@ -0,0 +1,559 @@
+package net.sourceforge.droid64.addons;
+
+import eu.sblendorio.bbs.core.PetsciiThread;
+import eu.sblendorio.bbs.core.SharedHttpClient;
+import net.sourceforge.droid64.d64.CbmException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static eu.sblendorio.bbs.core.PetsciiThread.DownloadData;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Process-wide cache of the programs downloaded for XMODEM transfers.
+ *
+ * An entry holds a download as it came from the server, keyed by a hash of
+ * its file name and content: two URLs serving the same file share one entry.
+ * The program DiskUtilities extracts from it (or the fact that there was
+ * none) is added to the entry the first time it is asked for: a file only
+ * downloaded is never unpacked. Downloads are fetched past SharedHttpClient's
+ * cache, so that their bodies are kept once, here.
+ *
+ * A second map goes from the URL to the entry and is trusted for a time-to-live, after which the file is downloaded again but
+ * extracted again only if its content changed. That map is an LRU too,
+ * bounded by a number of URLs, and loses the URLs of the entries evicted from
+ * disk.
+ *
+ * Entries are kept in a byte-bounded LRU in memory and in a larger one on
+ * disk, [dir]/data/[hash].dat and [dir]/urls/[hash of url].url, written by a
+ * background thread to a temporary file and then renamed. Both directories
+ * are indexed when the cache is created, so that a restarted BBS serves the
+ * popular releases without downloading them. Two sessions missing the same
+ * URL at the same time both extract it: the result is the same either way.
+ */
+public class DownloadCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadCache.class);
+
+    public static final String DEFAULT_DIR = System.getProperty("user.home") + "/bbs-downloads";
+    private static final long DEFAULT_URL_TTL_MILLIS = 7L * 24 * 60 * 60 * 1000;
+    private static final long DEFAULT_MAX_MEMORY_BYTES = 32L * 1024 * 1024;
+    private static final long DEFAULT_MAX_DISK_BYTES = 512L * 1024 * 1024;
+    private static final long DEFAULT_MAX_ENTRY_BYTES = 4L * 1024 * 1024;
+    private static final int DEFAULT_MAX_URLS = 16384;
+
+    private static final String DATA_EXTENSION = ".dat";
+    private static final String URL_EXTENSION = ".url";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    /* Program lengths on disk with no program: none found, not looked for yet */
+    private static final int NO_PRG = -1;
+    private static final int NOT_EXTRACTED = -2;
+
+    private static final DownloadCache instance = new DownloadCache(new File(DEFAULT_DIR),
+            DEFAULT_URL_TTL_MILLIS, DEFAULT_MAX_MEMORY_BYTES, DEFAULT_MAX_DISK_BYTES, DEFAULT_MAX_ENTRY_BYTES, true);
+
+    public static DownloadCache getInstance() { return instance; }
+
+    /** A download and the program extracted from it, if any yet. Arrays must not be modified by callers. */
+    private static class Entry {
+        final String key;
+        final String filename;
+        final byte[] raw;
+        final boolean extracted;
+        final byte[] prg;
+
+        Entry(String key, String filename, byte[] raw) {
+            this(key, filename, raw, false, null);
+        }
+
+        private Entry(String key, String filename, byte[] raw, boolean extracted, byte[] prg) {
+            this.key = key;
+            this.filename = filename;
+            this.raw = raw;
+            this.extracted = extracted;
+            this.prg = prg;
+        }
+
+        Entry withPrg(byte[] prg) {
+            return new Entry(key, filename, raw, true, prg);
+        }
+
+        long bytes() {
+            return raw.length + (prg == null ? 0 : prg.length);
+        }
+    }
+
+    private static class UrlEntry {
+        final String key;
+        final long storedAt;
+
+        UrlEntry(String key, long storedAt) {
+            this.key = key;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private final File dataDir;
+    private final File urlDir;
+    private final long urlTtlMillis;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private final long maxEntryBytes;
+    private final int maxUrls;
+    private final ExecutorService writer;
+
+    /* url -> key of its entry, least recently used first */
+    private final LinkedHashMap<String, UrlEntry> urls = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes = 0;
+
+    /* key -> size of the entries on disk, least recently used first */
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(64, 0.75f, true);
+    private long diskBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong diskHits = new AtomicLong(0);
+    private final AtomicLong downloads = new AtomicLong(0);
+    private final AtomicLong extractions = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    private final AtomicLong failures = new AtomicLong(0);
+
+    DownloadCache(File dir, long urlTtlMillis, long maxMemoryBytes, long maxDiskBytes, long maxEntryBytes,
+                  boolean writeInBackground) {
+        this(dir, urlTtlMillis, maxMemoryBytes, maxDiskBytes, maxEntryBytes, DEFAULT_MAX_URLS, writeInBackground);
+    }
+
+    DownloadCache(File dir, long urlTtlMillis, long maxMemoryBytes, long maxDiskBytes, long maxEntryBytes,
+                  int maxUrls, boolean writeInBackground) {
+        this.dataDir = new File(dir, "data");
+        this.urlDir = new File(dir, "urls");
+        this.urlTtlMillis = urlTtlMillis;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.maxUrls = maxUrls;
+        this.writer = writeInBackground
+                ? Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "download-cache-writer");
+                    t.setDaemon(true);
+                    return t;
+                })
+                : null;
+        scan();
+    }
+
+    /**
+     * @return the file at url as the server sent it
+     */
+    public DownloadData download(String url) throws IOException {
+        return download(url, null);
+    }
+
+    /**
+     * @param progress notified while the file is downloaded, if it is not in cache
+     * @return the file at url as the server sent it
+     */
+    public DownloadData download(String url, SharedHttpClient.Progress progress) throws IOException {
+        final Entry entry = entryOf(url, progress);
+        return new DownloadData(entry.filename, entry.raw);
+    }
+
+    /**
+     * @return the program to transfer for the file at url, null if there is none
+     */
+    public byte[] getPrgContent(String url) throws IOException, CbmException {
+        return getPrgContent(url, null);
+    }
+
+    /**
+     * @param progress notified while the file is downloaded, if it is not in cache
+     * @return the program to transfer for the file at url, null if there is none
+     */
+    public byte[] getPrgContent(String url, SharedHttpClient.Progress progress) throws IOException, CbmException {
+        return extracted(entryOf(url, progress)).prg;
+    }
+
+    /**
+     * @return the program to transfer for an already downloaded file, null if there is none
+     */
+    public byte[] getPrgContent(DownloadData file) throws IOException, CbmException {
+        return extracted(entryOf(file)).prg;
+    }
+
+    private Entry entryOf(String url, SharedHttpClient.Progress progress) throws IOException {
+        final UrlEntry known;
+        synchronized (urls) {
+            known = urls.get(url);
+        }
+        if (known != null && System.currentTimeMillis() - known.storedAt < urlTtlMillis) {
+            final Entry entry = lookup(known.key);
+            if (entry != null) return entry;
+        }
+        downloads.incrementAndGet();
+        final DownloadData file = PetsciiThread.download(new URL(url), null, progress, false);
+        final String key = keyOf(file);
+        final Entry entry = entryOf(file, key);
+        final UrlEntry urlEntry = new UrlEntry(key, System.currentTimeMillis());
+        final List<String> evicted = putUrl(url, urlEntry);
+        execute(() -> {
+            deleteUrls(evicted);
+            if (entry.bytes() <= maxEntryBytes && isCurrent(url, urlEntry)) writeUrl(url, urlEntry);
+        });
+        return entry;
+    }
+
+    /**
+     * @return the least recently used URLs that made room for this one
+     */
+    private List<String> putUrl(String url, UrlEntry urlEntry) {
+        final List<String> evicted = new ArrayList<>();
+        synchronized (urls) {
+            urls.put(url, urlEntry);
+            final Iterator<String> eldest = urls.keySet().iterator();
+            while (urls.size() > maxUrls && eldest.hasNext()) {
+                evicted.add(eldest.next());
+                eldest.remove();
+            }
+        }
+        return evicted;
+    }
+
+    private Entry entryOf(DownloadData file) {
+        return entryOf(file, keyOf(file));
+    }
+
+    private Entry entryOf(DownloadData file, String key) {
+        final Entry cached = lookup(key);
+        if (cached != null) return cached;
+        final Entry entry = new Entry(key, file.getFilename(), file.getContent());
+        store(entry);
+        return entry;
+    }
+
+    /**
+     * @return entry with the program extracted from its download, which is extracted now if it never was
+     */
+    private Entry extracted(Entry entry) throws IOException, CbmException {
+        if (entry.extracted) return entry;
+        extractions.incrementAndGet();
+        final Entry result = entry.withPrg(DiskUtilities.getPrgContentFromFile(new DownloadData(entry.filename, entry.raw)));
+        store(result);
+        return result;
+    }
+
+    private void store(Entry entry) {
+        if (entry.bytes() > maxEntryBytes) return;
+        remember(entry.key, entry);
+        execute(() -> writeEntry(entry.key, entry));
+    }
+
+    private Entry lookup(String key) {
+        synchronized (memory) {
+            final Entry entry = memory.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry;
+            }
+        }
+        synchronized (disk) {
+            if (disk.get(key) == null) return null;
+        }
+        final File file = dataFile(key);
+        final Entry entry;
+        try {
+            entry = readEntry(key, file);
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            logger.warn("Couldn't read cached download {}: {}", file, e.toString());
+            execute(() -> deleteEntry(key));
+            return null;
+        }
+        diskHits.incrementAndGet();
+        remember(key, entry);
+        execute(() -> file.setLastModified(System.currentTimeMillis()));
+        return entry;
+    }
+
+    private void remember(String key, Entry entry) {
+        synchronized (memory) {
+            final Entry previous = memory.put(key, entry);
+            if (previous != null) memoryBytes -= previous.bytes();
+            memoryBytes += entry.bytes();
+            final Iterator<Entry> eldest = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= eldest.next().bytes();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Waits for the queued writes to be on disk.
+     */
+    public void flush() throws InterruptedException {
+        if (writer == null) return;
+        try {
+            writer.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void execute(Runnable task) {
+        if (writer == null) {
+            task.run();
+        } else {
+            writer.execute(task);
+        }
+    }
+
+    private void writeEntry(String key, Entry entry) {
+        final File file = dataFile(key);
+        try {
+            writeAtomically(file, out -> {
+                out.writeUTF(entry.filename == null ? "" : entry.filename);
+                out.writeInt(entry.raw.length);
+                out.write(entry.raw);
+                out.writeInt(!entry.extracted ? NOT_EXTRACTED : entry.prg == null ? NO_PRG : entry.prg.length);
+                if (entry.prg != null) out.write(entry.prg);
+            });
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            logger.warn("Couldn't write cached download {}: {}", file, e.toString());
+            return;
+        }
+        final long size = file.length();
+        synchronized (disk) {
+            final Long previous = disk.put(key, size);
+            if (previous != null) diskBytes -= previous;
+            diskBytes += size;
+        }
+        evictFromDisk();
+    }
+
+    /* false if the url was evicted, or its entry deleted, before it was written */
+    private boolean isCurrent(String url, UrlEntry urlEntry) {
+        synchronized (urls) {
+            return urls.get(url) == urlEntry;
+        }
+    }
+
+    private void writeUrl(String url, UrlEntry urlEntry) {
+        final File file = urlFile(url);
+        try {
+            writeAtomically(file, out -> {
+                out.writeUTF(url);
+                out.writeUTF(urlEntry.key);
+            });
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            logger.warn("Couldn't write cached URL {}: {}", file, e.toString());
+        }
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static void writeAtomically(File file, Writer content) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        final File temp = new File(file.getParentFile(), file.getName() + TEMP_EXTENSION);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            content.write(out);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Entry readEntry(String key, File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            final String filename = in.readUTF();
+            final byte[] raw = new byte[in.readInt()];
+            in.readFully(raw);
+            final Entry entry = new Entry(key, filename, raw);
+            final int prgLength = in.readInt();
+            if (prgLength == NOT_EXTRACTED) return entry;
+            byte[] prg = null;
+            if (prgLength >= 0) {
+                prg = new byte[prgLength];
+                in.readFully(prg);
+            }
+            return entry.withPrg(prg);
+        }
+    }
+
+    private void evictFromDisk() {
+        while (true) {
+            final String key;
+            synchronized (disk) {
+                if (diskBytes <= maxDiskBytes || disk.isEmpty()) return;
+                key = disk.keySet().iterator().next();
+            }
+            evictions.incrementAndGet();
+            deleteEntry(key);
+        }
+    }
+
+    private void deleteEntry(String key) {
+        synchronized (disk) {
+            final Long size = disk.remove(key);
+            if (size != null) diskBytes -= size;
+        }
+        try {
+            Files.deleteIfExists(dataFile(key).toPath());
+        } catch (IOException e) {
+            logger.warn("Couldn't delete cached download {}: {}", key, e.toString());
+        }
+        final List<String> orphans = new ArrayList<>();
+        synchronized (urls) {
+            final Iterator<Map.Entry<String, UrlEntry>> i = urls.entrySet().iterator();
+            while (i.hasNext()) {
+                final Map.Entry<String, UrlEntry> url = i.next();
+                if (url.getValue().key.equals(key)) {
+                    orphans.add(url.getKey());
+                    i.remove();
+                }
+            }
+        }
+        deleteUrls(orphans);
+    }
+
+    private void deleteUrls(List<String> evicted) {
+        for (String url : evicted) {
+            try {
+                Files.deleteIfExists(urlFile(url).toPath());
+            } catch (IOException e) {
+                logger.warn("Couldn't delete cached URL {}: {}", url, e.toString());
+            }
+        }
+    }
+
+    /* The warm index: the entries on disk, oldest first, and the URLs still fresh */
+    private void scan() {
+        final File[] entries = dataDir.listFiles((d, n) -> n.endsWith(DATA_EXTENSION));
+        if (entries != null) {
+            Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+            synchronized (disk) {
+                for (File file : entries) {
+                    final String name = file.getName();
+                    disk.put(name.substring(0, name.length() - DATA_EXTENSION.length()), file.length());
+                    diskBytes += file.length();
+                }
+            }
+        }
+        final File[] urlFiles = urlDir.listFiles((d, n) -> n.endsWith(URL_EXTENSION));
+        if (urlFiles != null) {
+            Arrays.sort(urlFiles, Comparator.comparingLong(File::lastModified));
+            final long now = System.currentTimeMillis();
+            for (File file : urlFiles) {
+                final long storedAt = file.lastModified();
+                try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                    final String url = in.readUTF();
+                    final String key = in.readUTF();
+                    final boolean fresh = now - storedAt < urlTtlMillis;
+                    final boolean onDisk;
+                    synchronized (disk) {
+                        onDisk = disk.containsKey(key);
+                    }
+                    if (fresh && onDisk) {
+                        deleteUrls(putUrl(url, new UrlEntry(key, storedAt)));
+                        continue;
+                    }
+                } catch (IOException e) {
+                    logger.warn("Couldn't read cached URL {}: {}", file, e.toString());
+                }
+                if (!file.delete()) logger.debug("Couldn't delete cached URL {}", file);
+            }
+        }
+        evictFromDisk();
+    }
+
+    private File dataFile(String key) {
+        return new File(dataDir, key + DATA_EXTENSION);
+    }
+
+    private File urlFile(String url) {
+        return new File(urlDir, hex(sha256().digest(url.getBytes(UTF_8))) + URL_EXTENSION);
+    }
+
+    private static String keyOf(DownloadData file) {
+        final MessageDigest digest = sha256();
+        if (file.getFilename() != null) digest.update(file.getFilename().getBytes(UTF_8));
+        digest.update((byte) 0);
+        if (file.getContent() != null) digest.update(file.getContent());
+        return hex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        final StringBuilder result = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return result.toString();
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getDiskHits() { return diskHits.get(); }
+    public long getDownloads() { return downloads.get(); }
+    public long getExtractions() { return extractions.get(); }
+
+    public String stats() {
+        final long memoryKb;
+        final int entries;
+        final int urlCount;
+        synchronized (urls) {
+            urlCount = urls.size();
+        }
+        synchronized (memory) {
+            memoryKb = memoryBytes / 1024;
+        }
+        final long diskKb;
+        synchronized (disk) {
+            diskKb = diskBytes / 1024;
+            entries = disk.size();
+        }
+        return "hits=" + getHits() +
+                ", diskHits=" + getDiskHits() +
+                ", downloads=" + getDownloads() +
+                ", extractions=" + getExtractions() +
+                ", evictions=" + evictions.get() +
+                ", failures=" + failures.get() +
+                ", urls=" + urlCount +
+                ", entries=" + entries +
+                ", memory=" + memoryKb + "KB" +
+                ", disk=" + diskKb + "KB";
+    }
+
+}
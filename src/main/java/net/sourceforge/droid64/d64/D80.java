@@ -1,6 +1,5 @@
 package net.sourceforge.droid64.d64;
 
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -186,29 +185,9 @@ public class D80 extends DiskImage {
 			throw new CbmException("getFileData: File number " + number + " is deleted.");
 		}
 		feedbackMessage.append("getFileData: ").append(number).append(" '").append(cbmFile[number].getName()).append("'\n");
-		feedbackMessage.append("Tracks / Sectors: ");
-		int thisTrack = cbmFile[number].getTrack();
-		int thisSector = cbmFile[number].getSector();
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		do {
-			if (thisTrack >= D80Constants.D80_TRACKS.length) {
-				throw new CbmException("Track " + thisTrack + " outside of image.");
-			}
-			int blockPos = D80Constants.D80_TRACKS[thisTrack].getOffset() + (BLOCK_SIZE * thisSector);
-			int nextTrack = getCbmDiskValue(thisTrack, thisSector, 0x00);
-			int nextSector = getCbmDiskValue(thisTrack, thisSector, 0x01);
-			feedbackMessage.append(thisTrack).append("/").append(thisSector).append(Utility.SPACE);
-			if (nextTrack > 0) {
-				out.write(cbmDisk, blockPos + 2, BLOCK_SIZE - 2);
-			} else {
-				feedbackMessage.append("\nRemaining bytes: ").append(nextSector).append("\n");
-				out.write(cbmDisk, blockPos + 2, nextSector - 2 + 1);
-			}
-			thisTrack = nextTrack;
-			thisSector = nextSector;
-		} while (thisTrack != 0);
+		byte[] data = readSectorChain(cbmFile[number].getTrack(), cbmFile[number].getSector(), D80Constants.D80_TRACKS.length - 1);
 		feedbackMessage.append("OK.\n");
-		return out.toByteArray();
+		return data;
 	}
 
 	@Override
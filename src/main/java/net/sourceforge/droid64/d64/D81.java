@@ -1,6 +1,5 @@
 package net.sourceforge.droid64.d64;
 
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -238,29 +237,9 @@ public class D81 extends DiskImage {
 			throw new CbmException("getFileData: File number " + number + " is deleted.");
 		}
 		feedbackMessage.append("getFileData: ").append(number).append(" '").append(cbmFile[number].getName()).append("'\n");
-		feedbackMessage.append("Tracks / Sectors: ");
-		int track = cbmFile[number].getTrack();
-		int sector = cbmFile[number].getSector();
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		do {
-			if (track > TRACK_COUNT) {
-				throw new CbmException("Track " + track + " outside of image.");
-			}
-			int blockPos = getSectorOffset(track, sector);
-			int nextTrack  = getCbmDiskValue(blockPos + 0x00);
-			int nextSector = getCbmDiskValue(blockPos + 0x01);
-			feedbackMessage.append(track).append("/").append(sector).append(Utility.SPACE);
-			if (nextTrack > 0) {
-				out.write(cbmDisk, blockPos + 2, BLOCK_SIZE - 2);
-			} else {
-				feedbackMessage.append("\nRemaining bytes: ").append(nextSector).append("\n");
-				out.write(cbmDisk, blockPos + 2, nextSector - 2 + 1);
-			}
-			track = nextTrack;
-			sector = nextSector;
-		} while (track != 0);
+		byte[] data = readSectorChain(cbmFile[number].getTrack(), cbmFile[number].getSector(), TRACK_COUNT);
 		feedbackMessage.append("OK.\n");
-		return out.toByteArray();
+		return data;
 	}
 
 	@Override
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -116,6 +117,8 @@ public abstract class DiskImage implements Serializable {
 	protected boolean compressed;
 	/** Error messages are appended here, and get presented in GUI */
 	protected StringBuilder feedbackMessage = new StringBuilder();
+	/** When true, getFileData appends the track/sector chain of each file to feedbackMessage */
+	protected boolean traceSectorChains = false;
 	/** Data of the whole image. */
 	protected byte[] cbmDisk = null;
 	/** Number of files in image */
@@ -195,6 +198,63 @@ public abstract class DiskImage implements Serializable {
 	 * @throws CbmException when error
 	 */
 	public abstract byte[] getFileData(int number) throws CbmException;
+
+	/**
+	 * Get data of a file stored as a chain of linked sectors.<br>
+	 * The chain is walked twice: once to check it and measure the file, then to copy
+	 * the data into an array of the right size. Each sector may be visited once only,
+	 * so a corrupt chain looping back on itself is reported instead of followed forever.
+	 * @param track first track of the file
+	 * @param sector first sector of the file
+	 * @param lastTrack highest track number of this type of image
+	 * @return byte array with file contents
+	 * @throws CbmException when the chain leaves the image or loops
+	 */
+	protected byte[] readSectorChain(int track, int sector, int lastTrack) throws CbmException {
+		byte[] data = new byte[walkSectorChain(track, sector, lastTrack, null)];
+		walkSectorChain(track, sector, lastTrack, data);
+		return data;
+	}
+
+	private int walkSectorChain(int track, int sector, int lastTrack, byte[] data) throws CbmException {
+		BitSet visited = new BitSet(cbmDisk.length / BLOCK_SIZE);
+		boolean trace = data != null && traceSectorChains;
+		if (trace) {
+			feedbackMessage.append("Tracks / Sectors: ");
+		}
+		int length = 0;
+		int thisTrack = track;
+		int thisSector = sector;
+		do {
+			if (thisTrack < 1 || thisTrack > lastTrack) {
+				throw new CbmException("Track " + thisTrack + " outside of image.");
+			}
+			int blockPos = getSectorOffset(thisTrack, thisSector);
+			if (thisSector < 0 || thisSector >= getMaxSectors(thisTrack) || blockPos + BLOCK_SIZE > cbmDisk.length) {
+				throw new CbmException("Sector " + thisTrack + "/" + thisSector + " outside of image.");
+			} else if (visited.get(blockPos / BLOCK_SIZE)) {
+				throw new CbmException("Sector " + thisTrack + "/" + thisSector + " is linked twice, file chain is corrupt.");
+			}
+			visited.set(blockPos / BLOCK_SIZE);
+			int nextTrack  = cbmDisk[blockPos + 0x00] & 0xff;
+			int nextSector = cbmDisk[blockPos + 0x01] & 0xff;
+			// the last sector holds the position of its last byte instead of a link
+			int used = nextTrack > 0 ? BLOCK_SIZE - 2 : Math.max(0, nextSector - 1);
+			if (data != null) {
+				System.arraycopy(cbmDisk, blockPos + 2, data, length, used);
+			}
+			if (trace) {
+				feedbackMessage.append(thisTrack).append("/").append(thisSector).append(Utility.SPACE);
+				if (nextTrack == 0) {
+					feedbackMessage.append("\nRemaining bytes: ").append(nextSector).append("\n");
+				}
+			}
+			length += used;
+			thisTrack = nextTrack;
+			thisSector = nextSector;
+		} while (thisTrack != 0);
+		return length;
+	}
 	/**
 	 * Write the data of a single file to image.
 	 * @param saveData byte[]
@@ -865,6 +925,13 @@ public abstract class DiskImage implements Serializable {
 		return bam;
 	}
 
+	/**
+	 * @param traceSectorChains when true, getFileData logs the track/sector chain of each file
+	 */
+	public void setTraceSectorChains(boolean traceSectorChains) {
+		this.traceSectorChains = traceSectorChains;
+	}
+
 	public void setCompressed(boolean compressed) {
 		this.compressed  = compressed;
 	}
@@ -1,12 +1,14 @@
 package net.sourceforge.droid64.d64;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -48,8 +50,14 @@ public class Utility {
 
 	/** Size of buffer reading compressed data */
 	private static final int INPUT_BUFFER_SIZE = 65536;
-	/** Size of buffer writing uncompressed data to byte[] */
-	private static final int OUTPUT_BUFFER_SIZE = 1048576;
+	/** Largest buffer allocated up front from a size found in the data (gzip trailer, zip entry) */
+	private static final int MAX_SIZE_HINT = 4194304;
+	/** Size of buffer reading data of unknown size */
+	private static final int DEFAULT_BUFFER_SIZE = 65536;
+	/** Largest data gunzip() and readFully() inflate, against archives expanding far beyond their download size */
+	public static final int MAX_UNCOMPRESSED_SIZE = 16777216;
+	/** Length of gzip header and trailer */
+	private static final int GZIP_MIN_LENGTH = 18;
 
 	/** PETSCII-ASCII mappings (ASCII to PETSCII mapping. Using 0x20 for invisible characters in PETSCII charset) */
 	protected static final int[] PETSCII_TABLE = {
@@ -99,7 +107,7 @@ public class Utility {
 	}
 
 	/**
-	 * Read file into byte array
+	 * Read file into byte array of its exact size
 	 *
 	 * @param file
 	 *            file to read from
@@ -108,19 +116,11 @@ public class Utility {
 	 *             when error
 	 */
 	public static byte[] readFile(File file) throws CbmException {
-		byte[] data;
-		try (FileInputStream input = new FileInputStream(file);
-				ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-			byte[] buffer = new byte[65536];
-			int read;
-			while ((read = input.read(buffer)) != -1) {
-				out.write(buffer, 0, read);
-			}
-			data = out.toByteArray();
+		try {
+			return Files.readAllBytes(file.toPath());
 		} catch (Exception e) {
 			throw new CbmException(ERR_READ_ERROR + e.getMessage(), e);
 		}
-		return data;
 	}
 
 	/**
@@ -133,18 +133,74 @@ public class Utility {
 	 *             when failure
 	 */
 	public static byte[] readGZippedFile(String fileName) throws CbmException {
-		try (FileInputStream fis = new FileInputStream(fileName);
-				GZIPInputStream gis = new GZIPInputStream(fis, INPUT_BUFFER_SIZE);
-				ByteArrayOutputStream bos = new ByteArrayOutputStream(OUTPUT_BUFFER_SIZE)) {
-			while (gis.available() == 1) {
-				bos.write(gis.read());
-			}
-			return bos.toByteArray();
+		try {
+			return gunzip(Files.readAllBytes(Paths.get(fileName)));
 		} catch (IOException e) {
 			throw new CbmException(ERR_ZIP_READ_ERROR + e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * Uncompress gzipped data.
+	 * The output buffer is sized from the uncompressed length in the gzip trailer,
+	 * so that the data is inflated in bulk into a buffer of the right size.
+	 *
+	 * @param data
+	 *            gzipped data
+	 * @return byte array with uncompressed data
+	 * @throws IOException
+	 *             when data is not valid gzip, or larger than MAX_UNCOMPRESSED_SIZE uncompressed
+	 */
+	public static byte[] gunzip(byte[] data) throws IOException {
+		int sizeHint = 0;
+		if (data.length >= GZIP_MIN_LENGTH) {
+			int n = data.length;
+			long size = (data[n - 4] & 0xffL) | (data[n - 3] & 0xffL) << 8 | (data[n - 2] & 0xffL) << 16 | (data[n - 1] & 0xffL) << 24;
+			sizeHint = (int) Math.min(size, MAX_SIZE_HINT);
+		}
+		try (GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(data), INPUT_BUFFER_SIZE)) {
+			return readFully(gis, sizeHint, MAX_UNCOMPRESSED_SIZE);
+		}
+	}
+
+	/**
+	 * Read a stream to its end.
+	 * When sizeHint is the exact length of the stream, the data is read into a single
+	 * buffer which is returned as it is.
+	 *
+	 * @param input
+	 *            stream to read from
+	 * @param sizeHint
+	 *            expected length of the stream, 0 if unknown
+	 * @param maxLength
+	 *            largest length accepted
+	 * @return byte array
+	 * @throws IOException
+	 *             when error, or when the stream is longer than maxLength
+	 */
+	public static byte[] readFully(InputStream input, int sizeHint, int maxLength) throws IOException {
+		byte[] buffer = new byte[Math.min(sizeHint > 0 ? Math.min(sizeHint, MAX_SIZE_HINT) : DEFAULT_BUFFER_SIZE, maxLength)];
+		int length = 0;
+		while (true) {
+			int read = input.read(buffer, length, buffer.length - length);
+			if (read < 0) {
+				break;
+			}
+			length += read;
+			if (length == buffer.length) {
+				int next = input.read();
+				if (next < 0) {
+					return buffer;
+				} else if (length >= maxLength) {
+					throw new IOException("Uncompressed data larger than " + maxLength + " bytes.");
+				}
+				buffer = Arrays.copyOf(buffer, (int) Math.min(buffer.length * 2L, maxLength));
+				buffer[length++] = (byte) next;
+			}
+		}
+		return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+	}
+
 	/**
 	 * Write data to a gzipped file
 	 *
@@ -182,6 +238,16 @@ public class Utility {
 		}
 	}
 
+	/**
+	 * @param data
+	 *            data to check
+	 * @return true if data starts like gzipped data.
+	 */
+	public static boolean isGZipped(byte[] data) {
+		return data != null && data.length >= GZIP_MIN_LENGTH
+				&& GZIPInputStream.GZIP_MAGIC == (data[0] & 0xff | ((data[1] << 8) & 0xff00));
+	}
+
 	public static String trimTrailing(String str) {
 		if (str == null || str.isEmpty()) {
 			return str;
@@ -0,0 +1,282 @@
+/*
+ * Created on 2026/10/18
+ *
+ * This file is part of The Z-machine Preservation Project (ZMPP).
+ *
+ * ZMPP is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * ZMPP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ZMPP; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.zmpp.base;
+
+/**
+ * A MemoryAccess on a story file shared by several machines. Only the
+ * dynamic memory, from address 0 up to the start of static memory, is
+ * copied; static and high memory are read from the shared array, which
+ * is never written.
+ * A story should not write above its dynamic memory, if it does, the whole
+ * story is copied on the first such write and from then on this object
+ * behaves like a DefaultMemoryAccess.
+ * While hibernating, the private copy is kept as its differences from the
+ * shared data, XOR-ed and run length encoded like the CMem chunk of a
+ * Quetzal file.
+ *
+ * @version 1.0
+ */
+public class CopyOnWriteMemoryAccess implements MemoryAccess, Hibernatable {
+
+  /**
+   * The story file data shared with other machines, never written.
+   */
+  private final byte[] shared;
+
+  /**
+   * The private copy of the first privateLength bytes.
+   */
+  private byte[] data;
+
+  /**
+   * The addresses below this limit are read from the private copy.
+   */
+  private int privateLength;
+
+  /**
+   * The compressed private copy while hibernating, null otherwise.
+   */
+  private byte[] compressed;
+
+  /**
+   * Constructor.
+   *
+   * @param shared the story file data, it will not be modified
+   * @param privateLength the length of the region to copy, usually the
+   * start address of static memory
+   */
+  public CopyOnWriteMemoryAccess(final byte[] shared,
+                                 final int privateLength) {
+
+    super();
+    this.shared = shared;
+    this.privateLength = Math.max(0, Math.min(privateLength, shared.length));
+    this.data = new byte[this.privateLength];
+    System.arraycopy(shared, 0, data, 0, this.privateLength);
+  }
+
+  /**
+   * Returns true if the specified range is still read from the shared data,
+   * which means it has its original contents.
+   *
+   * @param address the start address
+   * @param length the length of the range
+   * @return true if the range is shared
+   */
+  public boolean isShared(final int address, final int length) {
+
+    return address >= privateLength && address + length <= shared.length;
+  }
+
+  /**
+   * Returns the number of bytes this object does not share.
+   *
+   * @return the size of the private copy
+   */
+  public int getPrivateLength() {
+
+    return privateLength;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void hibernate() {
+
+    if (compressed != null) {
+
+      return;
+    }
+    compressed = XorRunLength.encode(data, shared, privateLength);
+    data = null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void wakeUp() {
+
+    if (compressed == null) {
+
+      return;
+    }
+    data = new byte[privateLength];
+    System.arraycopy(shared, 0, data, 0, privateLength);
+    XorRunLength.apply(compressed, compressed.length, data);
+    compressed = null;
+  }
+
+  /**
+   * Returns true while this object is hibernating.
+   *
+   * @return true if hibernating
+   */
+  public boolean isHibernating() {
+
+    return compressed != null;
+  }
+
+  /**
+   * Returns the size of the compressed private copy.
+   *
+   * @return the size in bytes, 0 if not hibernating
+   */
+  public int getHibernatedSize() {
+
+    return compressed == null ? 0 : compressed.length;
+  }
+
+  private byte byteAt(final int address) {
+
+    return address < privateLength ? data[address] : shared[address];
+  }
+
+  private byte[] writableFor(final int address, final int length) {
+
+    if (address + length > privateLength) {
+
+      // copy on write the whole story, static memory was not supposed to
+      // change
+      final byte[] copy = new byte[shared.length];
+      System.arraycopy(shared, 0, copy, 0, shared.length);
+      System.arraycopy(data, 0, copy, 0, privateLength);
+      data = copy;
+      privateLength = copy.length;
+    }
+    return data;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public long readUnsigned32(final int address) {
+
+    return (byteAt(address) & 0xff) << 24 | (byteAt(address + 1) & 0xff) << 16
+           | (byteAt(address + 2) & 0xff) << 8 | (byteAt(address + 3) & 0xff);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public long readUnsigned48(final int address) {
+
+    return (byteAt(address + 0) & 0xff) << 40
+         | (byteAt(address + 1) & 0xff) << 32
+         | (byteAt(address + 2) & 0xff) << 24
+         | (byteAt(address + 3) & 0xff) << 16
+         | (byteAt(address + 4) & 0xff) << 8
+         | (byteAt(address + 5) & 0xff)
+         ;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int readUnsignedShort(final int address) {
+
+    return (byteAt(address) & 0xff) << 8 | (byteAt(address + 1) & 0xff);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public short readShort(final int address) {
+
+    return (short) (byteAt(address) << 8 | (byteAt(address + 1) & 0xff));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public short readUnsignedByte(final int address) {
+
+    return (short) (byteAt(address) & 0xff);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public byte readByte(final int address) {
+
+    return byteAt(address);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void writeUnsigned48(final int address, final long value) {
+
+    final byte[] dest = writableFor(address, 6);
+    dest[address + 0] = (byte) ((value & 0xff0000000000l) >> 40);
+    dest[address + 1] = (byte) ((value & 0x00ff00000000l) >> 32);
+    dest[address + 2] = (byte) ((value & 0x0000ff000000l) >> 24);
+    dest[address + 3] = (byte) ((value & 0x000000ff0000l) >> 16);
+    dest[address + 4] = (byte) ((value & 0x00000000ff00l) >> 8);
+    dest[address + 5] = (byte)  (value & 0x0000000000ffl);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void writeUnsignedShort(final int address, final int value) {
+
+    final byte[] dest = writableFor(address, 2);
+    dest[address] = (byte) ((value & 0xff00) >> 8);
+    dest[address + 1] = (byte) (value & 0xff);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void writeShort(final int address, final short value) {
+
+    final byte[] dest = writableFor(address, 2);
+    dest[address] = (byte) ((value & 0xff00) >>> 8);
+    dest[address + 1] = (byte) (value & 0xff);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void writeUnsignedByte(final int address, final short value) {
+
+    writableFor(address, 1)[address] = (byte) (value & 0xff);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void writeByte(final int address, final byte value) {
+
+    writableFor(address, 1)[address] = value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void writeUnsigned32(final int address, final long value) {
+
+    final byte[] dest = writableFor(address, 4);
+    dest[address] = (byte) ((value & 0xff000000) >> 24);
+    dest[address + 1] = (byte) ((value & 0x00ff0000) >> 16);
+    dest[address + 2] = (byte) ((value & 0x0000ff00) >> 8);
+    dest[address + 3] = (byte) (value & 0x000000ff);
+  }
+}
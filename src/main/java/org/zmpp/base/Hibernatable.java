@@ -0,0 +1,42 @@
+/*
+ * Created on 2026/10/18
+ *
+ * This file is part of The Z-machine Preservation Project (ZMPP).
+ *
+ * ZMPP is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * ZMPP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ZMPP; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.zmpp.base;
+
+/**
+ * This interface indicates that objects implementing it can release most
+ * of their memory while the machine is idle, keeping their state in a
+ * compact form until they are woken up.
+ *
+ * @version 1.0
+ */
+public interface Hibernatable {
+
+  /**
+   * Releases the memory that can be rebuilt. The object must not be used
+   * until wakeUp() is called.
+   */
+  void hibernate();
+
+  /**
+   * Rebuilds the state released by hibernate(), does nothing if the object
+   * is not hibernating.
+   */
+  void wakeUp();
+}
@@ -0,0 +1,151 @@
+/*
+ * Created on 2026/10/18
+ *
+ * This file is part of The Z-machine Preservation Project (ZMPP).
+ *
+ * ZMPP is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * ZMPP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ZMPP; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.zmpp.base;
+
+import java.util.Arrays;
+
+/**
+ * The encoding of the CMem chunk of a Quetzal file, used wherever a copy
+ * of dynamic memory is kept as its differences from another one: the two
+ * are XOR-ed and every run of zeros is written as a zero followed by the
+ * run length - 1, up to 256 zeros a run. Trailing zeros are omitted.
+ *
+ * @version 1.0
+ */
+public final class XorRunLength {
+
+  /**
+   * Not instantiable.
+   */
+  private XorRunLength() { }
+
+  /**
+   * Returns the size of a buffer large enough for any encoding of the
+   * specified number of bytes.
+   *
+   * @param length the number of bytes
+   * @return the buffer size
+   */
+  public static int maxEncodedLength(final int length) {
+
+    return 2 * length;
+  }
+
+  /**
+   * Encodes the differences between two arrays.
+   *
+   * @param memory the bytes to encode
+   * @param reference the bytes they are compared to
+   * @param length the number of bytes to compare
+   * @return the encoded differences
+   */
+  public static byte[] encode(final byte[] memory, final byte[] reference,
+      final int length) {
+
+    final byte[] buffer = new byte[maxEncodedLength(length)];
+    return Arrays.copyOf(buffer, encode(memory, reference, length, buffer));
+  }
+
+  /**
+   * Encodes the differences between two arrays into a buffer.
+   *
+   * @param memory the bytes to encode
+   * @param reference the bytes they are compared to
+   * @param length the number of bytes to compare
+   * @param buffer the buffer, at least maxEncodedLength(length) bytes
+   * @return the number of bytes written to buffer
+   */
+  public static int encode(final byte[] memory, final byte[] reference,
+      final int length, final byte[] buffer) {
+
+    int size = 0;
+    int run = 0;
+    for (int i = 0; i < length; i++) {
+
+      final byte x = (byte) (memory[i] ^ reference[i]);
+      if (x == 0) {
+
+        run++;
+
+      } else {
+
+        // a run is written only when followed by a difference
+        for (; run > 0; run -= 256) {
+
+          buffer[size++] = 0;
+          buffer[size++] = (byte) (Math.min(run, 256) - 1);
+        }
+        run = 0;
+        buffer[size++] = x;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the number of bytes the encoded differences span, the
+   * omitted trailing zeros excluded.
+   *
+   * @param delta the encoded differences
+   * @param length the number of encoded bytes
+   * @return the number of bytes
+   */
+  public static int decodedLength(final byte[] delta, final int length) {
+
+    int address = 0;
+    for (int offset = 0; offset < length;) {
+
+      if (delta[offset++] == 0 && offset < length) {
+
+        address += delta[offset++] & 0xff;
+      }
+      address++;
+    }
+    return address;
+  }
+
+  /**
+   * XORs encoded differences into an array: applied to the reference it
+   * gives the encoded bytes back, applied to the encoded bytes it gives the
+   * reference back, applied to zeros it gives the plain differences.
+   *
+   * @param delta the encoded differences
+   * @param length the number of encoded bytes
+   * @param memory the array to change, at least decodedLength() bytes
+   */
+  public static void apply(final byte[] delta, final int length,
+      final byte[] memory) {
+
+    int address = 0;
+    for (int offset = 0; offset < length;) {
+
+      final byte x = delta[offset++];
+      if (x == 0) {
+
+        // a zero ending the data counts as a run of one
+        address += (offset < length ? delta[offset++] & 0xff : 0) + 1;
+
+      } else {
+
+        memory[address++] ^= x;
+      }
+    }
+  }
+}
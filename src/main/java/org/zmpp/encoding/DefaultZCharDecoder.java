@@ -82,7 +82,7 @@ public final class DefaultZCharDecoder implements ZCharDecoder {
   public ZsciiString decode2Zscii(final MemoryReadAccess memaccess,
       final int address, final int length) {
 
-    final ZsciiStringBuilder builder = new ZsciiStringBuilder();
+    final ZsciiStringBuilder builder = new ZsciiStringBuilder(encoding);
     translator.reset();    
     
     final short[] zbytes = extractZbytes(memaccess, address, length);
@@ -134,6 +134,15 @@ public final class DefaultZCharDecoder implements ZCharDecoder {
 
           final int x = data[position];
           final int entryNum = 32 * (zchar - 1) + x;
+          final ZsciiString decoded =
+            (abbreviations instanceof DecodedAbbreviationsTable) ?
+            ((DecodedAbbreviationsTable) abbreviations).getDecoded(entryNum) :
+            null;
+          if (decoded != null) {
+            
+            builder.append(decoded);
+            return position + 1;
+          }
           final int entryAddress = abbreviations.getWordAddress(entryNum);
           
           if (abbreviationDecoder == null) {
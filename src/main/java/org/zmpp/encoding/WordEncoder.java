@@ -0,0 +1,224 @@
+/*
+ * Created on 2026/10/18
+ *
+ * This file is part of The Z-machine Preservation Project (ZMPP).
+ *
+ * ZMPP is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * ZMPP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ZMPP; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.zmpp.encoding;
+
+import org.zmpp.base.MemoryReadAccess;
+
+/**
+ * Encodes words the way they are stored in a dictionary and returns the
+ * encoded bytes packed into a long, so that a word can be looked up by
+ * comparing numbers. The word is truncated to the number of Z characters
+ * of a dictionary entry and padded with 5's, as the standard specifies.
+ * The encoding of every ZSCII character is computed once from the
+ * alphabet table, encoding a word creates no objects.
+ *
+ * @version 1.0
+ */
+public class WordEncoder {
+
+  /**
+   * Marks a character which is not in an alphabet.
+   */
+  private static final short ESCAPE = -1;
+
+  /**
+   * The padding Z character.
+   */
+  private static final int PAD = 5;
+
+  /**
+   * The Z characters of each ZSCII character: the shift character in the
+   * upper bits and the code in the lower 5 bits, or ESCAPE.
+   */
+  private final short[] zchars = new short[256];
+
+  /**
+   * The shift character to A2, which starts an escape.
+   */
+  private final int shiftA2;
+
+  /**
+   * Constructor.
+   *
+   * @param alphabetTable the alphabet table of the story
+   * @param version the story file version
+   */
+  public WordEncoder(final AlphabetTable alphabetTable, final int version) {
+
+    super();
+    // Versions 1 and 2 use the shift characters for a single character,
+    // later versions the shift lock characters
+    final int shiftA1 = version <= 2 ? AlphabetTable.SHIFT_2
+                                     : AlphabetTable.SHIFT_4;
+    shiftA2 = version <= 2 ? AlphabetTable.SHIFT_3 : AlphabetTable.SHIFT_5;
+    for (int c = 0; c < zchars.length; c++) {
+
+      final short zsciiChar = (short) c;
+      int code = alphabetTable.getA0CharCode(zsciiChar);
+      if (code >= AlphabetTable.ALPHABET_START) {
+
+        zchars[c] = (short) code;
+        continue;
+      }
+      code = alphabetTable.getA1CharCode(zsciiChar);
+      if (code >= AlphabetTable.ALPHABET_START) {
+
+        zchars[c] = (short) (shiftA1 << 5 | code);
+        continue;
+      }
+      code = alphabetTable.getA2CharCode(zsciiChar);
+      // the first code of A2 is the escape itself
+      if (code > AlphabetTable.A2_ESCAPE) {
+
+        zchars[c] = (short) (shiftA2 << 5 | code);
+        continue;
+      }
+      zchars[c] = ESCAPE;
+    }
+  }
+
+  /**
+   * Encodes the word of the specified length at the specified address.
+   *
+   * @param memaccess the memory
+   * @param address the address of the first character
+   * @param length the number of characters
+   * @param numEntryBytes the number of encoded bytes of a dictionary entry
+   * @return the encoded bytes
+   */
+  public long encode(final MemoryReadAccess memaccess, final int address,
+                     final int length, final int numEntryBytes) {
+
+    final int maxZChars = numEntryBytes / 2 * 3;
+    long packed = 0;
+    for (int i = 0; i < length; i++) {
+
+      packed = appendChar(packed, memaccess.readUnsignedByte(address + i),
+                          maxZChars);
+    }
+    return toEntryBytes(packed, maxZChars);
+  }
+
+  /**
+   * Encodes the specified word.
+   *
+   * @param word the word
+   * @param numEntryBytes the number of encoded bytes of a dictionary entry
+   * @return the encoded bytes
+   */
+  public long encode(final ZsciiString word, final int numEntryBytes) {
+
+    final int maxZChars = numEntryBytes / 2 * 3;
+    long packed = 0;
+    for (int i = 0, n = word.length(); i < n; i++) {
+
+      packed = appendChar(packed, word.charAt(i), maxZChars);
+    }
+    return toEntryBytes(packed, maxZChars);
+  }
+
+  /**
+   * Reads the encoded bytes of the dictionary entry at the specified
+   * address.
+   *
+   * @param memaccess the memory
+   * @param address the entry address
+   * @param numEntryBytes the number of encoded bytes of a dictionary entry
+   * @return the encoded bytes
+   */
+  public static long readEntryBytes(final MemoryReadAccess memaccess,
+                                    final int address,
+                                    final int numEntryBytes) {
+
+    long result = 0;
+    for (int i = 0; i < numEntryBytes; i++) {
+
+      result = result << 8 | memaccess.readUnsignedByte(address + i);
+    }
+    return result;
+  }
+
+  /**
+   * Appends the Z characters of a ZSCII character. The Z characters are
+   * accumulated in the upper bits of packed, their number in the lowest
+   * 4 bits.
+   *
+   * @param packed the Z characters so far
+   * @param zsciiChar the character
+   * @param maxZChars the maximum number of Z characters
+   * @return the Z characters
+   */
+  private long appendChar(final long packed, final int zsciiChar,
+                          final int maxZChars) {
+
+    final int code = zsciiChar < zchars.length ? zchars[zsciiChar] : ESCAPE;
+    if (code == ESCAPE) {
+
+      final long result = appendZChar(packed, shiftA2, maxZChars);
+      return appendZChar(appendZChar(appendZChar(result,
+          AlphabetTable.A2_ESCAPE, maxZChars), (zsciiChar >>> 5) & 0x1f,
+          maxZChars), zsciiChar & 0x1f, maxZChars);
+    }
+    final long result = code > 0x1f ?
+        appendZChar(packed, code >>> 5, maxZChars) : packed;
+    return appendZChar(result, code & 0x1f, maxZChars);
+  }
+
+  private static long appendZChar(final long packed, final int zchar,
+                                  final int maxZChars) {
+
+    final int count = (int) (packed & 0xf);
+    if (count >= maxZChars) {
+
+      return packed;
+    }
+    return ((packed >>> 4) << 5 | zchar) << 4 | (count + 1);
+  }
+
+  /**
+   * Pads the Z characters and packs them into words of 3, the last word
+   * has its top bit set.
+   *
+   * @param packed the Z characters
+   * @param maxZChars the maximum number of Z characters
+   * @return the encoded bytes
+   */
+  private static long toEntryBytes(final long packed, final int maxZChars) {
+
+    long result = packed;
+    while ((result & 0xf) < maxZChars) {
+
+      result = appendZChar(result, PAD, maxZChars);
+    }
+    final long zcharBits = result >>> 4;
+    final int numWords = maxZChars / 3;
+    long entry = 0;
+    for (int i = numWords - 1; i >= 0; i--) {
+
+      int word = (int) (zcharBits >>> (15 * i)) & 0x7fff;
+      if (i == 0) {
+
+        word |= 0x8000;
+      }
+      entry = entry << 16 | word;
+    }
+    return entry;
+  }
+}
@@ -48,6 +48,21 @@ public interface ZCharDecoder {
   
     int getWordAddress(int entryNum);
   }
+
+  /**
+   * An abbreviations table which can also provide its entries already
+   * decoded, e.g. shared by all the machines running the same story.
+   */
+  public interface DecodedAbbreviationsTable extends AbbreviationsTable {
+
+    /**
+     * Returns the decoded abbreviation.
+     * 
+     * @param entryNum the entry index in the abbreviations table
+     * @return the decoded string or null if it has to be decoded from memory
+     */
+    ZsciiString getDecoded(int entryNum);
+  }
   
   /**
    * Performs a ZSCII decoding at the specified position of
@@ -35,45 +35,74 @@ package org.zmpp.encoding;
 public class ZsciiString {
 
   /**
-   * The encoding object.
+   * The encoding of strings created without one, it uses the default
+   * accent table.
    */
-  private static ZsciiEncoding encoding;
+  public static final ZsciiEncoding DEFAULT_ENCODING =
+    new ZsciiEncoding(new DefaultAccentTable());
+
+  /**
+   * The encoding object, usually the one of the story the string belongs to.
+   */
+  private final ZsciiEncoding encoding;
 
   /**
    * The string data.
    */
-  private short[] data;
+  private final short[] data;
+
+  /**
+   * Constructor.
+   * 
+   * @param data the source array
+   * @param encoding the encoding of the story
+   */
+  public ZsciiString(final short[] data, final ZsciiEncoding encoding) {
+    
+    super();
+    this.data = data;
+    this.encoding = encoding;
+  }
   
   /**
-   * Global initialization method.
+   * Creates a ZSCII string from a string.
    * 
-   * @param encoding the encoding
+   * @param str the string
+   * @param encoding the encoding of the story
    */
-  public static void initialize(final ZsciiEncoding encoding) {
- 
-    ZsciiString.encoding = encoding;
+  public ZsciiString(final String str, final ZsciiEncoding encoding) {
+    
+    this(encoding.convertToZscii(str), encoding);
   }
 
   /**
-   * Constructor.
+   * Constructor for a string using the default encoding.
    * 
    * @param data the source array
    */
   public ZsciiString(final short[] data) {
     
-    super();
-    this.data = data;
+    this(data, DEFAULT_ENCODING);
   }
   
   /**
-   * Creates a ZSCII string from a string.
+   * Creates a ZSCII string from a string, using the default encoding.
    * 
    * @param str the string
    */
   public ZsciiString(final String str) {
     
-    super();
-    this.data = encoding.convertToZscii(str);
+    this(str, DEFAULT_ENCODING);
+  }
+
+  /**
+   * Returns the encoding used to convert this string to unicode.
+   * 
+   * @return the encoding
+   */
+  public ZsciiEncoding getEncoding() {
+    
+    return encoding;
   }
 
   /**
@@ -149,7 +178,7 @@ public class ZsciiString {
       
       dat[i] = charAt(startindex + i);
     }
-    return new ZsciiString(dat);
+    return new ZsciiString(dat, encoding);
   }
   
   
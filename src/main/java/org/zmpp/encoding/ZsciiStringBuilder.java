@@ -39,6 +39,30 @@ public class ZsciiStringBuilder {
    */
   private List<Short> data = new ArrayList<Short>();
 
+  /**
+   * The encoding of the resulting strings.
+   */
+  private ZsciiEncoding encoding;
+
+  /**
+   * Constructor for strings using the default encoding.
+   */
+  public ZsciiStringBuilder() {
+    
+    this(ZsciiString.DEFAULT_ENCODING);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param encoding the encoding of the story
+   */
+  public ZsciiStringBuilder(final ZsciiEncoding encoding) {
+    
+    super();
+    this.encoding = encoding;
+  }
+
   /**
    * Adds a ZSCII character to the builder object.
    * 
@@ -75,7 +99,7 @@ public class ZsciiStringBuilder {
       
       strdata[i] = data.get(i);
     }
-    return new ZsciiString(strdata);
+    return new ZsciiString(strdata, encoding);
   }
   
   /**
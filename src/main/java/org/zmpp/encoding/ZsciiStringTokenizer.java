@@ -86,7 +86,8 @@ public class ZsciiStringTokenizer {
     final List<ZsciiString> tokens = new ArrayList<ZsciiString>();
     int currentIndex = 0;
     final int inputlength = input.length();
-    ZsciiStringBuilder currentTokenBuilder = new ZsciiStringBuilder();
+    final ZsciiEncoding encoding = input.getEncoding();
+    ZsciiStringBuilder currentTokenBuilder = new ZsciiStringBuilder(encoding);
     
     while (currentIndex < inputlength) {
       
@@ -96,9 +97,9 @@ public class ZsciiStringTokenizer {
         if (currentTokenBuilder.length() > 0) {
                     
           tokens.add(currentTokenBuilder.toZsciiString());
-          currentTokenBuilder = new ZsciiStringBuilder();
+          currentTokenBuilder = new ZsciiStringBuilder(encoding);
         }
-        tokens.add(new ZsciiString(new short[] { currentChar }));
+        tokens.add(new ZsciiString(new short[] { currentChar }, encoding));
         
       } else {
         
@@ -22,8 +22,7 @@
  */
 package org.zmpp.instructions;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import org.zmpp.vm.Cpu;
 import org.zmpp.vm.Instruction;
@@ -108,9 +107,20 @@ public abstract class AbstractInstruction implements Instruction {
   private int opcode;
   
   /**
-   * The operands.
+   * No operands.
+   */
+  private static final byte[] NO_OPERAND_TYPES = new byte[0];
+  private static final short[] NO_OPERAND_VALUES = new short[0];
+  
+  /**
+   * The operand type numbers, see Operand.
    */    
-  private List<Operand> operands;
+  private byte[] operandTypes;
+  
+  /**
+   * The operand values.
+   */    
+  private short[] operandValues;
   
   /**
    * The store variable.
@@ -149,7 +159,8 @@ public abstract class AbstractInstruction implements Instruction {
     super();
     this.opcode = opcode;
     this.machine = machine;
-    this.operands = new ArrayList<Operand>();
+    this.operandTypes = NO_OPERAND_TYPES;
+    this.operandValues = NO_OPERAND_VALUES;
     this.branchIfConditionTrue = true;
     this.storyfileVersion =
       machine.getGameData().getStoryFileHeader().getVersion();
@@ -211,7 +222,30 @@ public abstract class AbstractInstruction implements Instruction {
    */
   public Operand getOperand(final int operandNum) {
     
-    return operands.get(operandNum);
+    return new Operand(operandTypes[operandNum], operandValues[operandNum]);
+  }
+  
+  /**
+   * Returns the type number of the operand at the specified position.
+   * 
+   * @param operandNum the operand number, starting with 0 as the first operand.
+   * @return the type number, see Operand
+   */
+  public byte getOperandTypeNum(final int operandNum) {
+    
+    return operandTypes[operandNum];
+  }
+  
+  /**
+   * Returns the raw value of the operand at the specified position, that is
+   * the variable number for variable operands.
+   * 
+   * @param operandNum the operand number, starting with 0 as the first operand.
+   * @return the raw value
+   */
+  public short getOperandValue(final int operandNum) {
+    
+    return operandValues[operandNum];
   }
   
   /**
@@ -241,7 +275,7 @@ public abstract class AbstractInstruction implements Instruction {
    */
   public int getNumOperands() {
     
-    return operands.size();
+    return operandValues.length;
   }
   
   /**
@@ -277,7 +311,26 @@ public abstract class AbstractInstruction implements Instruction {
    * 
    * @param operand the operand to add
    */
-  public void addOperand(final Operand operand) { this.operands.add(operand); }
+  public void addOperand(final Operand operand) {
+    
+    addOperand(operand.getTypeNum(), operand.getValue());
+  }
+  
+  /**
+   * Adds an operand to this object. The operands are added while decoding,
+   * so the arrays simply grow by one.
+   * 
+   * @param typenum the operand type number
+   * @param value the operand value
+   */
+  public void addOperand(final byte typenum, final short value) {
+    
+    final int n = operandValues.length;
+    operandTypes = Arrays.copyOf(operandTypes, n + 1);
+    operandValues = Arrays.copyOf(operandValues, n + 1);
+    operandTypes[n] = typenum;
+    operandValues[n] = value;
+  }
   
   /**
    * Sets the store variable.
@@ -363,16 +416,9 @@ public abstract class AbstractInstruction implements Instruction {
    */
   public short getValue(final int operandNum) {
     
-    final Operand operand = getOperand(operandNum);
-    switch (operand.getType()) {
-    
-      case VARIABLE:
-        return getCpu().getVariable(operand.getValue());
-      case SMALL_CONSTANT:
-      case LARGE_CONSTANT:
-      default:
-        return operand.getValue();
-    }
+    final short value = operandValues[operandNum];
+    return (operandTypes[operandNum] == Operand.TYPENUM_VARIABLE) ?
+        getCpu().getVariable(value) : value;
   }
   
   /**
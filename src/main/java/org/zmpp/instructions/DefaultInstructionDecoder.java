@@ -22,9 +22,9 @@
  */
 package org.zmpp.instructions;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+import org.zmpp.base.Hibernatable;
 import org.zmpp.base.MemoryReadAccess;
 import org.zmpp.instructions.AbstractInstruction.InstructionForm;
 import org.zmpp.instructions.AbstractInstruction.OperandCount;
@@ -32,9 +32,32 @@ import org.zmpp.vm.Instruction;
 import org.zmpp.vm.InstructionDecoder;
 import org.zmpp.vm.Machine;
 
-public class DefaultInstructionDecoder implements InstructionDecoder {
+public class DefaultInstructionDecoder implements InstructionDecoder,
+    Hibernatable {
   
-  private Map<Integer, Instruction> instructionCache;
+  /**
+   * The decoded instructions are cached in pages of this size, indexed by
+   * address.
+   */
+  private static final int PAGE_BITS = 8;
+  private static final int PAGE_SIZE = 1 << PAGE_BITS;
+  
+  /**
+   * The instruction cache, a page is allocated when the first instruction
+   * in it is decoded.
+   */
+  private Instruction[][] instructionPages;
+  
+  /**
+   * The bytes of the cached instructions in dynamic memory, which the story
+   * can overwrite; static and high memory never change.
+   */
+  private byte[][][] dynamicCodePages;
+  
+  /**
+   * The start of static memory.
+   */
+  private int staticsAddress;
   
   /**
    * The memory access object.
@@ -53,7 +76,8 @@ public class DefaultInstructionDecoder implements InstructionDecoder {
    */
   public DefaultInstructionDecoder() {
   
-    instructionCache = new HashMap<Integer, Instruction>();
+    instructionPages = new Instruction[0][];
+    dynamicCodePages = new byte[0][][];
   }
   
   public void initialize(final Machine machine,
@@ -61,6 +85,29 @@ public class DefaultInstructionDecoder implements InstructionDecoder {
     
     this.memaccess = memaccess;
     this.machine = machine;
+    staticsAddress =
+      machine.getGameData().getStoryFileHeader().getStaticsAddress();
+    final int fileLength =
+      machine.getGameData().getStoryFileHeader().getFileLength();
+    instructionPages = new Instruction[(fileLength >>> PAGE_BITS) + 1][];
+    dynamicCodePages = new byte[(staticsAddress >>> PAGE_BITS) + 1][][];
+  }
+  
+  /**
+   * Empties the cache, the instructions are decoded again when used.
+   */
+  public void hibernate() {
+  
+    Arrays.fill(instructionPages, null);
+    Arrays.fill(dynamicCodePages, null);
+  }
+  
+  /**
+   * {@inheritDoc}
+   */
+  public void wakeUp() {
+  
+    // the cache is filled again as the machine runs
   }
   
   /**
@@ -71,30 +118,110 @@ public class DefaultInstructionDecoder implements InstructionDecoder {
    */
   public Instruction decodeInstruction(final int instructionAddress) {
   
-    final Integer key = Integer.valueOf(instructionAddress);
-    if (!instructionCache.containsKey(key)) {
-      AbstractInstruction info = createBasicInstructionInfo(instructionAddress);
-      int currentAddress = extractOperands(info, instructionAddress);
-      if (info.getInstructionForm() == InstructionForm.VARIABLE
-          && info.getOperandCount() == OperandCount.C2OP) {
+    final int pageNum = instructionAddress >>> PAGE_BITS;
+    final int index = instructionAddress & (PAGE_SIZE - 1);
+    
+    if (pageNum < instructionPages.length) {
       
-        // Handle the VAR form of C2OP instructions here
-        final AbstractInstruction info2 =
-          new LongInstruction(machine, OperandCount.VAR, info.getOpcode());
+      final Instruction[] page = instructionPages[pageNum];
+      if (page != null && page[index] != null
+          && (instructionAddress >= staticsAddress
+              || isUnchanged(dynamicCodePages[pageNum][index],
+                             instructionAddress))) {
+        
+        return page[index];
+      }
+    }
+    final AbstractInstruction info = decode(instructionAddress);
+    cache(instructionAddress, info);
+    return info;
+  }
+  
+  /**
+   * Decodes the instruction at the specified address.
+   * 
+   * @param instructionAddress the instruction's address
+   * @return the instruction
+   */
+  private AbstractInstruction decode(final int instructionAddress) {
+    
+    AbstractInstruction info = createBasicInstructionInfo(instructionAddress);
+    int currentAddress = extractOperands(info, instructionAddress);
+    if (info.getInstructionForm() == InstructionForm.VARIABLE
+        && info.getOperandCount() == OperandCount.C2OP) {
+    
+      // Handle the VAR form of C2OP instructions here
+      final AbstractInstruction info2 =
+        new LongInstruction(machine, OperandCount.VAR, info.getOpcode());
+    
+      for (int i = 0; i < info.getNumOperands(); i++) {
+    
+        info2.addOperand(info.getOperandTypeNum(i), info.getOperandValue(i));
+      }
+      info = info2;
+    }
+    currentAddress = extractStoreVariable(info, currentAddress);
+    currentAddress = extractBranchOffset(info, currentAddress);
+    info.setLength(currentAddress - instructionAddress);    
+    return info;
+  }
+  
+  /**
+   * Stores a decoded instruction in the cache. For instructions in dynamic
+   * memory, their bytes are stored as well, so the instruction is decoded
+   * again if the story overwrites it.
+   * 
+   * @param instructionAddress the instruction's address
+   * @param info the instruction
+   */
+  private void cache(final int instructionAddress,
+      final AbstractInstruction info) {
+    
+    final int pageNum = instructionAddress >>> PAGE_BITS;
+    final int index = instructionAddress & (PAGE_SIZE - 1);
+    
+    if (pageNum >= instructionPages.length) {
       
-        for (int i = 0; i < info.getNumOperands(); i++) {
+      instructionPages = Arrays.copyOf(instructionPages, pageNum + 1);
+    }
+    if (instructionPages[pageNum] == null) {
       
-          info2.addOperand(info.getOperand(i));
-        }
-        info = info2;
+      instructionPages[pageNum] = new Instruction[PAGE_SIZE];
+    }
+    if (instructionAddress < staticsAddress) {
+      
+      if (dynamicCodePages[pageNum] == null) {
+        
+        dynamicCodePages[pageNum] = new byte[PAGE_SIZE][];
+      }
+      final byte[] code = new byte[info.getLength()];
+      for (int i = 0; i < code.length; i++) {
+        
+        code[i] = memaccess.readByte(instructionAddress + i);
+      }
+      dynamicCodePages[pageNum][index] = code;
+    }
+    instructionPages[pageNum][index] = info;
+  }
+  
+  /**
+   * Checks that a cached instruction in dynamic memory was not overwritten.
+   * 
+   * @param code the bytes of the instruction when it was decoded
+   * @param instructionAddress the instruction's address
+   * @return true if the instruction is unchanged
+   */
+  private boolean isUnchanged(final byte[] code,
+      final int instructionAddress) {
+    
+    for (int i = 0; i < code.length; i++) {
+      
+      if (memaccess.readByte(instructionAddress + i) != code[i]) {
+        
+        return false;
       }
-      currentAddress = extractStoreVariable(info, currentAddress);
-      currentAddress = extractBranchOffset(info, currentAddress);
-      info.setLength(currentAddress - instructionAddress);    
-      //return info;
-      instructionCache.put(key, info);
     }
-    return instructionCache.get(key);
+    return true;
   }
   
   // ***********************************************************************
@@ -282,15 +409,13 @@ public class DefaultInstructionDecoder implements InstructionDecoder {
     int nextAddress = currentAddress;
     if (optype == Operand.TYPENUM_LARGE_CONSTANT) {
       
-      info.addOperand(new Operand(optype,
-          memaccess.readShort(nextAddress)));
+      info.addOperand(optype, memaccess.readShort(nextAddress));
       nextAddress += 2;
       
     } else if (optype == Operand.TYPENUM_VARIABLE
         || optype == Operand.TYPENUM_SMALL_CONSTANT) {
       
-      info.addOperand(new Operand(optype,
-          memaccess.readUnsignedByte(nextAddress)));
+      info.addOperand(optype, memaccess.readUnsignedByte(nextAddress));
       
       nextAddress += 1; 
     }
@@ -62,6 +62,11 @@ public class Operand {
    */
   private OperandType type;
   
+  /**
+   * This operand's type number.
+   */
+  private byte typenum;
+  
   /**
    * This operand's value.
    */
@@ -76,6 +81,7 @@ public class Operand {
   public Operand(int typenum, short value) {
     
     type = getOperandType(typenum);
+    this.typenum = (byte) typenum;
     this.value = value;
   }
 
@@ -107,6 +113,13 @@ public class Operand {
    */
   public OperandType getType() { return type; }
   
+  /**
+   * Returns this operand's type number.
+   * 
+   * @return the type number
+   */
+  public byte getTypeNum() { return typenum; }
+  
   /**
    * The operand value.
    * 
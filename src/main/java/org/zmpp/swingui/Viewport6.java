@@ -275,7 +275,8 @@ public class Viewport6 extends JComponent implements ScreenModel6, Viewport {
    */
   public void setTextWidthInUnits(short[] zchars) {
     
-    ZsciiString str = new ZsciiString(zchars);
+    ZsciiString str = new ZsciiString(zchars,
+        machine.getGameData().getZsciiEncoding());
     int textwidth =
       canvas.getStringWidth(windows[currentwindow].getFont(), str.toString());
     machine.getGameData().getStoryFileHeader().setOutputStream3TextWidth(textwidth);
@@ -3,11 +3,10 @@ package org.zmpp.textui.bbs;
 import static org.apache.commons.lang3.StringUtils.defaultString;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.io.Writer;
 import java.io.Reader;
+import java.util.List;
 
 import org.zmpp.base.DefaultMemoryAccess;
 import org.zmpp.iff.DefaultFormChunk;
@@ -28,11 +27,20 @@ public class BBSConsole implements VirtualConsole, SaveGameDataStore,  IOSystem
     Machine machine;
     boolean debugMode = false;
     ScreenModel screenModel;
+    String saveOwner;
 
     public BBSConsole(Machine machine, PetsciiThread petsciiThread, boolean debugMode) {
+        this(machine, petsciiThread, debugMode, null);
+    }
+
+    /**
+     * @param saveOwner the logged user the games are saved for, null for guests
+     */
+    public BBSConsole(Machine machine, PetsciiThread petsciiThread, boolean debugMode, String saveOwner) {
         this.petsciiThread = petsciiThread;
         this.machine = machine;
         this.debugMode = debugMode;
+        this.saveOwner = saveOwner;
         screenModel = new BBSScreenModel(petsciiThread,machine);
     }
 
@@ -63,23 +71,23 @@ public class BBSConsole implements VirtualConsole, SaveGameDataStore,  IOSystem
     /** SaveGameDataStore */
     @Override
     public boolean saveFormChunk(final WritableFormChunk formchunk) {
-        RandomAccessFile raf = null;
-        String currentdir = new File(System.getProperty("user.dir")).getAbsolutePath();
+        final SaveGameStore store = SaveGameStore.getInstance();
+        final int checksum = storyChecksum();
         try {
             petsciiThread.newline();
-            File saveFile;
+            listSaves(store.list(saveOwner, checksum));
+            String filename;
             boolean sure = true;
             do {
                 petsciiThread.print("Filename: ");
                 petsciiThread.flush();
                 petsciiThread.resetInput();
-                String filename = petsciiThread.readLine();
+                filename = petsciiThread.readLine();
                 if (isBlank(filename)) {
                     petsciiThread.println("Aborted.");
                     return false;
                 }
-                saveFile = new File(currentdir + File.separator + filename.toLowerCase() + ".ziff");
-                if (saveFile.exists()) {
+                if (store.exists(saveOwner, checksum, filename)) {
                     petsciiThread.println("WARNING: File already exists.");
                     petsciiThread.print("Keep going with this? (Y/N) ");
                     petsciiThread.flush();
@@ -93,14 +101,10 @@ public class BBSConsole implements VirtualConsole, SaveGameDataStore,  IOSystem
                     sure = response.equals("y") || response.equals("yes");
                 }
             } while (!sure);
-            raf = new RandomAccessFile(saveFile, "rw");
-            byte[] data = formchunk.getBytes();
-            raf.write(data);
+            store.save(saveOwner, checksum, filename, formchunk.getBytes());
             return true;
         } catch (IOException ex) {
             ex.printStackTrace();
-        } finally {
-            if (raf != null) try { raf.close(); } catch (Exception ex) { }
         }
 
         return false;
@@ -109,10 +113,16 @@ public class BBSConsole implements VirtualConsole, SaveGameDataStore,  IOSystem
     /** SaveGameDataStore */
     @Override
     public FormChunk retrieveFormChunk() {
-        RandomAccessFile raf = null;
-        String currentdir = new File(System.getProperty("user.dir")).getAbsolutePath();
+        final SaveGameStore store = SaveGameStore.getInstance();
+        final int checksum = storyChecksum();
         try {
             petsciiThread.newline();
+            final List<String> saves = store.list(saveOwner, checksum);
+            if (saves.isEmpty()) {
+                petsciiThread.println("No saved games.");
+                return null;
+            }
+            listSaves(saves);
             petsciiThread.print("Filename: ");
             petsciiThread.flush();
             petsciiThread.resetInput();
@@ -121,24 +131,29 @@ public class BBSConsole implements VirtualConsole, SaveGameDataStore,  IOSystem
                 petsciiThread.println("Aborted.");
                 return null;
             }
-            File loadFile = new File(currentdir + File.separator + filename.toLowerCase() + ".ziff");
-            if (!loadFile.exists()) {
+            final byte[] data = store.load(saveOwner, checksum, filename);
+            if (data == null) {
                 petsciiThread.println("File not found. Aborted.");
                 return null;
             }
-            raf = new RandomAccessFile(loadFile, "r");
-            byte[] data = new byte[(int) raf.length()];
-            raf.readFully(data);
             return new DefaultFormChunk(new DefaultMemoryAccess(data));
         } catch (IOException ex) {
             ex.printStackTrace();
-        } finally {
-            if (raf != null) try { raf.close(); } catch (Exception ex) { }
         }
 
         return null;
     }
 
+    private void listSaves(List<String> saves) {
+        if (saves.isEmpty()) return;
+        petsciiThread.println("Saved games: " + String.join(", ", saves));
+    }
+
+    private int storyChecksum() {
+        final int checksum = machine.getGameData().getStoryFileHeader().getChecksum();
+        return checksum != 0 ? checksum : machine.getGameData().getCalculatedChecksum();
+    }
+
     /** IOSystem */
     @Override
     public Writer getTranscriptWriter() {
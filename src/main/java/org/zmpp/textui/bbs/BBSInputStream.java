@@ -1,7 +1,10 @@
 package org.zmpp.textui.bbs;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.zmpp.base.Hibernatable;
 import org.zmpp.encoding.ZsciiEncoding;
 import org.zmpp.io.InputStream;
 import org.zmpp.vm.Machine;
@@ -12,8 +15,21 @@ import eu.sblendorio.bbs.core.Utils;
 
 public class BBSInputStream implements InputStream {
 
+    private static final long DEFAULT_HIBERNATE_AFTER_MILLIS = 60000;
+
+    /* A game waiting for a key longer than this releases its caches and compresses its memory, 0 never */
+    private static volatile long hibernateAfterMillis = DEFAULT_HIBERNATE_AFTER_MILLIS;
+
+    private static final AtomicLong hibernations = new AtomicLong(0);
+    private static final AtomicInteger hibernating = new AtomicInteger(0);
+
     PetsciiThread petsciiThread;
     Machine machine;
+    private boolean hibernated = false;
+
+    public static void setHibernateAfterMillis(long millis) {
+        hibernateAfterMillis = millis;
+    }
 
     public BBSInputStream(Machine machine, PetsciiThread petsciiThread) {
         this.petsciiThread = petsciiThread;
@@ -29,7 +45,14 @@ public class BBSInputStream implements InputStream {
     public short getZsciiChar(boolean flushBeforeGet) {
         short translatedChar;
         try {
-            int key  = this.petsciiThread.readKey();
+            int key;
+            try {
+                key = canHibernate()
+                        ? this.petsciiThread.readKey(hibernateAfterMillis, this::hibernate)
+                        : this.petsciiThread.readKey();
+            } finally {
+                wakeUp();
+            }
             if (key >= 193 && key <= 218) key -= 96;
             switch (key){
                 case Keys.RETURN:
@@ -55,6 +78,33 @@ public class BBSInputStream implements InputStream {
         return translatedChar;
     }
 
+    /* Timed input, from version 4, may run the machine from a timer thread while waiting */
+    private boolean canHibernate() {
+        return hibernateAfterMillis > 0 && machine instanceof Hibernatable
+                && machine.getGameData().getStoryFileHeader().getVersion() <= 3;
+    }
+
+    /* Runs on the session thread while it waits for a key, the machine is not running */
+    private void hibernate() {
+        ((Hibernatable) machine).hibernate();
+        hibernated = true;
+        hibernations.incrementAndGet();
+        hibernating.incrementAndGet();
+    }
+
+    private void wakeUp() {
+        if (hibernated) {
+            ((Hibernatable) machine).wakeUp();
+            hibernated = false;
+            hibernating.decrementAndGet();
+        }
+    }
+
+    public static String stats() {
+        return "hibernating=" + hibernating.get() +
+                ", hibernations=" + hibernations.get();
+    }
+
     @Override
     public void close() {
         throw new RuntimeException("Exit from ZMPP game");
@@ -40,6 +40,13 @@ import java.io.IOException;
  */
 public class BBSMachineFactory extends MachineFactory<VirtualConsole> {
 
+  /* Bytes the undo steps of each game may use */
+  private static volatile int undoBudget = MachineImpl.DEFAULT_UNDO_BUDGET;
+
+  public static void setUndoBudget(int bytes) {
+    undoBudget = bytes;
+  }
+
   VirtualConsole console;
   IOSystem ioSystem;
   InputStream inputStream;
@@ -49,22 +56,47 @@ public class BBSMachineFactory extends MachineFactory<VirtualConsole> {
   PetsciiThread petsciiThread;
 
   private byte[] byteArrayStory;
+  private StoryTemplate storyTemplate;
+  private String saveOwner;
 
   public BBSMachineFactory(byte[] byteArrayStory , PetsciiThread petsciiThread) {
     this.byteArrayStory = byteArrayStory;
     this.petsciiThread = petsciiThread;
   }
 
+  public BBSMachineFactory(StoryTemplate storyTemplate, PetsciiThread petsciiThread) {
+    this(storyTemplate, petsciiThread, null);
+  }
+
+  /**
+   * @param saveOwner the logged user the games are saved for, null for guests
+   */
+  public BBSMachineFactory(StoryTemplate storyTemplate, PetsciiThread petsciiThread, String saveOwner) {
+    this.storyTemplate = storyTemplate;
+    this.petsciiThread = petsciiThread;
+    this.saveOwner = saveOwner;
+  }
+
   protected byte[] readStoryData() throws IOException {
       return byteArrayStory;
   }
 
+  @Override
+  protected GameData createGameData() throws IOException {
+    return storyTemplate == null ? super.createGameData() : new GameDataImpl(storyTemplate, null);
+  }
+
+  @Override
+  protected int getUndoBudget() {
+    return undoBudget;
+  }
+
   protected void reportInvalidStory() {
     console.reportInvalidStory();
   }
 
   protected VirtualConsole initUI(Machine machine) {
-    BBSConsole bbsConsole  = new BBSConsole(machine,this.petsciiThread,false);
+    BBSConsole bbsConsole  = new BBSConsole(machine,this.petsciiThread,false,saveOwner);
     console = bbsConsole;
     saveGameDataStore = (SaveGameDataStore) bbsConsole;
     ioSystem = (IOSystem) bbsConsole;
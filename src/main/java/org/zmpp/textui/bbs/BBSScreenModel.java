@@ -1,15 +1,9 @@
 package org.zmpp.textui.bbs;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 
-import org.apache.commons.text.WordUtils;
-import org.davidmoten.text.utils.WordWrap;
 import org.zmpp.encoding.ZsciiEncoding;
 import org.zmpp.io.OutputStream;
-import org.zmpp.swingui.WordWrapper;
 import org.zmpp.vm.Machine;
 import org.zmpp.vm.ScreenModel;
 import org.zmpp.vm.StatusLine;
@@ -18,11 +12,11 @@ import org.zmpp.vm.TextCursor;
 import eu.sblendorio.bbs.core.Keys;
 import eu.sblendorio.bbs.core.PetsciiThread;
 
-public class BBSScreenModel implements ScreenModel, OutputStream, StatusLine {
+public class BBSScreenModel implements ScreenModel, OutputStream, StatusLine, StreamingWordWrapper.Sink {
 
     private PetsciiThread petsciiThread;
     private Machine machine;
-    private StringBuffer buffer;
+    private final StreamingWordWrapper wrapper;
 
     String adventureName = "";
     int score = 0;
@@ -30,16 +24,15 @@ public class BBSScreenModel implements ScreenModel, OutputStream, StatusLine {
     int hours = 0;
     int minutes = 0;
 
-    static int BUFFER_LENGTH = 8192;
-
-    private int nlines = 0;
+    static final int LINE_WIDTH = 39;
+    static final int PAGE_LINES = 24;
 
     private boolean isSelected = false;
 
     public BBSScreenModel(PetsciiThread petsciiThread, Machine machine) {
         this.petsciiThread = petsciiThread;
         this.machine = machine;
-        buffer = new StringBuffer(BUFFER_LENGTH);
+        this.wrapper = new StreamingWordWrapper(LINE_WIDTH, PAGE_LINES, this);
     }
 
     @Override
@@ -143,22 +136,7 @@ public class BBSScreenModel implements ScreenModel, OutputStream, StatusLine {
 
     @Override
     public void resetPagers() {
-    }
-
-    protected List<String> wordWrap(String s) {
-        String[] cleaned = s.split("\n");
-        List<String> result = new ArrayList<>();
-        for (String item: cleaned) {
-            String[] wrappedLine = WordWrap
-                    .from(item)
-                    .maxWidth(39)
-                    .newLine("\n")
-                    .breakWords(false)
-                    .wrap()
-                    .split("\n");
-            result.addAll(Arrays.asList(wrappedLine));
-        }
-        return result;
+        wrapper.resetPaging();
     }
 
     @Override
@@ -169,52 +147,44 @@ public class BBSScreenModel implements ScreenModel, OutputStream, StatusLine {
                 petsciiThread.flush();
             } else if (zsciiChar != ZsciiEncoding.INSTDEL && zsciiChar != -1) {
                 char c = machine.getGameData().getZsciiEncoding().getUnicodeChar(zsciiChar);
-                petsciiThread.print("" + c);
+                petsciiThread.print(String.valueOf(c));
                 petsciiThread.flush();
             }
         } else {
             if (zsciiChar == ZsciiEncoding.NEWLINE || zsciiChar == ZsciiEncoding.NEWLINE_10) {
-                wordWrap(buffer.toString()).forEach(s -> {
-                    nlines++;
-                    petsciiThread.println(s);
-                    checkForScreenPaging();
-                });
+                wrapper.newline();
                 petsciiThread.flush();
-                buffer = new StringBuffer(BUFFER_LENGTH);
             } else if (zsciiChar == '>') {
-                buffer.append(">");
-                List<String> lines = wordWrap(buffer.toString());
-                for (int i=0; i<lines.size(); ++i) {
-                    nlines++;
-                    petsciiThread.print(lines.get(i));
-                    if (i != lines.size()-1) {
-                        petsciiThread.newline();
-                        checkForScreenPaging();
-                    }
-                }
+                wrapper.append('>');
+                wrapper.prompt();
                 petsciiThread.flush();
-                buffer = new StringBuffer(BUFFER_LENGTH);
-                nlines = 0;
             } else {
-                char c = machine.getGameData().getZsciiEncoding().getUnicodeChar(zsciiChar);
-                buffer.append(c);
+                wrapper.append(machine.getGameData().getZsciiEncoding().getUnicodeChar(zsciiChar));
             }
         }
     }
 
-    private void checkForScreenPaging() {
-        if (nlines >= 24) {
-            petsciiThread.print("--- ANY KEY FOR NEXT PAGE -------------");
-            try {
-                petsciiThread.flush();
-                petsciiThread.resetInput();
-                petsciiThread.readKey();
-                petsciiThread.println();
-                petsciiThread.println();
-                nlines = 0;
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+    @Override
+    public void print(String text) {
+        petsciiThread.print(text);
+    }
+
+    @Override
+    public void newline() {
+        petsciiThread.newline();
+    }
+
+    @Override
+    public void endOfPage() {
+        petsciiThread.print("--- ANY KEY FOR NEXT PAGE -------------");
+        try {
+            petsciiThread.flush();
+            petsciiThread.resetInput();
+            petsciiThread.readKey();
+            petsciiThread.println();
+            petsciiThread.println();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
     }
 
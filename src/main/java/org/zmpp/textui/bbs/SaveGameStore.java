@@ -0,0 +1,214 @@
+package org.zmpp.textui.bbs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide store of the games saved on the BBS.
+ *
+ * Saves are Quetzal files kept in a directory per user and per story,
+ * [dir]/[user]/[story checksum]/[name].qzl, so that users never see each
+ * other's games. Files are written by a background thread: a session gets
+ * back to the game as soon as the save is queued, and reads it back from
+ * memory until it is on disk. The names of the saves of a user are read from
+ * disk once and then kept in memory, for listing them at every prompt.
+ */
+public class SaveGameStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SaveGameStore.class);
+
+    public static final String DEFAULT_DIR = System.getProperty("user.home") + "/zmpp-saves";
+    private static final String EXTENSION = ".qzl";
+
+    /* The encoding of a name never starts like this, so no user can take it */
+    private static final String GUEST_DIR = "%guest";
+
+    private static final SaveGameStore instance = new SaveGameStore(new File(DEFAULT_DIR), true);
+
+    public static SaveGameStore getInstance() { return instance; }
+
+    private final File dir;
+    private final ExecutorService writer;
+
+    /* user directory -> story checksum -> save names */
+    private final Map<String, Map<Integer, Set<String>>> index = new ConcurrentHashMap<>();
+    private final Map<File, byte[]> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong saves = new AtomicLong(0);
+    private final AtomicLong loads = new AtomicLong(0);
+    private final AtomicLong failures = new AtomicLong(0);
+    private final AtomicLong bytesWritten = new AtomicLong(0);
+
+    SaveGameStore(File dir, boolean writeInBackground) {
+        this.dir = dir;
+        this.writer = writeInBackground
+                ? Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "zmpp-save-writer");
+                    t.setDaemon(true);
+                    return t;
+                })
+                : null;
+    }
+
+    /**
+     * @param user the logged user, null for guests
+     * @return the names of the games saved by user for the story, sorted
+     */
+    public List<String> list(String user, int checksum) {
+        final Set<String> names = savesOf(userDir(user)).get(checksum);
+        return names == null ? Collections.emptyList() : new ArrayList<>(names);
+    }
+
+    public boolean exists(String user, int checksum, String name) {
+        return list(user, checksum).contains(normalize(name));
+    }
+
+    /**
+     * Queues a save for writing, replacing any save with the same name.
+     */
+    public void save(String user, int checksum, String name, byte[] data) {
+        final String userDir = userDir(user);
+        final String normalized = normalize(name);
+        final File file = fileOf(userDir, checksum, normalized);
+        savesOf(userDir).computeIfAbsent(checksum, k -> new ConcurrentSkipListSet<>()).add(normalized);
+        pending.put(file, data);
+        saves.incrementAndGet();
+        if (writer == null) {
+            write(file, data);
+        } else {
+            writer.execute(() -> write(file, data));
+        }
+    }
+
+    /**
+     * @return the save, or null if user has no save with this name
+     */
+    public byte[] load(String user, int checksum, String name) throws IOException {
+        final File file = fileOf(userDir(user), checksum, normalize(name));
+        loads.incrementAndGet();
+        final byte[] data = pending.get(file);
+        if (data != null) return data;
+        return file.isFile() ? Files.readAllBytes(file.toPath()) : null;
+    }
+
+    /**
+     * Waits for the queued saves to be on disk.
+     */
+    public void flush() throws InterruptedException {
+        if (writer == null) return;
+        try {
+            writer.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void write(File file, byte[] data) {
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            final File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+            Files.write(temp.toPath(), data);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            bytesWritten.addAndGet(data.length);
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            logger.warn("Couldn't write save {}: {}", file, e.toString());
+            if (!file.isFile()) forget(file);
+        } finally {
+            pending.remove(file, data);
+        }
+    }
+
+    private void forget(File file) {
+        final String userDir = file.getParentFile().getParentFile().getName();
+        final int checksum = Integer.parseInt(file.getParentFile().getName(), 16);
+        final String name = decode(file.getName().substring(0, file.getName().length() - EXTENSION.length()));
+        final Set<String> names = savesOf(userDir).get(checksum);
+        if (names != null) names.remove(name);
+    }
+
+    private Map<Integer, Set<String>> savesOf(String userDir) {
+        return index.computeIfAbsent(userDir, this::scan);
+    }
+
+    private Map<Integer, Set<String>> scan(String userDir) {
+        final Map<Integer, Set<String>> result = new ConcurrentHashMap<>();
+        final File[] stories = new File(dir, userDir).listFiles(File::isDirectory);
+        if (stories == null) return result;
+        for (File story : stories) {
+            final int checksum;
+            try {
+                checksum = Integer.parseInt(story.getName(), 16);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            final Set<String> names = new ConcurrentSkipListSet<>();
+            final File[] files = story.listFiles((d, n) -> n.endsWith(EXTENSION));
+            if (files != null) {
+                for (File file : files) {
+                    names.add(decode(file.getName().substring(0, file.getName().length() - EXTENSION.length())));
+                }
+            }
+            result.put(checksum, names);
+        }
+        return result;
+    }
+
+    private File fileOf(String userDir, int checksum, String name) {
+        return new File(new File(new File(dir, userDir), String.format("%04x", checksum)), encode(name) + EXTENSION);
+    }
+
+    private static String userDir(String user) {
+        return user == null || user.trim().isEmpty() ? GUEST_DIR : encode(user.trim().toLowerCase());
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase();
+    }
+
+    /* A file name for any string, which cannot be "." or ".." */
+    private static String encode(String name) {
+        try {
+            return URLEncoder.encode(name, "UTF-8").replace(".", "%2E").replace("*", "%2A");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String name) {
+        try {
+            return URLDecoder.decode(name, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return name;
+        }
+    }
+
+    public String stats() {
+        return "users=" + index.size() +
+                ", saves=" + saves.get() +
+                ", loads=" + loads.get() +
+                ", pending=" + pending.size() +
+                ", failures=" + failures.get() +
+                ", bytesWritten=" + bytesWritten.get();
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.zmpp.textui.bbs;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zmpp.vm.StoryTemplate;
+
+/**
+ * Process-wide registry of the story files played on the BBS.
+ *
+ * Each story is read and parsed once, the first time somebody plays it; every
+ * session then builds its machine from the same immutable StoryTemplate and
+ * only copies the story's dynamic memory.
+ */
+public class StoryRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoryRegistry.class);
+
+    private static final StoryRegistry instance = new StoryRegistry();
+
+    public static StoryRegistry getInstance() { return instance; }
+
+    public interface StoryLoader {
+        byte[] load() throws IOException;
+    }
+
+    private final Map<String, StoryTemplate> templates = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong loads = new AtomicLong(0);
+
+    StoryRegistry() {
+    }
+
+    /**
+     * @return the template of the story called name, calling loader only if
+     * the story was never loaded before
+     */
+    public StoryTemplate get(String name, StoryLoader loader) throws IOException {
+        StoryTemplate template = templates.get(name);
+        if (template != null) {
+            hits.incrementAndGet();
+            return template;
+        }
+        synchronized (templates) {
+            template = templates.get(name);
+            if (template == null) {
+                template = new StoryTemplate(loader.load());
+                templates.put(name, template);
+                loads.incrementAndGet();
+                logger.info("Story {} loaded, {} bytes, {} bytes of dynamic memory per session",
+                        name, template.getSize(), template.getDynamicMemorySize());
+            } else {
+                hits.incrementAndGet();
+            }
+            return template;
+        }
+    }
+
+    public int size() { return templates.size(); }
+
+    public String stats() {
+        return "stories=" + size() +
+                ", loads=" + loads.get() +
+                ", hits=" + hits.get();
+    }
+
+}
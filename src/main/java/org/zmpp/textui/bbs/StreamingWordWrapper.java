@@ -0,0 +1,134 @@
+package org.zmpp.textui.bbs;
+
+/**
+ * Word wraps the text of a story as it is printed, one character at a time.
+ *
+ * Only the line being written is kept, in a fixed buffer: a line is sent to
+ * the Sink as soon as a character does not fit, breaking after the last space
+ * or hyphen. Spaces at a break are dropped and a word longer than a line is
+ * not broken, like WordWrap with breakWords(false). The wrapper also counts
+ * the lines sent since the last prompt and asks the Sink for a page break
+ * when a screen is full.
+ */
+public class StreamingWordWrapper {
+
+    public interface Sink {
+        void print(String text);
+        void newline();
+        void endOfPage();
+    }
+
+    private final int width;
+    private final int pageLines;
+    private final Sink sink;
+
+    private final char[] line;
+    private int length = 0;
+
+    /* The current line already went to the sink, for a word longer than a line */
+    private boolean overflow = false;
+    /* Spaces are dropped at the start of a line following a break */
+    private boolean afterBreak = false;
+
+    private int nlines = 0;
+
+    public StreamingWordWrapper(int width, int pageLines, Sink sink) {
+        this.width = width;
+        this.pageLines = pageLines;
+        this.sink = sink;
+        this.line = new char[width];
+    }
+
+    public void append(char c) {
+        if (c == ' ') {
+            if (overflow) {
+                breakLine();
+            } else if (length < width) {
+                if (!afterBreak) line[length++] = c;
+            } else {
+                sendLine(trimmedLength(length));
+                breakLine();
+            }
+            return;
+        }
+        afterBreak = false;
+        if (overflow) {
+            sink.print(String.valueOf(c));
+        } else if (length < width) {
+            line[length++] = c;
+        } else {
+            wrap();
+            append(c);
+        }
+    }
+
+    /**
+     * Ends a paragraph.
+     */
+    public void newline() {
+        if (afterBreak && length == 0) {
+            // the line was full, it already ended
+            afterBreak = false;
+            return;
+        }
+        if (!overflow) sendLine(length);
+        breakLine();
+        afterBreak = false;
+    }
+
+    /**
+     * Sends the line being written without ending it, the story waits for
+     * input: a new page starts from here.
+     */
+    public void prompt() {
+        if (!overflow) sendLine(length);
+        length = 0;
+        overflow = false;
+        afterBreak = false;
+        nlines = 0;
+    }
+
+    public void resetPaging() {
+        nlines = 0;
+    }
+
+    private void wrap() {
+        int breakAt = length - 1;
+        while (breakAt > 0 && line[breakAt] != ' ' && line[breakAt] != '-') --breakAt;
+        if (breakAt <= 0) {
+            // a single word, sent as it is and continued on the same line
+            sendLine(length);
+            length = 0;
+            overflow = true;
+            return;
+        }
+        final int next = breakAt + 1;
+        sendLine(line[breakAt] == ' ' ? trimmedLength(breakAt) : next);
+        breakLine();
+        int start = next;
+        while (start < width && line[start] == ' ') ++start;
+        length = width - start;
+        System.arraycopy(line, start, line, 0, length);
+    }
+
+    private int trimmedLength(int end) {
+        while (end > 0 && line[end - 1] == ' ') --end;
+        return end;
+    }
+
+    private void sendLine(int end) {
+        if (end > 0) sink.print(new String(line, 0, end));
+    }
+
+    private void breakLine() {
+        sink.newline();
+        length = 0;
+        overflow = false;
+        afterBreak = true;
+        if (++nlines >= pageLines) {
+            sink.endOfPage();
+            nlines = 0;
+        }
+    }
+
+}
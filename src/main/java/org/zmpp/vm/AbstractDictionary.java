@@ -23,6 +23,7 @@
 package org.zmpp.vm;
 
 import org.zmpp.base.MemoryReadAccess;
+import org.zmpp.encoding.WordEncoder;
 import org.zmpp.encoding.ZCharDecoder;
 import org.zmpp.encoding.ZsciiString;
 
@@ -48,25 +49,78 @@ public abstract class AbstractDictionary implements Dictionary {
    */
   private DictionarySizes sizes;
   
+  /**
+   * The encoder for the words to look up.
+   */
+  private WordEncoder encoder;
+  
   /**
    * Constructor.
    * 
    * @param map the memory map
    * @param address the start address of the dictionary
    * @param converter a Z char decoder object
+   * @param encoder the encoder for the words to look up
    * @param an object specifying the sizes of the dictionary entries
    */
   public AbstractDictionary(final MemoryReadAccess map, final int address,
                             final ZCharDecoder decoder,
+                            final WordEncoder encoder,
                             final DictionarySizes sizes) {
     
     super();
     this.memaccess = map;
     this.address = address;
     this.decoder = decoder;
+    this.encoder = encoder;
     this.sizes = sizes;
   }
   
+  /**
+   * {@inheritDoc}
+   */
+  public int lookup(final ZsciiString token) {
+    
+    return lookupEntry(encoder.encode(token, sizes.getNumEntryBytes()));
+  }
+  
+  /**
+   * {@inheritDoc}
+   */
+  public int lookup(final MemoryReadAccess memaccess, final int address,
+                    final int length) {
+    
+    return lookupEntry(encoder.encode(memaccess, address, length,
+                                      sizes.getNumEntryBytes()));
+  }
+  
+  /**
+   * Looks up an encoded word.
+   * 
+   * @param entryBytes the encoded bytes, as returned by the WordEncoder
+   * @return the address of the entry or 0
+   */
+  protected abstract int lookupEntry(long entryBytes);
+  
+  /**
+   * Returns the encoded bytes of the entry at the specified address.
+   * A few entries in Infocom's stories lack the end bit in their last word,
+   * it is set here so that they are found.
+   * 
+   * @param entryAddress the entry address
+   * @return the encoded bytes
+   */
+  protected long getEntryBytes(final int entryAddress) {
+    
+    return WordEncoder.readEntryBytes(memaccess, entryAddress,
+                                      sizes.getNumEntryBytes()) | 0x8000;
+  }
+  
+  protected WordEncoder getEncoder() {
+    
+    return encoder;
+  }
+  
   /**
    * {@inheritDoc}
    */
@@ -125,20 +179,6 @@ public abstract class AbstractDictionary implements Dictionary {
     return sizes;
   }
   
-  protected ZsciiString truncateToken(final ZsciiString token) {
-    
-    // Unfortunately it seems that the maximum size of an entry is not equal 
-    // to the size declared in the dictionary header, therefore we take
-    // the maximum length of a token defined in the Z-machine specification.    
-    // The lookup token can only be 6 characters long in version 3
-    // and 9 in versions >= 4
-    if (token.length() > sizes.getMaxEntryChars()) {
-      
-      return token.substring(0, sizes.getMaxEntryChars());
-    }
-    return token;
-  }
-  
   /**
    * Creates a string presentation of this dictionary.
    * 
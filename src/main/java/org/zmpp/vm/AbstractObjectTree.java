@@ -25,6 +25,7 @@ package org.zmpp.vm;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.zmpp.base.Hibernatable;
 import org.zmpp.base.MemoryAccess;
 import org.zmpp.encoding.ZCharDecoder;
 
@@ -34,7 +35,7 @@ import org.zmpp.encoding.ZCharDecoder;
  * @author Wei-ju Wu
  * @version 1.0
  */
-public abstract class AbstractObjectTree implements ObjectTree {
+public abstract class AbstractObjectTree implements ObjectTree, Hibernatable {
   
   /**
    * The object cache.
@@ -78,6 +79,22 @@ public abstract class AbstractObjectTree implements ObjectTree {
     this.decoder = decoder;
   }
   
+  /**
+   * Empties the object cache, the objects are created again when used.
+   */
+  public void hibernate() {
+    
+    objectCache.clear();
+  }
+  
+  /**
+   * {@inheritDoc}
+   */
+  public void wakeUp() {
+    
+    // the cache is filled again as the objects are used
+  }
+  
   /**
    * Returns the memory object.
    * 
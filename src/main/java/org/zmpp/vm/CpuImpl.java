@@ -171,7 +171,8 @@ public class CpuImpl implements Cpu, Interruptable {
    */
   public void halt(final String errormsg) {
   
-    machine.getOutput().print(new ZsciiString(errormsg));
+    machine.getOutput().print(new ZsciiString(errormsg,
+        machine.getGameData().getZsciiEncoding()));
     running = false;
   }  
 
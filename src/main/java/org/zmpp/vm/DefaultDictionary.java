@@ -22,12 +22,11 @@
  */
 package org.zmpp.vm;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import org.zmpp.base.MemoryReadAccess;
+import org.zmpp.encoding.WordEncoder;
 import org.zmpp.encoding.ZCharDecoder;
-import org.zmpp.encoding.ZsciiString;
 
 /**
  * This class implements a view on the dictionary within a memory map.
@@ -39,14 +38,14 @@ import org.zmpp.encoding.ZsciiString;
 public class DefaultDictionary extends AbstractDictionary {
 
   /**
-   * The lookup map.
+   * The encoded bytes of the entries, sorted.
    */
-  private Map<ZsciiString, Integer> lookupMap;
+  private long[] entryBytes;
   
   /**
-   * The maximum entry size.
+   * The entry addresses, in the order of entryBytes.
    */
-  private int maxEntrySize;
+  private int[] entryAddresses;
   
   /**
    * Constructor.
@@ -54,60 +53,74 @@ public class DefaultDictionary extends AbstractDictionary {
    * @param map the memory map
    * @param address the start address of the dictionary
    * @param converter a Z char decoder object
+   * @param encoder the encoder for the words to look up
    * @param sizes a sizes object
    */
   public DefaultDictionary(MemoryReadAccess map, int address,
-                           ZCharDecoder decoder, DictionarySizes sizes) {
+                           ZCharDecoder decoder, WordEncoder encoder,
+                           DictionarySizes sizes) {
     
-    super(map, address, decoder, sizes);
-    createLookupMap();
+    super(map, address, decoder, encoder, sizes);
+    createLookupIndex();
   }  
 
   /**
-   * {@inheritDoc}
+   * Constructor for a dictionary of a story which is already running in
+   * another machine. The lookup index and the encoder are shared with the
+   * other dictionary instead of being built again, they are never modified
+   * after creation.
+   * 
+   * @param map the memory map
+   * @param address the start address of the dictionary
+   * @param converter a Z char decoder object
+   * @param sizes a sizes object
+   * @param template a dictionary built on the same story
    */
-  public int lookup(final ZsciiString token) {
+  public DefaultDictionary(MemoryReadAccess map, int address,
+                           ZCharDecoder decoder, DictionarySizes sizes,
+                           DefaultDictionary template) {
     
-    final ZsciiString lookupToken = truncateToken(token);
-        
-    if (lookupMap.containsKey(lookupToken)) {
-      
-      //System.out.println("Found, entry: " + lookupMap.get(entry));
-      return lookupMap.get(lookupToken);
-    }
-    //System.out.println("Not found, token: '" + token + "'");
-    return 0;
+    super(map, address, decoder, template.getEncoder(), sizes);
+    entryBytes = template.entryBytes;
+    entryAddresses = template.entryAddresses;
   }
-  
+
   /**
    * {@inheritDoc}
    */
-  protected int getMaxEntrySize() {
+  protected int lookupEntry(final long bytes) {
     
-    return maxEntrySize;
+    final int index = Arrays.binarySearch(entryBytes, bytes);
+    return index >= 0 ? entryAddresses[index] : 0;
   }
   
   /**
-   * Create the dictionary lookup map. The standards document suggests to
-   * convert the tokens into ZSCII strings and look them up in the dictionary
-   * by a binary search algorithm, which results in a O(log n) search algorithm,
-   * instead I convert the dictionary strings into Java strings and put them
-   * into a (entry - address) map, which is easier to handle and is O(1).
-   * Generating it once at initialization is safe because the dictionary is in
-   * static memory and does not change at runtime.
+   * Create the dictionary lookup index. As the standards document suggests,
+   * the tokens are encoded like the dictionary entries and looked up by a
+   * binary search. The encoded bytes of an entry fit in a long, so the
+   * index is a sorted array of primitives which is cheap to search and to
+   * share. Generating it once at initialization is safe because the
+   * dictionary is in static memory and does not change at runtime.
    */
-  private void createLookupMap() {
+  private void createLookupIndex() {
     
-    lookupMap = new HashMap<ZsciiString, Integer>();
-    int entryAddress;
+    // An entry is at most 6 bytes and its address 2 bytes, they are sorted
+    // together
+    final int n = Math.max(0, getNumberOfEntries());
+    final long[] sorted = new long[n];
+    for (int i = 0; i < n; i++) {
+      
+      final int entryAddress = getEntryAddress(i);
+      sorted[i] = getEntryBytes(entryAddress) << 16 | (entryAddress & 0xffff);
+    }
+    Arrays.sort(sorted);
     
-    for (int i = 0, n = getNumberOfEntries(); i < n; i++) {
+    entryBytes = new long[n];
+    entryAddresses = new int[n];
+    for (int i = 0; i < n; i++) {
       
-      entryAddress = getEntryAddress(i);      
-      final ZsciiString str = getDecoder().decode2Zscii(getMemoryAccess(),
-          entryAddress, getSizes().getNumEntryBytes());
-      maxEntrySize = Math.max(str.length(), maxEntrySize);
-      lookupMap.put(str, entryAddress);
+      entryBytes[i] = sorted[i] >>> 16;
+      entryAddresses[i] = (int) (sorted[i] & 0xffff);
     }
   }
 }
@@ -22,6 +22,7 @@
  */
 package org.zmpp.vm;
 
+import org.zmpp.base.MemoryReadAccess;
 import org.zmpp.encoding.ZsciiString;
 
 
@@ -79,4 +80,17 @@ public interface Dictionary {
    * @return the address of the token or 0
    */
   int lookup(ZsciiString token);
+  
+  /**
+   * Looks up the word of the specified length at the specified address,
+   * usually in the text buffer of a read instruction. This creates no
+   * objects. The result is the address of the entry or 0 if it is not
+   * found.
+   * 
+   * @param memaccess the memory
+   * @param address the address of the word
+   * @param length the number of characters of the word
+   * @return the address of the word or 0
+   */
+  int lookup(MemoryReadAccess memaccess, int address, int length);
 }
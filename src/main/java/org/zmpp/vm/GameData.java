@@ -23,7 +23,9 @@
 package org.zmpp.vm;
 
 import org.zmpp.base.MemoryAccess;
+import org.zmpp.base.MemoryReadAccess;
 import org.zmpp.encoding.AlphabetTable;
+import org.zmpp.encoding.WordEncoder;
 import org.zmpp.encoding.ZCharDecoder;
 import org.zmpp.encoding.ZCharEncoder;
 import org.zmpp.encoding.ZsciiEncoding;
@@ -84,6 +86,13 @@ public interface GameData {
    */
   ZCharEncoder getZCharEncoder();
   
+  /**
+   * Returns the encoder for the words to look up in a dictionary.
+   * 
+   * @return the word encoder
+   */
+  WordEncoder getWordEncoder();
+  
   /**
    * Returns the ZSCII encoding object.
    * 
@@ -112,6 +121,14 @@ public interface GameData {
    */
   int getCalculatedChecksum();
 
+  /**
+   * Returns the story file as it was loaded, before the game changed its
+   * dynamic memory. Save games store the differences to it.
+   * 
+   * @return the original story file
+   */
+  MemoryReadAccess getOriginalStory();
+
   /**
    * Returns true, if the checksum validation was successful.
    * 
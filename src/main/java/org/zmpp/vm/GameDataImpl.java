@@ -24,6 +24,7 @@ package org.zmpp.vm;
 
 import org.zmpp.base.DefaultMemoryAccess;
 import org.zmpp.base.MemoryAccess;
+import org.zmpp.base.MemoryReadAccess;
 import org.zmpp.encoding.AccentTable;
 import org.zmpp.encoding.AlphabetTable;
 import org.zmpp.encoding.AlphabetTableV1;
@@ -34,11 +35,12 @@ import org.zmpp.encoding.DefaultAccentTable;
 import org.zmpp.encoding.DefaultAlphabetTable;
 import org.zmpp.encoding.DefaultZCharDecoder;
 import org.zmpp.encoding.DefaultZCharTranslator;
+import org.zmpp.encoding.WordEncoder;
 import org.zmpp.encoding.ZCharDecoder;
+import org.zmpp.encoding.ZCharDecoder.AbbreviationsTable;
 import org.zmpp.encoding.ZCharEncoder;
 import org.zmpp.encoding.ZCharTranslator;
 import org.zmpp.encoding.ZsciiEncoding;
-import org.zmpp.encoding.ZsciiString;
 import org.zmpp.media.Resources;
 
 /**
@@ -64,6 +66,11 @@ public class GameDataImpl implements GameData {
    */
   private Dictionary dictionary;
   
+  /**
+   * The encoder for the words to look up.
+   */
+  private WordEncoder wordEncoder;
+  
   /**
    * The object tree.
    */
@@ -99,6 +106,11 @@ public class GameDataImpl implements GameData {
    */
   private byte[] storyfileData;
   
+  /**
+   * The shared story, if the machine was created from a template.
+   */
+  private StoryTemplate template;
+  
   private int checksum;  
   
   /**
@@ -114,19 +126,42 @@ public class GameDataImpl implements GameData {
     reset();
   }
   
+  /**
+   * Constructor for a game sharing its static memory, dictionary and
+   * abbreviations with the other games created from the same template.
+   * 
+   * @param template the story template
+   * @param resources the media resources
+   */
+  public GameDataImpl(StoryTemplate template, Resources resources) {
+
+    this.template = template;
+    this.resources = resources;
+    reset();
+  }
+  
   /**
    * {@inheritDoc}
    */
   public final void reset() {
 
-    // Make a copy and initialize from the copy
-    final byte[] data = new byte[storyfileData.length];
-    System.arraycopy(storyfileData, 0, data, 0, storyfileData.length);
-    
-    memaccess = new DefaultMemoryAccess(data);
-    fileheader = new DefaultStoryFileHeader(memaccess);
-    
-    checksum = calculateChecksum();
+    if (template == null) {
+      
+      // Make a copy and initialize from the copy
+      final byte[] data = new byte[storyfileData.length];
+      System.arraycopy(storyfileData, 0, data, 0, storyfileData.length);
+      
+      memaccess = new DefaultMemoryAccess(data);
+      fileheader = new DefaultStoryFileHeader(memaccess);
+      checksum = calculateChecksum(memaccess, fileheader.getFileLength());
+      
+    } else {
+      
+      // Only the dynamic memory is copied
+      memaccess = template.createMemoryAccess();
+      fileheader = new DefaultStoryFileHeader(memaccess);
+      checksum = template.getChecksum();
+    }
     
     // Install the whole character code system here
     initEncodingSystem();
@@ -145,47 +180,81 @@ public class GameDataImpl implements GameData {
     
     final DictionarySizes sizes = (fileheader.getVersion() <= 3) ?
         new DictionarySizesV1ToV3() : new DictionarySizesV4ToV8();
-    dictionary = new DefaultDictionary(memaccess,
-        fileheader.getDictionaryAddress(), decoder, sizes);
+    if (template == null) {
+      
+      wordEncoder = new WordEncoder(alphabetTable, fileheader.getVersion());
+      dictionary = new DefaultDictionary(memaccess,
+          fileheader.getDictionaryAddress(), decoder, wordEncoder, sizes);
+      
+    } else {
+      
+      wordEncoder = template.getDictionary().getEncoder();
+      dictionary = new DefaultDictionary(memaccess,
+          fileheader.getDictionaryAddress(), decoder, sizes,
+          template.getDictionary());
+    }
   }
   
   private void initEncodingSystem() {
     
+    encoding = createEncoding(memaccess, fileheader);
+    alphabetTable = createAlphabetTable(memaccess, fileheader);
+    
+    final ZCharTranslator translator =
+      new DefaultZCharTranslator(alphabetTable);
+        
+    final AbbreviationsTable abbreviations = (template == null) ?
+        new Abbreviations(memaccess, fileheader.getAbbreviationsAddress()) :
+        template.createAbbreviations(memaccess,
+            fileheader.getAbbreviationsAddress());
+    decoder = new DefaultZCharDecoder(encoding, translator, abbreviations);
+    encoder = new ZCharEncoder(translator);
+  }
+  
+  /**
+   * Creates the ZSCII encoding of the story.
+   * 
+   * @param memaccess the story memory
+   * @param fileheader the story file header
+   * @return the encoding
+   */
+  static ZsciiEncoding createEncoding(final MemoryReadAccess memaccess,
+      final StoryFileHeader fileheader) {
+    
     final AccentTable accentTable = (fileheader.getCustomAccentTable() == 0) ?
         new DefaultAccentTable() :
         new CustomAccentTable(memaccess, fileheader.getCustomAccentTable());
-    encoding = new ZsciiEncoding(accentTable);
+    return new ZsciiEncoding(accentTable);
+  }
+  
+  /**
+   * Creates the alphabet table of the story.
+   * 
+   * @param memaccess the story memory
+   * @param fileheader the story file header
+   * @return the alphabet table
+   */
+  static AlphabetTable createAlphabetTable(final MemoryReadAccess memaccess,
+      final StoryFileHeader fileheader) {
 
     // Configure the alphabet table
     if (fileheader.getCustomAlphabetTable() == 0) {
             
       if (fileheader.getVersion() == 1) {
         
-        alphabetTable = new AlphabetTableV1();
+        return new AlphabetTableV1();
         
       } else if (fileheader.getVersion() == 2) {
         
-        alphabetTable = new AlphabetTableV2();
+        return new AlphabetTableV2();
       
       } else {
         
-        alphabetTable = new DefaultAlphabetTable();
+        return new DefaultAlphabetTable();
       }
-      
-    } else {
-      
-      alphabetTable = new CustomAlphabetTable(memaccess,
-          fileheader.getCustomAlphabetTable());
     }
-    
-    final ZCharTranslator translator =
-      new DefaultZCharTranslator(alphabetTable);
-        
-    final Abbreviations abbreviations = new Abbreviations(memaccess,
-        fileheader.getAbbreviationsAddress());
-    decoder = new DefaultZCharDecoder(encoding, translator, abbreviations);
-    encoder = new ZCharEncoder(translator);
-    ZsciiString.initialize(encoding);
+    return new CustomAlphabetTable(memaccess,
+        fileheader.getCustomAlphabetTable());
   }
     
   
@@ -245,6 +314,14 @@ public class GameDataImpl implements GameData {
     return encoder;
   }
   
+  /**
+   * {@inheritDoc}
+   */
+  public WordEncoder getWordEncoder() {
+    
+    return wordEncoder;
+  }
+  
   /**
    * {@inheritDoc}
    */
@@ -264,17 +341,18 @@ public class GameDataImpl implements GameData {
   /**
    * Calculates the checksum of the file.
    * 
-   * @param fileheader the file header
+   * @param memaccess the story memory
+   * @param filelen the file length from the header
    * @return the check sum
    */
-  private int calculateChecksum() {
+  static int calculateChecksum(final MemoryReadAccess memaccess,
+      final int filelen) {
     
-    final int filelen = fileheader.getFileLength();
     int sum = 0;
     
     for (int i = 0x40; i < filelen; i++) {
     
-      sum += getMemoryAccess().readUnsignedByte(i);
+      sum += memaccess.readUnsignedByte(i);
     }
     return (sum & 0xffff);
   }
@@ -284,6 +362,15 @@ public class GameDataImpl implements GameData {
     return checksum;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public MemoryReadAccess getOriginalStory() {
+    
+    return template == null ? new DefaultMemoryAccess(storyfileData)
+        : template.getOriginalStory();
+  }
+
   /**
    * {@inheritDoc}
    */
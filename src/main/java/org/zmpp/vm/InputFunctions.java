@@ -24,16 +24,11 @@ package org.zmpp.vm;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.zmpp.base.MemoryAccess;
-import org.zmpp.encoding.ZCharDecoder;
 import org.zmpp.encoding.ZsciiEncoding;
-import org.zmpp.encoding.ZsciiString;
-import org.zmpp.encoding.ZsciiStringBuilder;
-import org.zmpp.encoding.ZsciiStringTokenizer;
+import org.zmpp.vmutil.IntervalTimer;
 
 
 /**
@@ -46,18 +41,12 @@ public class InputFunctions implements InputLine {
 
   private CommandHistory history;  
   private Machine machine;
-  private static final ZsciiString WHITESPACE =
-    new ZsciiString(new short[] { ' ', '\n', '\t', '\r' });
 
   /**
-   * This class represents the interrupt method in timed input.
+   * This class represents the interrupt method in timed input. It runs
+   * on the shared IntervalTimer every time the interval elapses.
    */
-  public class InterruptThread extends Thread {
-  
-    /**
-     * The interval in milliseconds.
-     */
-    private int time;
+  public class TimedInterrupt implements Runnable {
     
     /**
      * The packed routine address.
@@ -70,69 +59,60 @@ public class InputFunctions implements InputLine {
     private List<Short> inputbuffer;
     
     /**
-     * Status variable.
-     */ 
-    public boolean running;
+     * The timer handle.
+     */
+    private IntervalTimer.Handle handle;
     
-    public InterruptThread(int time, int routineAddress,
-                           List<Short> inputbuffer) {
+    public TimedInterrupt(int routineAddress, List<Short> inputbuffer) {
       
-      this.time = time;
       this.routineAddress = routineAddress;
       this.inputbuffer = inputbuffer;
-      this.running = true;
     }
     
-    public synchronized boolean isRunning() {
+    /**
+     * Starts calling the interrupt routine.
+     * 
+     * @param time the interval in milliseconds
+     */
+    public void start(final int time) {
       
-      return running;
+      handle = IntervalTimer.schedule(this, time);
     }
     
-    public synchronized void terminate() {
-      
-      running = false;
+    /**
+     * Stops calling the interrupt routine, waiting for a running call
+     * to finish.
+     */
+    public void terminate() {
       
-      // note: interrupt() can only be executed in a signed applet
-      interrupt();
-      try { join(); } catch (Exception ex) {
-        
-        ex.printStackTrace(System.err);
-      }
+      handle.cancel();
     }
     
     public void run() {
       
       final Output output = machine.getOutput();
+      displayCursor(false);
+      final short retval = machine.getCpu().callInterrupt(routineAddress);
+      if (retval == 1) {
       
-      while (isRunning()) {
-        
-        // We sleep for the given time
-        try { Thread.sleep(time); } catch (InterruptedException ex) { }
-        
-        if (isRunning()) {
-          displayCursor(false);
-          final short retval = machine.getCpu().callInterrupt(routineAddress);
-          if (retval == 1) {
-          
-            machine.getInput().getSelectedInputStream().cancelInput();
-            break;
-          }
+        machine.getInput().getSelectedInputStream().cancelInput();
+        handle.cancel();
+        return;
+      }
+    
+      // REDISPLAY INPUT HERE
+      // We need to find out if the routine has printed anything to
+      // the screen if yes, the input needs to be redisplayed
+      if (inputbuffer != null
+          && machine.getCpu().interruptDidOutput()) {
+      
+        for (short zsciiChar : inputbuffer) {
         
-          // REDISPLAY INPUT HERE
-          // We need to find out if the routine has printed anything to
-          // the screen if yes, the input needs to be redisplayed
-          if (inputbuffer != null
-              && machine.getCpu().interruptDidOutput()) {
-          
-            for (short zsciiChar : inputbuffer) {
-            
-              output.printZsciiChar(zsciiChar, false);
-            }
-          }
-          output.flushOutput();
-          displayCursor(true);
+          output.printZsciiChar(zsciiChar, false);
         }
       }
+      output.flushOutput();
+      displayCursor(true);
     }    
   }
   
@@ -172,12 +152,12 @@ public class InputFunctions implements InputLine {
     final int pointer = checkForPreviousInput(textbuffer, inputbuffer);    
     
     // Timed input
-    final InterruptThread thread = startInterruptThread(routineAddress, time,
+    final TimedInterrupt interrupt = startTimedInterrupt(routineAddress, time,
         inputbuffer);
     
     final short terminateChar = doInputLoop(textbuffer, pointer, inputbuffer);
     storeInput(inputbuffer, terminateChar);
-    terminateInterruptThread(thread);    
+    terminateTimedInterrupt(interrupt);    
     displayCursor(false);
     
     return handleTerminateChar(terminateChar);
@@ -300,27 +280,27 @@ public class InputFunctions implements InputLine {
     }    
   }
   
-  public InterruptThread startInterruptThread(final int routineAddress,
+  public TimedInterrupt startTimedInterrupt(final int routineAddress,
       final int time, final List<Short> inputbuffer) {
     
-    InterruptThread thread = null;
+    TimedInterrupt interrupt = null;
     final int version = machine.getGameData().getStoryFileHeader().getVersion();
     
     if (version >= 4 && time > 0 && routineAddress != 0) {
       
       final double dtime = ((double) time) / 10.0 * 1000.0;
-      thread = new InterruptThread((int) dtime, routineAddress, inputbuffer);
-      thread.start();
+      interrupt = new TimedInterrupt(routineAddress, inputbuffer);
+      interrupt.start((int) dtime);
     }
-    return thread;
+    return interrupt;
   }
   
-  public void terminateInterruptThread(final InterruptThread thread) {
+  public void terminateTimedInterrupt(final TimedInterrupt interrupt) {
     
-    // Synchronize with timed input thread    
-    if (thread != null) {
+    // Synchronize with the timer thread
+    if (interrupt != null) {
       
-      thread.terminate();
+      interrupt.terminate();
     }    
   }
 
@@ -447,12 +427,12 @@ public class InputFunctions implements InputLine {
     machine.getOutput().flushOutput();
     displayCursor(true);
     
-    InterruptThread thread = startInterruptThread(routineAddress, time, null);
+    TimedInterrupt interrupt = startTimedInterrupt(routineAddress, time, null);
     final short result =
       machine.getInput().getSelectedInputStream().getZsciiChar(true);
     //System.out.println("readChar(): " + result);
     
-    terminateInterruptThread(thread);
+    terminateTimedInterrupt(interrupt);
     displayCursor(false);
     
     return result;
@@ -473,152 +453,115 @@ public class InputFunctions implements InputLine {
     if (dictionaryAddress > 0) {
       
       dictionary = new UserDictionary(memaccess, dictionaryAddress,
-                         machine.getGameData().getZCharDecoder());
+                         machine.getGameData().getZCharDecoder(),
+                         machine.getGameData().getWordEncoder());
     }
     
     final int version = machine.getGameData().getStoryFileHeader().getVersion();
     final int bufferlen = memaccess.readUnsignedByte(textbuffer);
-    final int textbufferstart = determineTextBufferStart(version);
     final int charsTyped = (version >= 5) ?
                       memaccess.readUnsignedByte(textbuffer + 1) :
                       0;
     
     // from version 5, text starts at position 2
-    final ZsciiString input = bufferToZscii(textbuffer + textbufferstart, bufferlen,
-                                            charsTyped);
-    final List<ZsciiString> tokens = tokenize(input);
-    
-    final Map<ZsciiString, Integer> parsedTokens =
-      new HashMap<ZsciiString, Integer>();
+    // If charsTyped is set, use that value as the limit, the input
+    // also ends at a 0 byte
+    final int start = textbuffer + determineTextBufferStart(version);
+    final int limit = start + ((charsTyped > 0) ? charsTyped : bufferlen);
+    int end = start;
+    while (end < limit && memaccess.readUnsignedByte(end) != 0) {
+      
+      end++;
+    }
     
-    // Write the number of tokens in byte 1 of the parse buffer
+    // The tokens are read in place from the text buffer, each one is
+    // looked up and written to the parse buffer right away. Do not go
+    // beyond the limit of maxwords
     final int maxwords = memaccess.readUnsignedByte(parsebuffer);
-    
-    // Do not go beyond the limit of maxwords
-    final int numParsedTokens = Math.min(maxwords, tokens.size());
-    
-    // Write the number of parsed tokens into byte 1 of the parse buffer
-    memaccess.writeUnsignedByte(parsebuffer + 1, (short) numParsedTokens);
-    
+    int numParsedTokens = 0;
     int parseaddr = parsebuffer + 2;
+    int tokenStart = start;
     
-    for (int i = 0; i < numParsedTokens; i++) {
+    while (tokenStart < end && numParsedTokens < maxwords) {
       
-      final ZsciiString token = tokens.get(i);      
-      final int entryAddress = dictionary.lookup(token);
-      //System.out.println("token: '" + token + "' entryAddress: " + entryAddress);
-      
-      int startIndex = 0;
-      if (parsedTokens.containsKey(token)) {
-          
-        final int timesContained = parsedTokens.get(token);
-        parsedTokens.put(token, timesContained + 1);
-          
-        for (int j = 0; j < timesContained; j++) {
-          
-          final int found = input.indexOf(token, startIndex);
-          startIndex = found + token.length();
-        }
-          
-      } else {
-          
-        parsedTokens.put(token, 1);          
+      final short zsciiChar = memaccess.readUnsignedByte(tokenStart);
+      if (isWhitespace(zsciiChar)) {
+        
+        tokenStart++;
+        continue;
       }
       
-      int tokenIndex = input.indexOf(token, startIndex);    
-      
-      tokenIndex++; // adjust by the buffer length byte
-      
-      if (version >= 5) {
+      // A separator is a token of its own
+      int tokenEnd = tokenStart + 1;
+      if (!isSeparator(zsciiChar)) {
         
-        // if version >= 5, there is also numbers typed byte
-        tokenIndex++;
+        while (tokenEnd < end) {
+          
+          final short c = memaccess.readUnsignedByte(tokenEnd);
+          if (isWhitespace(c) || isSeparator(c)) {
+            
+            break;
+          }
+          tokenEnd++;
+        }
       }
+      final int entryAddress = dictionary.lookup(memaccess, tokenStart,
+                                                 tokenEnd - tokenStart);
       
       // if the tokenize flag is not set, write out the entry to the
       // parse buffer, if it is set then, only write the token position
-      // if the token was recognized
+      // if the token was recognized. The position is counted from the
+      // start of the text buffer, including the buffer length byte and
+      // from version 5 the numbers typed byte
       if (!flag || flag && entryAddress > 0) {
         
         // This is one slot
         memaccess.writeUnsignedShort(parseaddr, entryAddress);     
-        memaccess.writeUnsignedByte(parseaddr + 2, (short) token.length());
-        memaccess.writeUnsignedByte(parseaddr + 3, (short) tokenIndex);
+        memaccess.writeUnsignedByte(parseaddr + 2,
+                                    (short) (tokenEnd - tokenStart));
+        memaccess.writeUnsignedByte(parseaddr + 3,
+                                    (short) (tokenStart - textbuffer));
       }
       parseaddr += 4;
+      numParsedTokens++;
+      tokenStart = tokenEnd;
     }
+    
+    // Write the number of parsed tokens into byte 1 of the parse buffer
+    memaccess.writeUnsignedByte(parsebuffer + 1, (short) numParsedTokens);
   }  
 
   /**
-   * Turns the buffer into a ZSCII string. This function reads at most
-   * |bufferlen| bytes and treats each byte as an ASCII character.
-   * The characters will be concatenated to the result string.
+   * Returns true if the specified character separates tokens without
+   * being one.
    * 
-   * @param address the buffer address
-   * @param bufferlen the buffer length
-   * @param charsTyped from version 5, this is the number of characters
-   * to include in the input
-   * @return the string contained in the buffer
+   * @param zsciiChar a ZSCII character
+   * @return true if whitespace
    */
-  private ZsciiString bufferToZscii(final int address, final int bufferlen,
-      final int charsTyped) {
-    
-    final MemoryAccess memaccess = machine.getGameData().getMemoryAccess();
+  private static boolean isWhitespace(final short zsciiChar) {
     
-    // If charsTyped is set, use that value as the limit
-    final int numChars = (charsTyped > 0) ? charsTyped : bufferlen;
-    
-    // read input from text buffer
-    final ZsciiStringBuilder buffer = new ZsciiStringBuilder();
-    for (int i = 0; i < numChars; i++) {
-      
-      final short charByte = memaccess.readUnsignedByte(address + i);
-      if (charByte == 0) {
-        break;
-      }
-      buffer.append(charByte);
-    }    
-    return buffer.toZsciiString();
+    return zsciiChar == ' ' || zsciiChar == '\n' || zsciiChar == '\t'
+           || zsciiChar == '\r';
   }
   
   /**
-   * Turns the specified input string into tokens. It will take whitespace
-   * implicitly and dictionary separators explicitly to tokenize the
-   * stream, dictionary specified separators are included in the result list.
+   * Returns true if the specified character is one of the separators
+   * defined in the dictionary, which are tokens of their own.
    * 
-   * @param input the input string
-   * @return the tokens
+   * @param zsciiChar a ZSCII character
+   * @return true if separator
    */
-  private List<ZsciiString> tokenize(final ZsciiString input) {
-    
-    final List<ZsciiString> result = new ArrayList<ZsciiString>();
-    
-    // Retrieve the defined separators
-    final ZsciiStringBuilder separators = new ZsciiStringBuilder();
-    separators.append(WHITESPACE);
+  private boolean isSeparator(final short zsciiChar) {
     
     final Dictionary dictionary = machine.getGameData().getDictionary();
-    final ZCharDecoder decoder =
-      machine.getGameData().getZCharDecoder();
     for (int i = 0, n = dictionary.getNumberOfSeparators(); i < n; i++) {
       
-      final byte delim = dictionary.getSeparator(i);
-      separators.append(decoder.decodeZChar(delim));
-    }
-    
-    // The tokenizer will also return the delimiters
-    final ZsciiString delim = separators.toZsciiString();
-    final ZsciiStringTokenizer tok = new ZsciiStringTokenizer(input, delim);
-    
-    while (tok.hasMoreTokens()) {
-      
-      final ZsciiString token = tok.nextToken();
-      if (!Character.isWhitespace(token.charAt(0))) {
+      if ((dictionary.getSeparator(i) & 0xff) == zsciiChar) {
         
-        result.add(token);
+        return true;
       }
     }
-    return result;
+    return false;
   }
   
   /**
@@ -50,14 +50,13 @@ public abstract class MachineFactory<T> {
    */
   public Machine buildMachine() throws IOException {
     
-    final GameData gamedata =
-      new GameDataImpl(readStoryData(), null);
+    final GameData gamedata = createGameData();
   
     if (isInvalidStory(gamedata.getStoryFileHeader().getVersion())) {
     
       reportInvalidStory();
     }
-    final Machine machine = new MachineImpl();
+    final Machine machine = new MachineImpl(getUndoBudget());
     final InstructionDecoder decoder = new DefaultInstructionDecoder();
     machine.initialize(gamedata, decoder);
     initUI(machine);
@@ -92,6 +91,27 @@ public abstract class MachineFactory<T> {
    */
   abstract protected byte[] readStoryData() throws IOException;
 
+  /**
+   * Creates the game data, by default from a private copy of the story data.
+   * 
+   * @return the game data
+   * @throws IOException if reading story file reveiled an error
+   */
+  protected GameData createGameData() throws IOException {
+    
+    return new GameDataImpl(readStoryData(), null);
+  }
+
+  /**
+   * Returns the number of bytes the undo steps of the machine may use.
+   * 
+   * @return the undo budget
+   */
+  protected int getUndoBudget() {
+    
+    return MachineImpl.DEFAULT_UNDO_BUDGET;
+  }
+
   /**
    * This function is called to report an invalid story file.
    */
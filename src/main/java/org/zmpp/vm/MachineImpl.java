@@ -22,6 +22,7 @@
  */
 package org.zmpp.vm;
 
+import org.zmpp.base.Hibernatable;
 import org.zmpp.blorb.BlorbImage;
 import org.zmpp.encoding.ZsciiString;
 import org.zmpp.iff.FormChunk;
@@ -35,7 +36,6 @@ import org.zmpp.media.SoundSystemImpl;
 import org.zmpp.vm.StoryFileHeader.Attribute;
 import org.zmpp.vmutil.PredictableRandomGenerator;
 import org.zmpp.vmutil.RandomGenerator;
-import org.zmpp.vmutil.RingBuffer;
 import org.zmpp.vmutil.UnpredictableRandomGenerator;
 
 /**
@@ -44,13 +44,23 @@ import org.zmpp.vmutil.UnpredictableRandomGenerator;
  * @author Wei-ju Wu
  * @version 1.0
  */
-public class MachineImpl implements Machine {
+public class MachineImpl implements Machine, Hibernatable {
 
   /**
    * Number of undo steps.
    */
   private static final int NUM_UNDO = 5;
   
+  /**
+   * Default number of bytes the undo steps may use.
+   */
+  public static final int DEFAULT_UNDO_BUDGET = 128 * 1024;
+  
+  /**
+   * Number of bytes the undo steps may use.
+   */
+  private final int undoBudget;
+  
   /**
    * The configuration object.
    */
@@ -79,7 +89,7 @@ public class MachineImpl implements Machine {
   /**
    * The undo states.
    */
-  private RingBuffer<PortableGameState> undostates;
+  private UndoStates undostates;
   
   /**
    * The input functions object.
@@ -101,6 +111,11 @@ public class MachineImpl implements Machine {
    */
   private Cpu cpu;
   
+  /**
+   * The instruction decoder.
+   */
+  private InstructionDecoder decoder;
+  
   /**
    * The output streams.
    */
@@ -116,7 +131,19 @@ public class MachineImpl implements Machine {
    */
   public MachineImpl() {
 
+    this(DEFAULT_UNDO_BUDGET);
+  }
+  
+  /**
+   * Constructor.
+   * 
+   * @param undoBudget the number of bytes the undo steps may use, the last
+   * step is always kept
+   */
+  public MachineImpl(final int undoBudget) {
+
     this.inputFunctions = new InputFunctions(this);
+    this.undoBudget = undoBudget;
   }
   
   /**
@@ -159,7 +186,8 @@ public class MachineImpl implements Machine {
   
     this.gamedata = gamedata;
     this.random = new UnpredictableRandomGenerator();
-    this.undostates = new RingBuffer<PortableGameState>(NUM_UNDO);
+    this.undostates = new UndoStates(NUM_UNDO, undoBudget);
+    this.decoder = decoder;
     
     cpu = new CpuImpl(this, decoder);
     output = new OutputImpl(gamedata, cpu);
@@ -182,6 +210,44 @@ public class MachineImpl implements Machine {
     resetState();
   }
 
+  /**
+   * Releases the caches of the machine and compresses its dynamic memory,
+   * for a machine waiting for input for a long time. The machine must not
+   * run until wakeUp() is called.
+   */
+  public void hibernate() {
+    
+    hibernate(decoder);
+    hibernate(gamedata.getObjectTree());
+    hibernate(gamedata.getMemoryAccess());
+  }
+  
+  /**
+   * {@inheritDoc}
+   */
+  public void wakeUp() {
+    
+    wakeUp(gamedata.getMemoryAccess());
+    wakeUp(gamedata.getObjectTree());
+    wakeUp(decoder);
+  }
+  
+  private static void hibernate(final Object object) {
+    
+    if (object instanceof Hibernatable) {
+      
+      ((Hibernatable) object).hibernate();
+    }
+  }
+  
+  private static void wakeUp(final Object object) {
+    
+    if (object instanceof Hibernatable) {
+      
+      ((Hibernatable) object).wakeUp();
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -228,7 +294,8 @@ public class MachineImpl implements Machine {
     cpu.setRunning(false);
     
     // On quit, close the streams
-    output.print(new ZsciiString("*Game ended*"));
+    output.print(new ZsciiString("*Game ended*",
+        gamedata.getZsciiEncoding()));
     closeStreams();
     screenModel.redraw();
   }
@@ -372,9 +439,7 @@ public class MachineImpl implements Machine {
    */
   public boolean save_undo(final int savepc) {
     
-    final PortableGameState undoGameState = new PortableGameState();
-    undoGameState.captureMachineState(this, savepc);
-    undostates.add(undoGameState);
+    undostates.add(this, savepc);
     return true;
   }
 
@@ -410,10 +475,9 @@ public class MachineImpl implements Machine {
     
     // do not reset screen model, since e.g. AMFV simply picks up the
     // current window state
-    if (undostates.size() > 0) {
+    final PortableGameState undoGameState = undostates.remove();
+    if (undoGameState != null) {
       
-      final PortableGameState undoGameState =
-        undostates.remove(undostates.size() - 1);      
       restart(false);
       undoGameState.transferStateToMachine(this);
       System.out.printf("restore(), pc is: %4x\n", cpu.getProgramCounter());
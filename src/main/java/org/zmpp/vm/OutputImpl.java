@@ -87,7 +87,8 @@ public class OutputImpl implements Output {
    */
   public void printZsciiChar(final short zchar, final boolean isInput) {
     zchars[0] = zchar;
-    printZsciiChars(new ZsciiString(zchars), isInput);
+    printZsciiChars(new ZsciiString(zchars, gamedata.getZsciiEncoding()),
+        isInput);
   }
   
   /**
@@ -143,7 +144,8 @@ public class OutputImpl implements Output {
    */
   public void printNumber(final short number) {
     
-    print(new ZsciiString(String.valueOf(number)));
+    print(new ZsciiString(String.valueOf(number),
+        gamedata.getZsciiEncoding()));
   }
   
   public void flushOutput() {
@@ -26,6 +26,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.zmpp.base.MemoryAccess;
+import org.zmpp.base.MemoryReadAccess;
+import org.zmpp.base.XorRunLength;
 import org.zmpp.iff.Chunk;
 import org.zmpp.iff.DefaultChunk;
 import org.zmpp.iff.FormChunk;
@@ -120,6 +122,12 @@ public class PortableGameState {
    */
   private byte[] delta;
   
+  /**
+   * The story file the dynamic memory is compressed against, null if the
+   * state was not captured from a machine.
+   */
+  private MemoryReadAccess originalStory;
+  
   /**
    * The list of stack frames in this game state, from oldest to latest.
    */
@@ -380,35 +388,15 @@ public class PortableGameState {
   private void readCMemChunk(final Chunk cmemChunk) {
     
     final MemoryAccess chunkMem = cmemChunk.getMemoryAccess();
-    int offset = Chunk.CHUNK_HEADER_LENGTH;
-    final int chunksize = cmemChunk.getSize() + Chunk.CHUNK_HEADER_LENGTH;
-    final List<Byte> byteBuffer = new ArrayList<Byte>();
-    
-    byte b;
-    
-    while (offset < chunksize) {
+    final int datasize = cmemChunk.getSize();
+    final byte[] data = new byte[datasize];
+    for (int i = 0; i < datasize; i++) {
       
-      b = chunkMem.readByte(offset++);
-      if (b == 0) {
-        
-        final short runlength = chunkMem.readUnsignedByte(offset++);
-        
-        for (int r = 0; r <= runlength; r++) { // (runlength + 1) iterations
-          
-          byteBuffer.add((byte) 0);
-        }
-      } else {
-        
-        byteBuffer.add(b);
-      }
+      data[i] = chunkMem.readByte(i + Chunk.CHUNK_HEADER_LENGTH);
     }
-    
-    // Copy the results to the delta array
-    delta = new byte[byteBuffer.size()];
-    for (int i = 0; i < delta.length; i++) {
-      
-      delta[i] = byteBuffer.get(i);
-    }    
+    // applied to zeros, the encoded delta gives the plain one
+    delta = new byte[XorRunLength.decodedLength(data, datasize)];
+    XorRunLength.apply(data, datasize, delta);
   }
   
   /**
@@ -441,24 +429,38 @@ public class PortableGameState {
    */
   public void captureMachineState(final Machine machine, final int savePc) {
     
-    final StoryFileHeader fileheader =
-      machine.getGameData().getStoryFileHeader();
-    release = fileheader.getRelease();
-    checksum = fileheader.getChecksum();
-    serialBytes = fileheader.getSerialNumber().getBytes();
-    pc = savePc;
+    captureExecutionState(machine, savePc);
     
     // capture dynamic memory which ends at address(staticsMem) - 1
     // uncompressed
     final MemoryAccess memaccess = machine.getGameData().getMemoryAccess();
-    final int staticMemStart = fileheader.getStaticsAddress();
+    final int staticMemStart =
+      machine.getGameData().getStoryFileHeader().getStaticsAddress();
     dynamicMem = new byte[staticMemStart];
     
     for (int i = 0; i < staticMemStart; i++) {
       
       dynamicMem[i] = memaccess.readByte(i);
     }
-
+    originalStory = machine.getGameData().getOriginalStory();
+  }
+  
+  /**
+   * Makes a snapshot of the current machine state without the dynamic
+   * memory, which the caller captures in its own way. The savePc argument
+   * is taken as the restore program counter.
+   * 
+   * @param machine a Machine
+   * @param savePc the program counter restore value
+   */
+  public void captureExecutionState(final Machine machine, final int savePc) {
+    
+    final StoryFileHeader fileheader =
+      machine.getGameData().getStoryFileHeader();
+    release = fileheader.getRelease();
+    checksum = fileheader.getChecksum();
+    serialBytes = fileheader.getSerialNumber().getBytes();
+    pc = savePc;
     captureStackFrames(machine);
   }
   
@@ -556,7 +558,8 @@ public class PortableGameState {
   // *****************************************
   
   /**
-   * Exports the current object state to a FormChunk.
+   * Exports the current object state to a FormChunk. The dynamic memory
+   * is written compressed when the state was captured from a machine.
    * 
    * @return the state as a FormChunk
    */
@@ -565,7 +568,8 @@ public class PortableGameState {
     final byte[] id = "IFZS".getBytes();
     final WritableFormChunk formChunk = new WritableFormChunk(id);
     formChunk.addChunk(createIfhdChunk());
-    formChunk.addChunk(createUMemChunk());
+    formChunk.addChunk(originalStory == null ? createUMemChunk()
+        : createCMemChunk());
     formChunk.addChunk(createStksChunk());
     
     return formChunk;
@@ -600,6 +604,25 @@ public class PortableGameState {
     return new DefaultChunk(id, dynamicMem);
   }
   
+  /**
+   * Creates the CMem chunk: the dynamic memory is XOR-ed with the original
+   * story and the runs of zeros are encoded as a zero followed by the run
+   * length - 1. Trailing zeros are omitted.
+   * 
+   * @return the CMem chunk
+   */
+  private Chunk createCMemChunk() {
+    
+    final byte[] original = new byte[dynamicMem.length];
+    for (int i = 0; i < original.length; i++) {
+      
+      original[i] = originalStory.readByte(i);
+    }
+    final byte[] id = "CMem".getBytes();
+    return new DefaultChunk(id,
+        XorRunLength.encode(dynamicMem, original, dynamicMem.length));
+  }
+  
   private Chunk createStksChunk() {
     
     final byte[] id = "Stks".getBytes();
@@ -704,9 +727,25 @@ public class PortableGameState {
     final MemoryAccess memaccess = machine.getGameData().getMemoryAccess();
     
     // Dynamic memory
-    for (int i = 0; i < dynamicMem.length; i++) {
+    if (dynamicMem != null) {
       
-      memaccess.writeByte(i, dynamicMem[i]);
+      for (int i = 0; i < dynamicMem.length; i++) {
+        
+        memaccess.writeByte(i, dynamicMem[i]);
+      }
+      
+    } else if (delta != null) {
+      
+      // the delta is against the original story, not the current memory
+      final MemoryReadAccess original =
+        machine.getGameData().getOriginalStory();
+      final int staticMemStart =
+        machine.getGameData().getStoryFileHeader().getStaticsAddress();
+      for (int i = 0; i < staticMemStart; i++) {
+        
+        final byte x = i < delta.length ? delta[i] : 0;
+        memaccess.writeByte(i, (byte) (original.readByte(i) ^ x));
+      }
     }
     
     // Stack frames
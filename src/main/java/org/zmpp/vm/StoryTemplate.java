@@ -0,0 +1,299 @@
+/*
+ * Created on 2026/10/18
+ *
+ * This file is part of The Z-machine Preservation Project (ZMPP).
+ *
+ * ZMPP is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * ZMPP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ZMPP; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.zmpp.vm;
+
+import org.zmpp.base.CopyOnWriteMemoryAccess;
+import org.zmpp.base.DefaultMemoryAccess;
+import org.zmpp.base.MemoryAccess;
+import org.zmpp.base.MemoryReadAccess;
+import org.zmpp.encoding.AlphabetTable;
+import org.zmpp.encoding.DefaultZCharDecoder;
+import org.zmpp.encoding.DefaultZCharTranslator;
+import org.zmpp.encoding.WordEncoder;
+import org.zmpp.encoding.ZCharDecoder;
+import org.zmpp.encoding.ZCharDecoder.AbbreviationsTable;
+import org.zmpp.encoding.ZCharDecoder.DecodedAbbreviationsTable;
+import org.zmpp.encoding.ZsciiEncoding;
+import org.zmpp.encoding.ZsciiString;
+
+/**
+ * A story file loaded and parsed once, to be run by any number of
+ * machines at the same time. The template is immutable: the machines
+ * share the story data, the dictionary lookup map and the decoded
+ * abbreviations, each machine only copies the dynamic memory
+ * (see CopyOnWriteMemoryAccess).
+ *
+ * @version 1.0
+ */
+public final class StoryTemplate {
+
+  /**
+   * The story file data, never written.
+   */
+  private final byte[] data;
+
+  /**
+   * The start of static memory, the size of each machine's private copy.
+   */
+  private final int staticsAddress;
+
+  /**
+   * The check sum of the story file.
+   */
+  private final int checksum;
+
+  /**
+   * The dictionary whose lookup index is shared.
+   */
+  private final DefaultDictionary dictionary;
+
+  /**
+   * The decoded abbreviations, null where the entry could not be decoded.
+   */
+  private final ZsciiString[] abbreviations;
+
+  /**
+   * The addresses of the abbreviations in the original story.
+   */
+  private final int[] abbreviationAddresses;
+
+  /**
+   * The lengths in bytes of the encoded abbreviations.
+   */
+  private final int[] abbreviationLengths;
+
+  /**
+   * Constructor.
+   *
+   * @param storyfile the story file as a byte array, it is copied
+   */
+  public StoryTemplate(final byte[] storyfile) {
+
+    data = new byte[storyfile.length];
+    System.arraycopy(storyfile, 0, data, 0, storyfile.length);
+
+    // This object is only read
+    final MemoryAccess memaccess = new DefaultMemoryAccess(data);
+    final StoryFileHeader fileheader = new DefaultStoryFileHeader(memaccess);
+    staticsAddress = fileheader.getStaticsAddress();
+    checksum = GameDataImpl.calculateChecksum(memaccess,
+        fileheader.getFileLength());
+
+    final ZsciiEncoding encoding =
+      GameDataImpl.createEncoding(memaccess, fileheader);
+    final AlphabetTable alphabetTable =
+      GameDataImpl.createAlphabetTable(memaccess, fileheader);
+    final ZCharDecoder decoder = new DefaultZCharDecoder(encoding,
+        new DefaultZCharTranslator(alphabetTable),
+        new Abbreviations(memaccess, fileheader.getAbbreviationsAddress()));
+    final DictionarySizes sizes = (fileheader.getVersion() <= 3) ?
+        new DictionarySizesV1ToV3() : new DictionarySizesV4ToV8();
+    dictionary = new DefaultDictionary(memaccess,
+        fileheader.getDictionaryAddress(), decoder,
+        new WordEncoder(alphabetTable, fileheader.getVersion()), sizes);
+
+    // Abbreviations are decoded without abbreviations, like the
+    // DefaultZCharDecoder does
+    final int numAbbreviations = getNumAbbreviations(fileheader);
+    abbreviations = new ZsciiString[numAbbreviations];
+    abbreviationAddresses = new int[numAbbreviations];
+    abbreviationLengths = new int[numAbbreviations];
+    final ZCharDecoder abbreviationDecoder = new DefaultZCharDecoder(encoding,
+        new DefaultZCharTranslator(
+            GameDataImpl.createAlphabetTable(memaccess, fileheader)), null);
+    final Abbreviations table = new Abbreviations(memaccess,
+        fileheader.getAbbreviationsAddress());
+
+    for (int i = 0; i < numAbbreviations; i++) {
+
+      try {
+
+        final int address = table.getWordAddress(i);
+        abbreviationAddresses[i] = address;
+        abbreviationLengths[i] = getEncodedLength(memaccess, address);
+        abbreviations[i] = abbreviationDecoder.decode2Zscii(memaccess,
+            address, 0);
+
+      } catch (ArrayIndexOutOfBoundsException ex) {
+
+        // a broken entry, it will be decoded from memory if ever used
+        abbreviations[i] = null;
+      }
+    }
+  }
+
+  /**
+   * Creates the memory of a new machine.
+   *
+   * @return a memory access object sharing static and high memory
+   */
+  public CopyOnWriteMemoryAccess createMemoryAccess() {
+
+    return new CopyOnWriteMemoryAccess(data, staticsAddress);
+  }
+
+  /**
+   * Creates the abbreviations table of a machine, which returns the shared
+   * decoded abbreviations while the machine did not change them.
+   *
+   * @param memaccess the machine memory
+   * @param address the start address of the abbreviations table
+   * @return the abbreviations table
+   */
+  public AbbreviationsTable createAbbreviations(
+      final MemoryAccess memaccess, final int address) {
+
+    return new SharedAbbreviations(memaccess, address);
+  }
+
+  /**
+   * Returns the dictionary built on this story.
+   *
+   * @return the dictionary
+   */
+  public DefaultDictionary getDictionary() {
+
+    return dictionary;
+  }
+
+  /**
+   * Returns the check sum of the story file.
+   *
+   * @return the check sum
+   */
+  public int getChecksum() {
+
+    return checksum;
+  }
+
+  /**
+   * Returns the story file, which is shared and must not be written.
+   *
+   * @return the story file
+   */
+  public MemoryReadAccess getOriginalStory() {
+
+    return new DefaultMemoryAccess(data);
+  }
+
+  /**
+   * Returns the size of the story file.
+   *
+   * @return the size in bytes
+   */
+  public int getSize() {
+
+    return data.length;
+  }
+
+  /**
+   * Returns the size of the dynamic memory, copied by each machine.
+   *
+   * @return the size in bytes
+   */
+  public int getDynamicMemorySize() {
+
+    return Math.min(staticsAddress, data.length);
+  }
+
+  private static int getNumAbbreviations(final StoryFileHeader fileheader) {
+
+    if (fileheader.getAbbreviationsAddress() == 0
+        || fileheader.getVersion() == 1) {
+
+      return 0;
+    }
+    return (fileheader.getVersion() == 2) ? 32 : 96;
+  }
+
+  private static int getEncodedLength(final MemoryReadAccess memaccess,
+      final int address) {
+
+    int current = address;
+    while (!DefaultZCharDecoder.isEndWord(memaccess.readShort(current))) {
+
+      current += 2;
+    }
+    return current + 2 - address;
+  }
+
+  /**
+   * The abbreviations table of a machine.
+   */
+  private class SharedAbbreviations extends Abbreviations
+    implements DecodedAbbreviationsTable {
+
+    /**
+     * The machine memory.
+     */
+    private final MemoryReadAccess memaccess;
+
+    /**
+     * Constructor.
+     *
+     * @param memaccess the machine memory
+     * @param address the start address of the abbreviations table
+     */
+    public SharedAbbreviations(final MemoryReadAccess memaccess,
+        final int address) {
+
+      super(memaccess, address);
+      this.memaccess = memaccess;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ZsciiString getDecoded(final int entryNum) {
+
+      if (entryNum < 0 || entryNum >= abbreviations.length
+          || abbreviations[entryNum] == null) {
+
+        return null;
+      }
+      final int address = getWordAddress(entryNum);
+      if (address != abbreviationAddresses[entryNum]
+          || !isUnchanged(address, abbreviationLengths[entryNum])) {
+
+        return null;
+      }
+      return abbreviations[entryNum];
+    }
+
+    private boolean isUnchanged(final int address, final int length) {
+
+      if (memaccess instanceof CopyOnWriteMemoryAccess
+          && ((CopyOnWriteMemoryAccess) memaccess).isShared(address, length)) {
+
+        return true;
+      }
+
+      // The abbreviations usually are in dynamic memory
+      for (int i = 0; i < length; i++) {
+
+        if (memaccess.readByte(address + i) != data[address + i]) {
+
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,281 @@
+/*
+ * Created on 2026/10/18
+ *
+ * This file is part of The Z-machine Preservation Project (ZMPP).
+ *
+ * ZMPP is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * ZMPP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ZMPP; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.zmpp.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.zmpp.base.MemoryReadAccess;
+import org.zmpp.base.XorRunLength;
+
+/**
+ * The undo states of a machine, stored as deltas.
+ * Only the dynamic memory of the latest state is kept in full, every older
+ * state keeps the changes to the state that follows it, XOR-ed and run
+ * length encoded like the CMem chunk of a Quetzal file. Since a turn
+ * usually changes only a few bytes, a state costs about the size of its
+ * stack frames.
+ * The oldest states are discarded when there are more than the maximum
+ * number of states or when their size exceeds the memory budget, the
+ * latest state is always kept.
+ *
+ * @version 1.0
+ */
+public class UndoStates {
+
+  /**
+   * The maximum number of states.
+   */
+  private final int maxStates;
+
+  /**
+   * The maximum number of bytes used by the states.
+   */
+  private final int budget;
+
+  /**
+   * The states, from oldest to latest.
+   */
+  private final List<Entry> entries = new ArrayList<Entry>();
+
+  /**
+   * The dynamic memory of the latest state.
+   */
+  private byte[] current;
+
+  /**
+   * The delta to apply to current to obtain the latest state after a
+   * removal, it is applied on the next call.
+   */
+  private byte[] pending;
+
+  /**
+   * The buffer to read the dynamic memory into, swapped with current.
+   */
+  private byte[] next;
+
+  /**
+   * The buffer to compress a delta into, reused.
+   */
+  private byte[] scratch;
+
+  /**
+   * The bytes used by the deltas and the stack frames.
+   */
+  private int used;
+
+  /**
+   * A saved state.
+   */
+  private static class Entry {
+
+    /**
+     * The state without dynamic memory.
+     */
+    final PortableGameState state;
+
+    /**
+     * The delta to the dynamic memory of the next state, null for the
+     * latest state.
+     */
+    byte[] delta;
+
+    /**
+     * The estimated size of the stack frames.
+     */
+    final int stackSize;
+
+    /**
+     * Constructor.
+     *
+     * @param state the state without dynamic memory
+     */
+    Entry(final PortableGameState state) {
+
+      this.state = state;
+      int size = 0;
+      for (PortableGameState.StackFrame frame : state.getStackFrames()) {
+
+        size += 16 + 2 * (frame.getLocals().length
+            + frame.getEvalStack().length) + 4 * frame.getArgs().length;
+      }
+      this.stackSize = size;
+    }
+
+    /**
+     * Returns the number of bytes used by this entry.
+     *
+     * @return the size in bytes
+     */
+    int size() {
+
+      return stackSize + (delta == null ? 0 : delta.length);
+    }
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxStates the maximum number of states
+   * @param budget the maximum number of bytes used by the states, including
+   * the copy of the dynamic memory
+   */
+  public UndoStates(final int maxStates, final int budget) {
+
+    super();
+    this.maxStates = Math.max(1, maxStates);
+    this.budget = budget;
+  }
+
+  /**
+   * Saves the current state of the specified machine.
+   *
+   * @param machine the machine
+   * @param savePc the program counter restore value
+   */
+  public void add(final Machine machine, final int savePc) {
+
+    final MemoryReadAccess memaccess = machine.getGameData().getMemoryAccess();
+    final int length =
+      machine.getGameData().getStoryFileHeader().getStaticsAddress();
+    if (current == null || current.length != length) {
+
+      clear();
+      current = new byte[length];
+      next = new byte[length];
+      scratch = new byte[XorRunLength.maxEncodedLength(length)];
+    }
+    applyPending();
+
+    final PortableGameState state = new PortableGameState();
+    state.captureExecutionState(machine, savePc);
+    if (entries.isEmpty()) {
+
+      for (int i = 0; i < length; i++) {
+
+        current[i] = memaccess.readByte(i);
+      }
+
+    } else {
+
+      final Entry previous = entries.get(entries.size() - 1);
+      previous.delta = encodeDelta(memaccess);
+      used += previous.delta.length;
+    }
+    final Entry entry = new Entry(state);
+    entries.add(entry);
+    used += entry.stackSize;
+
+    while (entries.size() > 1 && (entries.size() > maxStates
+           || current.length + used > budget)) {
+
+      used -= entries.remove(0).size();
+    }
+  }
+
+  /**
+   * Removes the latest state and returns it. The dynamic memory of the
+   * returned state is only valid until the next call to this object, it
+   * should be transferred to the machine right away.
+   *
+   * @return the latest state, or null if there is none
+   */
+  public PortableGameState remove() {
+
+    if (entries.isEmpty()) {
+
+      return null;
+    }
+    applyPending();
+    final Entry entry = entries.remove(entries.size() - 1);
+    used -= entry.size();
+    entry.state.setDynamicMem(current);
+
+    // the previous state is rebuilt on the next call
+    if (!entries.isEmpty()) {
+
+      final Entry previous = entries.get(entries.size() - 1);
+      pending = previous.delta;
+      used -= previous.delta.length;
+      previous.delta = null;
+    }
+    return entry.state;
+  }
+
+  /**
+   * Returns the number of states.
+   *
+   * @return the number of states
+   */
+  public int size() {
+
+    return entries.size();
+  }
+
+  /**
+   * Returns the number of bytes used by the states.
+   *
+   * @return the size in bytes
+   */
+  public int getMemoryUsage() {
+
+    return entries.isEmpty() ? 0 : current.length + used;
+  }
+
+  /**
+   * Discards all the states.
+   */
+  public void clear() {
+
+    entries.clear();
+    pending = null;
+    used = 0;
+  }
+
+  private void applyPending() {
+
+    if (pending != null) {
+
+      XorRunLength.apply(pending, pending.length, current);
+      pending = null;
+    }
+  }
+
+  /**
+   * Copies the dynamic memory to current and returns the delta from the
+   * new to the old contents of current.
+   *
+   * @param memaccess the memory
+   * @return the compressed delta
+   */
+  private byte[] encodeDelta(final MemoryReadAccess memaccess) {
+
+    for (int i = 0; i < next.length; i++) {
+
+      next[i] = memaccess.readByte(i);
+    }
+    final int size = XorRunLength.encode(next, current, current.length, scratch);
+    final byte[] previous = current;
+    current = next;
+    next = previous;
+    return Arrays.copyOf(scratch, size);
+  }
+}
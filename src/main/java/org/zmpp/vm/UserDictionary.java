@@ -23,8 +23,8 @@
 package org.zmpp.vm;
 
 import org.zmpp.base.MemoryReadAccess;
+import org.zmpp.encoding.WordEncoder;
 import org.zmpp.encoding.ZCharDecoder;
-import org.zmpp.encoding.ZsciiString;
 
 /**
  * This class implements a user dictionary. The specification suggests that
@@ -43,30 +43,26 @@ public class UserDictionary extends AbstractDictionary {
    * @param map the memory map
    * @param address the start address of the dictionary
    * @param converter a Z char decoder object
-   * @param sizes a sizes object
+   * @param encoder the encoder for the words to look up
    */
   public UserDictionary(MemoryReadAccess memaccess, int address,
-                        ZCharDecoder decoder) {
+                        ZCharDecoder decoder, WordEncoder encoder) {
     
-    super(memaccess, address, decoder, new DictionarySizesV4ToV8());
+    super(memaccess, address, decoder, encoder, new DictionarySizesV4ToV8());
   }
 
   /**
    * {@inheritDoc}
    */
-  public int lookup(final ZsciiString token) {
+  protected int lookupEntry(final long entryBytes) {
 
     // We only implement linear search for the moment
     final int n = Math.abs(getNumberOfEntries());
-    final ZsciiString lookupToken = truncateToken(token);
     
     for (int i = 0; i < n; i++) {
       
       final int entryAddress = getEntryAddress(i);
-      final ZsciiString entry = getDecoder().decode2Zscii(getMemoryAccess(),
-                                                          entryAddress,
-                                                          getEntryLength());
-      if (lookupToken.equals(entry)) {
+      if (getEntryBytes(entryAddress) == entryBytes) {
         
         return entryAddress;
       }
@@ -0,0 +1,222 @@
+/*
+ * Created on 2026/10/18
+ *
+ * This file is part of The Z-machine Preservation Project (ZMPP).
+ *
+ * ZMPP is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * ZMPP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ZMPP; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.zmpp.vmutil;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.sblendorio.bbs.core.SessionScheduler;
+
+/**
+ * A timer shared by all the machines of the process, which runs tasks at
+ * a fixed interval. This is used for the interrupt routines of timed input,
+ * so that a read does not start a thread that sleeps between calls.
+ * One daemon thread only keeps the time: the tasks themselves run on a
+ * virtual thread each where available, or else on a cached pool of daemon
+ * threads, because an interrupt routine writes to the player's terminal
+ * and a stalled terminal must not hold up the routines of other games.
+ *
+ * @version 1.0
+ */
+public final class IntervalTimer {
+
+  private static final Logger logger =
+    LoggerFactory.getLogger(IntervalTimer.class);
+
+  /**
+   * The shared scheduler, which only hands due tasks to the runner.
+   */
+  private static final ScheduledThreadPoolExecutor SCHEDULER =
+    createScheduler();
+
+  /**
+   * Runs the due tasks.
+   */
+  private static final ExecutorService RUNNER = createRunner();
+
+  /**
+   * Constructor.
+   */
+  private IntervalTimer() { }
+
+  /**
+   * The handle of a scheduled task.
+   */
+  public static final class Handle implements Runnable {
+
+    /**
+     * The task.
+     */
+    private final Runnable task;
+
+    /**
+     * The interval in milliseconds.
+     */
+    private final long interval;
+
+    /**
+     * The next scheduled execution.
+     */
+    private ScheduledFuture<?> future;
+
+    /**
+     * Status variable.
+     */
+    private boolean cancelled;
+
+    /**
+     * Constructor.
+     *
+     * @param task the task
+     * @param interval the interval in milliseconds
+     */
+    private Handle(final Runnable task, final long interval) {
+
+      this.task = task;
+      this.interval = interval;
+    }
+
+    /**
+     * Runs the task unless it was cancelled, an exception cancels it.
+     * The next run is scheduled when this one is over.
+     */
+    public synchronized void run() {
+
+      if (cancelled) {
+
+        return;
+      }
+      try {
+
+        task.run();
+
+      } catch (RuntimeException ex) {
+
+        logger.warn("Timed task failed, cancelling it", ex);
+        cancel();
+      }
+      scheduleNext();
+    }
+
+    /**
+     * Schedules the next run, unless the task was cancelled.
+     */
+    private synchronized void scheduleNext() {
+
+      if (!cancelled) {
+
+        future = SCHEDULER.schedule(new Runnable() {
+
+          public void run() {
+
+            RUNNER.execute(Handle.this);
+          }
+        }, interval, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    /**
+     * Cancels the task. When this method returns, the task is not running
+     * and it will never run again. It can be called by the task itself.
+     */
+    public synchronized void cancel() {
+
+      cancelled = true;
+      if (future != null) {
+
+        future.cancel(false);
+      }
+    }
+
+    /**
+     * Returns true if the task was cancelled.
+     *
+     * @return true if cancelled
+     */
+    public synchronized boolean isCancelled() {
+
+      return cancelled;
+    }
+  }
+
+  /**
+   * Runs the specified task every interval milliseconds, starting after the
+   * first interval. The interval is measured from the end of a run to the
+   * start of the next.
+   *
+   * @param task the task
+   * @param interval the interval in milliseconds
+   * @return the handle to cancel the task
+   */
+  public static Handle schedule(final Runnable task, final long interval) {
+
+    final Handle handle = new Handle(task, interval);
+    handle.scheduleNext();
+    return handle;
+  }
+
+  /**
+   * Returns the number of tasks currently waiting for their next run.
+   *
+   * @return the number of tasks
+   */
+  public static int getNumScheduled() {
+
+    return SCHEDULER.getQueue().size();
+  }
+
+  private static ThreadFactory daemonThreads(final String name) {
+
+    final AtomicInteger count = new AtomicInteger();
+    return new ThreadFactory() {
+
+      public Thread newThread(final Runnable runnable) {
+
+        final Thread thread = new Thread(runnable,
+            name + "-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  private static ScheduledThreadPoolExecutor createScheduler() {
+
+    final ScheduledThreadPoolExecutor scheduler =
+      new ScheduledThreadPoolExecutor(1, daemonThreads("zmpp-timer"));
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
+  private static ExecutorService createRunner() {
+
+    final ExecutorService virtual = SessionScheduler.newVirtualThreadExecutor();
+    return virtual != null ? virtual
+        : Executors.newCachedThreadPool(daemonThreads("zmpp-interrupt"));
+  }
+}
@@ -2,12 +2,24 @@ package eu.sblendorio.bbs.core;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.collection.IsEmptyCollection.empty;
 import static org.hamcrest.core.IsNot.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 class CbmInputOutputTest {
 
@@ -28,4 +40,127 @@ class CbmInputOutputTest {
     List<String> fileEntries = CbmInputOutput.readTextFile("notFoundTestFile.txt");
     assertThat(fileEntries, empty());
   }
-}
\ No newline at end of file
+
+  @Test
+  void outputIsSentOnlyWhenWaitingForInput() throws IOException {
+    ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    Socket socket = mock(Socket.class);
+    when(socket.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[] {65}));
+    when(socket.getOutputStream()).thenReturn(sent);
+    CbmInputOutput cbm = new CbmInputOutput(socket);
+
+    cbm.cls();
+    for (int i = 0; i < 10; ++i) cbm.write(29);
+    cbm.println("hello");
+    assertEquals(0, sent.size());
+    assertEquals(0, cbm.getWriteCount());
+
+    assertEquals(65, cbm.readKey());
+    assertEquals(17, sent.size());
+    assertEquals(17, cbm.getBytesWritten());
+    assertEquals(1, cbm.getWriteCount());
+  }
+
+  @Test
+  void messagesAreDeliveredWhileWaitingForAKey() throws IOException {
+    try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+         Socket client = new Socket("127.0.0.1", server.socket().getLocalPort());
+         Socket socket = server.accept().socket()) {
+      socket.setSoTimeout(5000);
+      CbmInputOutput cbm = new CbmInputOutput(socket);
+      Mailbox mailbox = new Mailbox(8, (sender, message) -> cbm.print((String) message), () -> {});
+      cbm.setMailbox(mailbox);
+      new Thread(() -> {
+        try {
+          Thread.sleep(300);
+          mailbox.offer(2, "HI");
+          InputStream is = client.getInputStream();
+          is.read();
+          is.read();
+          client.getOutputStream().write(13);
+        } catch (Exception e) {
+          // the assertion below fails
+        }
+      }).start();
+
+      assertEquals(13, cbm.readKey());
+      assertEquals(2, cbm.getBytesWritten());
+    }
+  }
+
+  @Test
+  void idleListenerRunsOnceWhileWaitingForAKey() throws IOException {
+    try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+         Socket client = new Socket("127.0.0.1", server.socket().getLocalPort());
+         Socket socket = server.accept().socket()) {
+      socket.setSoTimeout(5000);
+      CbmInputOutput cbm = new CbmInputOutput(socket);
+      cbm.setMailbox(new Mailbox(8, (sender, message) -> {}, () -> {}));
+      new Thread(() -> {
+        try {
+          Thread.sleep(1200);
+          client.getOutputStream().write(65);
+        } catch (Exception e) {
+          // the assertion below fails
+        }
+      }).start();
+
+      AtomicInteger idle = new AtomicInteger();
+      assertEquals(65, cbm.readKey(300, idle::incrementAndGet));
+      assertEquals(1, idle.get());
+    }
+  }
+
+  @Test
+  void idleTimeoutStillAppliesWithAMailbox() throws IOException {
+    try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+         Socket client = new Socket("127.0.0.1", server.socket().getLocalPort());
+         Socket socket = server.accept().socket()) {
+      socket.setSoTimeout(600);
+      CbmInputOutput cbm = new CbmInputOutput(socket);
+      cbm.setMailbox(new Mailbox(8, (sender, message) -> {}, () -> {}));
+      assertThrows(SocketTimeoutException.class, cbm::readKey);
+    }
+  }
+
+  @Test
+  void mailboxDoesNotChangeTheSocketTimeout() throws IOException {
+    try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+         Socket client = new Socket("127.0.0.1", server.socket().getLocalPort());
+         Socket socket = server.accept().socket()) {
+      socket.setSoTimeout(5000);
+      CbmInputOutput cbm = new CbmInputOutput(socket);
+      cbm.setMailbox(new Mailbox(8, (sender, message) -> {}, () -> {}));
+      assertEquals(5000, socket.getSoTimeout());
+    }
+  }
+
+  @Test
+  void everyMessageWakesUpTheWaitingSession() throws IOException {
+    try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+         Socket client = new Socket("127.0.0.1", server.socket().getLocalPort());
+         Socket socket = server.accept().socket()) {
+      socket.setSoTimeout(5000);
+      CbmInputOutput cbm = new CbmInputOutput(socket);
+      Mailbox mailbox = new Mailbox(8, (sender, message) -> cbm.print((String) message), () -> {});
+      cbm.setMailbox(mailbox);
+      new Thread(() -> {
+        try {
+          Thread.sleep(100);
+          mailbox.offer(2, "A");
+          InputStream is = client.getInputStream();
+          is.read();
+          mailbox.offer(2, "B");
+          is.read();
+          client.getOutputStream().write(13);
+        } catch (Exception e) {
+          // the assertion below fails
+        }
+      }).start();
+
+      assertEquals(13, cbm.readKey());
+      assertEquals(2, cbm.getBytesWritten());
+      assertEquals(2, cbm.getWriteCount());
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package eu.sblendorio.bbs.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.spy;
+
+class ClientRegistryTest {
+
+  static class Menu extends PetsciiThread {
+    @Override
+    public void doLoop() { }
+  }
+
+  static class Game extends PetsciiThread {
+    @Override
+    public void doLoop() { }
+  }
+
+  private static PetsciiThread client(long id, String name, Class<?> clientClass) {
+    PetsciiThread client = spy(PetsciiThread.class);
+    client.clientId = id;
+    client.clientName = name;
+    client.clientClass = clientClass;
+    return client;
+  }
+
+  @Test
+  @DisplayName("a renamed client must be found by its new name only")
+  void whenClientIsRenamed_ThenItMustBeFoundByNewName() {
+    ClientRegistry sut = new ClientRegistry();
+    PetsciiThread client = client(1, "client1", Menu.class);
+    sut.put(1L, client);
+    assertTrue(sut.rename("client1", "alice"));
+    assertSame(client, sut.getByName("alice"));
+    assertNull(sut.getByName("client1"));
+    assertEquals("alice", client.getClientName());
+  }
+
+  @Test
+  @DisplayName("a name used by another client must not be taken")
+  void whenNameIsTaken_ThenRenameMustFail() {
+    ClientRegistry sut = new ClientRegistry();
+    sut.put(1L, client(1, "alice", Menu.class));
+    PetsciiThread bob = client(2, "bob", Menu.class);
+    sut.put(2L, bob);
+    assertFalse(sut.rename("bob", "alice"));
+    assertEquals("bob", bob.getClientName());
+    assertTrue(sut.rename("bob", "bob"));
+  }
+
+  @Test
+  @DisplayName("clients must be indexed by the tenant they are running")
+  void whenTenantChanges_ThenClassIndexMustFollow() {
+    ClientRegistry sut = new ClientRegistry();
+    PetsciiThread first = client(1, "client1", Menu.class);
+    PetsciiThread second = client(2, "client2", Menu.class);
+    sut.put(1L, first);
+    sut.put(2L, second);
+    assertEquals(2, sut.getByClass(Menu.class).size());
+
+    second.clientClass = Game.class;
+    sut.changeClass(second, Menu.class, Game.class);
+    assertEquals(1, sut.getByClass(Menu.class).size());
+    assertSame(second, sut.getByClass(Game.class).iterator().next());
+
+    sut.remove(2L);
+    assertTrue(sut.getByClass(Game.class).isEmpty());
+    assertNull(sut.getByName("client2"));
+    assertEquals(1, sut.size());
+  }
+}
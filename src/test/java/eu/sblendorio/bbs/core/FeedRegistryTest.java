@@ -0,0 +1,82 @@
+package eu.sblendorio.bbs.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeedRegistryTest {
+
+  private static List<FeedRegistry.FeedEntry> feed(String title) {
+    return Collections.singletonList(new FeedRegistry.FeedEntry(null, title, "", "uri"));
+  }
+
+  @Test
+  @DisplayName("a fresh snapshot must be shared without reloading the feed")
+  void whenSnapshotIsFresh_ThenFeedMustNotBeReloaded() throws Exception {
+    AtomicInteger loads = new AtomicInteger(0);
+    FeedRegistry sut = new FeedRegistry(url -> feed("v" + loads.incrementAndGet()), 60000, 60000, false);
+    List<FeedRegistry.FeedEntry> first = sut.get("http://feed");
+    List<FeedRegistry.FeedEntry> second = sut.get("http://feed");
+    assertSame(first, second);
+    assertEquals(1, loads.get());
+    assertThrows(UnsupportedOperationException.class, () -> second.add(null));
+  }
+
+  @Test
+  @DisplayName("a stale snapshot must be served while a new one is loaded")
+  void whenSnapshotIsStale_ThenItMustBeServedAndRefreshed() throws Exception {
+    AtomicInteger loads = new AtomicInteger(0);
+    CountDownLatch refresh = new CountDownLatch(1);
+    FeedRegistry sut = new FeedRegistry(url -> {
+      try {
+        if (loads.get() > 0) refresh.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return feed(loads.incrementAndGet() == 1 ? "v1" : "v2");
+    }, 0, 60000, false);
+    assertEquals("v1", sut.get("http://feed").get(0).getTitle());
+    assertEquals("v1", sut.get("http://feed").get(0).getTitle());
+    refresh.countDown();
+    // the snapshot is published after the loader returns
+    long deadline = System.currentTimeMillis() + 5000;
+    String title = sut.get("http://feed").get(0).getTitle();
+    while (!"v2".equals(title) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      title = sut.get("http://feed").get(0).getTitle();
+    }
+    assertEquals("v2", title);
+  }
+
+  @Test
+  @DisplayName("a failed refresh must keep the previous snapshot")
+  void whenRefreshFails_ThenPreviousSnapshotMustBeKept() throws Exception {
+    AtomicInteger loads = new AtomicInteger(0);
+    FeedRegistry sut = new FeedRegistry(url -> {
+      if (loads.incrementAndGet() > 1) throw new IOException("offline");
+      return feed("v1");
+    }, 0, 60000, false);
+    sut.get("http://feed");
+    long deadline = System.currentTimeMillis() + 5000;
+    while (loads.get() < 2 && System.currentTimeMillis() < deadline) {
+      sut.get("http://feed");
+      Thread.sleep(10);
+    }
+    assertEquals("v1", sut.get("http://feed").get(0).getTitle());
+    assertTrue(sut.stats().contains("failures="));
+  }
+
+  @Test
+  @DisplayName("the first load failure must be reported to the caller")
+  void whenFirstLoadFails_ThenExceptionMustBeThrown() {
+    FeedRegistry sut = new FeedRegistry(url -> { throw new IOException("offline"); }, 60000, 60000, false);
+    assertThrows(IOException.class, () -> sut.get("http://feed"));
+  }
+}
@@ -0,0 +1,32 @@
+package eu.sblendorio.bbs.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoIpTest {
+
+  @Test
+  @DisplayName("a missing database must give no location, without errors")
+  void whenDatabaseIsMissing_ThenNullMustBeReturned() throws IOException {
+    GeoIp sut = new GeoIp(new File("does-not-exist.mmdb"), 16, 60000);
+    assertNull(sut.lookup(InetAddress.getLoopbackAddress()));
+    assertNull(sut.lookup(InetAddress.getLoopbackAddress()));
+    assertTrue(sut.stats().contains("loaded=false"));
+  }
+
+  @Test
+  @DisplayName("a corrupted database must be reported to the caller")
+  void whenDatabaseIsCorrupted_ThenExceptionMustBeThrown() throws IOException {
+    File corrupted = File.createTempFile("geoip", ".mmdb");
+    corrupted.deleteOnExit();
+    java.nio.file.Files.write(corrupted.toPath(), new byte[] {1, 2, 3});
+    GeoIp sut = new GeoIp(corrupted, 16, 60000);
+    assertThrows(IOException.class, () -> sut.lookup(InetAddress.getLoopbackAddress()));
+  }
+}
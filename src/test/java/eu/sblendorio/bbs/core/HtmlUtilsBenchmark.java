@@ -0,0 +1,54 @@
+package eu.sblendorio.bbs.core;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * HtmlUtils.htmlClean against the original implementation on a WordPress post.
+ * Run with: mvn -Pbenchmark test -Dbenchmark=HtmlUtilsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlUtilsBenchmark {
+
+  private String post;
+
+  @Setup
+  public void setup() throws IOException {
+    try (InputStream is = HtmlUtilsBenchmark.class.getResourceAsStream("wordpress-post.html")) {
+      // a long-form article: the captured post followed by its text paragraphs repeated
+      final String captured = IOUtils.toString(is, UTF_8);
+      post = captured + StringUtils.repeat(captured.replaceAll("(?is)<pre.*?</pre>", ""), 8);
+    }
+  }
+
+  @Benchmark
+  public String htmlClean() {
+    return HtmlUtils.htmlClean(post);
+  }
+
+  @Benchmark
+  public String legacyHtmlClean() {
+    return LegacyHtmlUtils.htmlClean(post);
+  }
+}
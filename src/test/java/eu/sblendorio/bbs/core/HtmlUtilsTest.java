@@ -0,0 +1,61 @@
+package eu.sblendorio.bbs.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HtmlUtilsTest {
+
+  private static final String[] TOKENS = {
+      "<pre>", "<PRE class=\"x\">", "</pre>", "</pre >", "<pre></pre>", "\n", "\r\n", " ", "text", "A",
+      "<br>", "<br />", "<br/>", "<BR>", "<p>", "<p class=\"a\">", "</p>", "<div>", "<li>", "<link>",
+      "<h2>", "</h2>", "<h7>", "<", ">", "<a <br>>", "<script>", "</script>", "<SCRIPT>", "</SCRIPT>",
+      "<style>", "</style>", "&agrave;", "&agrave", "&Agrave;", "à", "É", "&nbsp;", "&nbsp", "&#xA0;",
+      "&amp;", "&amp", "&amp;gt;", "&gt;", "&lt;", "&#038;", "&#38;", "&quot;", "’", "“", "«", "°",
+      "̀", "&#8217;", "&hellip;", "…", "&mdash;", "–", "©", "&#215;", String.valueOf((char) 160),
+      "<amp-user-notification>", "</amp-user-notification>", "&", ";"
+  };
+
+  @Test
+  @DisplayName("a real WordPress post must be cleaned exactly as before")
+  void wordpressPost() throws IOException {
+    String html;
+    try (InputStream is = getClass().getResourceAsStream("wordpress-post.html")) {
+      html = IOUtils.toString(is, UTF_8);
+    }
+    String cleaned = HtmlUtils.htmlClean(html);
+    assertEquals(LegacyHtmlUtils.htmlClean(html), cleaned);
+    assertTrue(cleaned.contains("e' stato il computer piu' venduto"));
+    assertTrue(cleaned.contains("<br>") == false);
+  }
+
+  @Test
+  void nullAndEmpty() {
+    assertEquals("", HtmlUtils.htmlClean(null));
+    assertEquals("", HtmlUtils.htmlClean(""));
+  }
+
+  @ParameterizedTest
+  @ValueSource(longs = {1, 2, 3, 4, 5, 6, 7, 8})
+  @DisplayName("random html must be cleaned exactly as the original implementation did")
+  void sameOutputAsOriginalImplementation(long seed) {
+    Random random = new Random(seed);
+    for (int i = 0; i < 500; ++i) {
+      StringBuilder sb = new StringBuilder();
+      int length = random.nextInt(40);
+      for (int j = 0; j < length; ++j) sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+      String html = sb.toString();
+      assertEquals(LegacyHtmlUtils.htmlClean(html), HtmlUtils.htmlClean(html), () -> "Input: " + html);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package eu.sblendorio.bbs.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailboxTest {
+
+  @Test
+  @DisplayName("messages must be delivered in order, with a single completion per drain")
+  void whenMailboxIsDrained_ThenMessagesMustBeDeliveredInOrder() {
+    List<Object> received = new ArrayList<>();
+    AtomicInteger completions = new AtomicInteger(0);
+    Mailbox sut = new Mailbox(8, (sender, message) -> received.add(sender + ":" + message), completions::incrementAndGet);
+    sut.offer(1, "a");
+    sut.offer(2, "b");
+    assertEquals(2, sut.getDepth());
+    assertEquals(2, sut.drain());
+    assertEquals(0, sut.drain());
+    assertEquals("[1:a, 2:b]", received.toString());
+    assertEquals(1, completions.get());
+    assertEquals(0, sut.getDepth());
+  }
+
+  @Test
+  @DisplayName("a full mailbox must drop the oldest messages")
+  void whenMailboxIsFull_ThenOldestMessagesMustBeDropped() {
+    List<Object> received = new ArrayList<>();
+    Mailbox sut = new Mailbox(2, (sender, message) -> received.add(message), () -> {});
+    sut.offer(1, "a");
+    sut.offer(1, "b");
+    sut.offer(1, "c");
+    assertEquals(1, sut.getDropped());
+    assertEquals(2, sut.getPeakDepth());
+    sut.drain();
+    assertEquals("[b, c]", received.toString());
+  }
+
+  @Test
+  @DisplayName("a failing receiver must not prevent delivery of the other messages")
+  void whenReceiverFails_ThenOtherMessagesMustBeDelivered() {
+    List<Object> received = new ArrayList<>();
+    Mailbox sut = new Mailbox(8, (sender, message) -> {
+      if ("bad".equals(message)) throw new ClassCastException("bad");
+      received.add(message);
+    }, () -> {});
+    sut.offer(1, "bad");
+    sut.offer(1, "good");
+    assertEquals(2, sut.drain());
+    assertEquals("[good]", received.toString());
+  }
+
+  @Test
+  @DisplayName("a drain from within a receiver must not deliver anything")
+  void whenDrainIsNested_ThenNothingMustBeDelivered() {
+    List<Integer> nested = new ArrayList<>();
+    Mailbox[] sut = new Mailbox[1];
+    sut[0] = new Mailbox(8, (sender, message) -> nested.add(sut[0].drain()), () -> {});
+    sut[0].offer(1, "a");
+    sut[0].offer(1, "b");
+    assertEquals(2, sut[0].drain());
+    assertEquals("[0, 0]", nested.toString());
+  }
+}
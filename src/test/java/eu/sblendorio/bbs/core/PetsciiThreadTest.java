@@ -1,6 +1,5 @@
 package eu.sblendorio.bbs.core;
 
-import com.google.common.collect.ImmutableMap;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -11,12 +10,18 @@ import static org.mockito.Mockito.*;
 
 class PetsciiThreadTest {
 
+  private static ClientRegistry registryOf(PetsciiThread client) {
+    ClientRegistry registry = new ClientRegistry();
+    registry.put(1L, client);
+    return registry;
+  }
+
   @Test
   @DisplayName("change a name of the client must change the name. (regression test - the previous code will generate a NPE)")
   void changeClientName() {
     PetsciiThread client = spy(PetsciiThread.class);
     client.clientName = "originalName";
-    PetsciiThread.clients = ImmutableMap.of(1L, client);
+    PetsciiThread.clients = registryOf(client);
     PetsciiThread.changeClientName("originalName", "modifiedName");
     assertEquals("modifiedName", PetsciiThread.clients.get(1L).getClientName());
   }
@@ -24,6 +29,7 @@ class PetsciiThreadTest {
   @Test
   @DisplayName("When clients list is empty, then null must be returned")
   void whenClienListIsEmpty_ThenNullMustBeReturned() {
+    PetsciiThread.clients = new ClientRegistry();
     Optional<PetsciiThread> test = PetsciiThread.getClientByName("test");
     assertFalse(test.isPresent());
   }
@@ -35,7 +41,7 @@ class PetsciiThreadTest {
     String clientNameToSearch = "test";
     String clientNameIntoList = "listClientName";
     when(client.getClientName()).thenReturn(clientNameIntoList);
-    PetsciiThread.clients = ImmutableMap.of(1L, client);
+    PetsciiThread.clients = registryOf(client);
     Optional<PetsciiThread> test = PetsciiThread.getClientByName(clientNameToSearch);
     assertFalse(test.isPresent());
   }
@@ -46,7 +52,7 @@ class PetsciiThreadTest {
     PetsciiThread client = mock(PetsciiThread.class);
     String clientName = "test";
     when(client.getClientName()).thenReturn(clientName);
-    PetsciiThread.clients = ImmutableMap.of(1L, client);
+    PetsciiThread.clients = registryOf(client);
     Optional<PetsciiThread> test = PetsciiThread.getClientByName(clientName);
     assertEquals(client, test.orElse(null));
   }
@@ -0,0 +1,49 @@
+package eu.sblendorio.bbs.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderedPageCacheTest {
+
+  @Test
+  @DisplayName("a cached page must not be rendered again")
+  void whenPageIsCached_ThenItMustNotBeRenderedAgain() {
+    AtomicInteger renders = new AtomicInteger(0);
+    RenderedPageCache sut = new RenderedPageCache(1024 * 1024, 1024 * 1024);
+    List<String> first = sut.get("key", () -> Arrays.asList("row " + renders.incrementAndGet()));
+    List<String> second = sut.get("key", () -> Arrays.asList("row " + renders.incrementAndGet()));
+    assertSame(first, second);
+    assertEquals(1, renders.get());
+    assertEquals(1, sut.getHits());
+    assertThrows(UnsupportedOperationException.class, () -> second.add("row"));
+  }
+
+  @Test
+  @DisplayName("the least recently used pages must be evicted when the cache is full")
+  void whenCacheIsFull_ThenLeastRecentlyUsedMustBeEvicted() {
+    RenderedPageCache sut = new RenderedPageCache(300, 300);
+    sut.get("a", () -> Arrays.asList("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa"));
+    sut.get("b", () -> Arrays.asList("bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb"));
+    sut.get("a", () -> Arrays.asList("not expected"));
+    sut.get("c", () -> Arrays.asList("ccccccccccccccccccccccccccccccccccccccc"));
+    assertEquals(1, sut.getEvictions());
+    assertEquals("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa", sut.get("a", () -> Arrays.asList("miss")).get(0));
+    assertEquals("miss", sut.get("b", () -> Arrays.asList("miss")).get(0));
+    assertTrue(sut.getCacheBytes() <= 300);
+  }
+
+  @Test
+  @DisplayName("a page larger than the entry limit must be rendered but not cached")
+  void whenPageIsTooLarge_ThenItMustNotBeCached() {
+    RenderedPageCache sut = new RenderedPageCache(1024 * 1024, 10);
+    assertEquals("row", sut.get("key", () -> Arrays.asList("row")).get(0));
+    assertEquals(0, sut.size());
+    assertEquals(0, sut.getCacheBytes());
+  }
+}
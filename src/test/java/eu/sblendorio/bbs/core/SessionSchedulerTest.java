@@ -0,0 +1,58 @@
+package eu.sblendorio.bbs.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionSchedulerTest {
+
+  @Test
+  @DisplayName("sessions beyond the max-sessions limit must be rejected")
+  void whenLimitIsReached_ThenSessionMustBeRejected() throws InterruptedException {
+    SessionScheduler sut = new SessionScheduler(2, 0);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(2);
+    Runnable session = () -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    };
+    try {
+      assertTrue(sut.submit(session));
+      assertTrue(sut.submit(session));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      assertFalse(sut.submit(session));
+      assertEquals(3, sut.getAcceptedCount());
+      assertEquals(1, sut.getRejectedCount());
+      assertEquals(2, sut.getActiveSessions());
+    } finally {
+      release.countDown();
+      sut.shutdown();
+    }
+  }
+
+  @Test
+  @DisplayName("a slot must be freed when a session ends")
+  void whenSessionEnds_ThenSlotMustBeReleased() throws InterruptedException {
+    SessionScheduler sut = new SessionScheduler(1, 0);
+    CountDownLatch done = new CountDownLatch(1);
+    try {
+      assertTrue(sut.submit(done::countDown));
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      long deadline = System.currentTimeMillis() + 5000;
+      while (sut.getActiveSessions() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+      assertTrue(sut.submit(() -> {}));
+      assertEquals(0, sut.getRejectedCount());
+      assertEquals(1, sut.getPeakSessions());
+    } finally {
+      sut.shutdown();
+    }
+  }
+}
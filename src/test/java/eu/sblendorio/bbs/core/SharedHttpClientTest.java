@@ -0,0 +1,199 @@
+package eu.sblendorio.bbs.core;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedHttpClientTest {
+
+  private static final int BIG_SIZE = 100000;
+
+  private HttpServer server;
+  private final AtomicInteger requests = new AtomicInteger(0);
+  private final AtomicInteger notModified = new AtomicInteger(0);
+  private volatile CountDownLatch gate = new CountDownLatch(0);
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/posts", exchange -> {
+      requests.incrementAndGet();
+      try {
+        gate.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        notModified.incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return;
+      }
+      byte[] body = "first\r\nsecond".getBytes(UTF_8);
+      exchange.getResponseHeaders().add("ETag", "\"v1\"");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    });
+    server.createContext("/big", exchange -> {
+      // a length of 0 means chunked, with no Content-Length
+      boolean chunked = exchange.getRequestURI().getQuery() != null;
+      exchange.sendResponseHeaders(200, chunked ? 0 : BIG_SIZE);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(new byte[BIG_SIZE]);
+      }
+    });
+    server.createContext("/missing", exchange -> {
+      exchange.sendResponseHeaders(404, -1);
+      exchange.close();
+    });
+    server.start();
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  private URL url(String path) throws IOException {
+    return new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+  }
+
+  @Test
+  @DisplayName("a fresh response must be served from cache")
+  void whenResponseIsFresh_ThenItMustBeServedFromCache() throws IOException {
+    SharedHttpClient sut = new SharedHttpClient(60000, 1024 * 1024, 1024);
+    SharedHttpClient.Response first = sut.get(url("/posts"), "agent");
+    SharedHttpClient.Response second = sut.get(url("/posts"), "agent");
+    assertEquals("first\r\nsecond", new String(second.getBody(), UTF_8));
+    assertSame(first.getBody(), second.getBody());
+    assertEquals(1, requests.get());
+    assertEquals(1, sut.getHits());
+  }
+
+  @Test
+  @DisplayName("different User-Agents must not share cache entries")
+  void whenUserAgentDiffers_ThenCacheMustBeMissed() throws IOException {
+    SharedHttpClient sut = new SharedHttpClient(60000, 1024 * 1024, 1024);
+    sut.get(url("/posts"), "agent");
+    sut.get(url("/posts"), "other");
+    assertEquals(2, requests.get());
+  }
+
+  @Test
+  @DisplayName("an expired response with ETag must be revalidated")
+  void whenResponseIsExpired_ThenItMustBeRevalidated() throws IOException {
+    SharedHttpClient sut = new SharedHttpClient(0, 1024 * 1024, 1024);
+    sut.get(url("/posts"), null);
+    SharedHttpClient.Response second = sut.get(url("/posts"), null);
+    assertEquals(1, notModified.get());
+    assertEquals(1, sut.getRevalidated());
+    assertTrue(second.isSuccessful());
+    assertEquals("first\r\nsecond", new String(second.getBody(), UTF_8));
+  }
+
+  @Test
+  @DisplayName("concurrent identical requests must share one fetch")
+  void whenRequestsAreConcurrent_ThenTheyMustBeCoalesced() throws Exception {
+    SharedHttpClient sut = new SharedHttpClient(60000, 1024 * 1024, 1024);
+    gate = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      Future<SharedHttpClient.Response> first = pool.submit(() -> sut.get(url("/posts"), null));
+      while (requests.get() == 0) Thread.sleep(5);
+      Future<SharedHttpClient.Response> second = pool.submit(() -> sut.get(url("/posts"), null));
+      while (sut.getCoalesced() == 0) Thread.sleep(5);
+      gate.countDown();
+      assertSame(first.get().getBody(), second.get().getBody());
+      assertEquals(1, requests.get());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  @DisplayName("error responses must not be cached")
+  void whenResponseIsAnError_ThenItMustNotBeCached() throws IOException {
+    SharedHttpClient sut = new SharedHttpClient(60000, 1024 * 1024, 1024);
+    assertEquals(404, sut.get(url("/missing"), null).getStatus());
+    assertEquals(404, sut.get(url("/missing"), null).getStatus());
+    assertEquals(0, sut.getHits());
+    assertEquals(0, sut.getCacheBytes());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"/big", "/big?chunked"})
+  @DisplayName("a body larger than the limit must be refused")
+  void whenBodyIsTooLarge_ThenItMustBeRefused(String path) throws IOException {
+    SharedHttpClient sut = new SharedHttpClient(60000, 1024 * 1024, 1024 * 1024);
+    sut.setMaxBodyBytes(BIG_SIZE - 1);
+    assertThrows(DownloadTooLargeException.class, () -> sut.get(url(path), null));
+    sut.setMaxBodyBytes(BIG_SIZE);
+    assertEquals(BIG_SIZE, sut.get(url(path), null).getBody().length);
+  }
+
+  @Test
+  @DisplayName("a download larger than the limit must not look like a client hanging up")
+  void whenDownloadIsTooLarge_ThenItMustNotBeCbmIOException() {
+    SharedHttpClient client = SharedHttpClient.getInstance();
+    long limit = client.getMaxBodyBytes();
+    client.setMaxBodyBytes(BIG_SIZE - 1);
+    try {
+      IOException e = assertThrows(DownloadTooLargeException.class, () -> PetsciiThread.download(url("/big"), null));
+      assertFalse(e instanceof CbmIOException);
+    } finally {
+      client.setMaxBodyBytes(limit);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"/big", "/big?chunked"})
+  @DisplayName("a limit of 0 must read a body of any size")
+  void whenLimitIsZero_ThenBodyMustNotBeRefused(String path) throws IOException {
+    SharedHttpClient sut = new SharedHttpClient(60000, 1024 * 1024, 1024 * 1024);
+    sut.setMaxBodyBytes(0);
+    assertEquals(BIG_SIZE, sut.get(url(path), null).getBody().length);
+  }
+
+  @Test
+  @DisplayName("progress must be reported up to the Content-Length")
+  void whenBodyIsRead_ThenProgressMustBeReported() throws IOException {
+    SharedHttpClient sut = new SharedHttpClient(60000, 1024 * 1024, 1024 * 1024);
+    List<Long> updates = new ArrayList<>();
+    sut.get(url("/big"), null, (read, total) -> {
+      assertEquals(BIG_SIZE, total);
+      updates.add(read);
+    });
+    assertFalse(updates.isEmpty());
+    assertEquals(BIG_SIZE, (long) updates.get(updates.size() - 1));
+  }
+
+  @Test
+  @DisplayName("httpGet lines must be terminated by newline as before")
+  void normalizeLines() {
+    assertEquals("first\nsecond\n", PetsciiThread.normalizeLines("first\r\nsecond"));
+    assertEquals("a\n\nb\n", PetsciiThread.normalizeLines("a\r\rb\n"));
+    assertEquals("", PetsciiThread.normalizeLines(""));
+  }
+}
@@ -0,0 +1,114 @@
+package eu.sblendorio.bbs.tenants;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageStoreTest {
+
+  private Path dir;
+  private String dbFile;
+  private MessageStore sut;
+
+  @BeforeEach
+  void open() throws Exception {
+    dir = Files.createTempDirectory("bbs-data");
+    dbFile = dir.resolve("bbs-data.db").toString();
+  }
+
+  @AfterEach
+  void close() {
+    if (sut != null) sut.close();
+    File[] files = dir.toFile().listFiles();
+    if (files != null) for (File f: files) f.delete();
+    dir.toFile().delete();
+  }
+
+  private String queryPlan(String sql) throws Exception {
+    try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+         Statement s = c.createStatement();
+         ResultSet rs = s.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+      StringBuilder sb = new StringBuilder();
+      while (rs.next()) sb.append(rs.getString("detail")).append('\n');
+      return sb.toString();
+    }
+  }
+
+  @Test
+  @DisplayName("a new database must be created with the inbox indexes, in WAL mode")
+  void whenDatabaseIsNew_ThenSchemaMustBeCreated() throws Exception {
+    sut = new MessageStore(dbFile, 2, false);
+    sut.addUser("alice", "Alice", "alice@example.com", "salt", "hash");
+    assertTrue(sut.existsUser("alice"));
+    assertThat(queryPlan("SELECT count(*) FROM messages WHERE user_to='alice' AND is_read=0"), containsString("messages_inbox"));
+    try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+         Statement s = c.createStatement();
+         ResultSet rs = s.executeQuery("PRAGMA journal_mode")) {
+      rs.next();
+      assertEquals("wal", rs.getString(1));
+    }
+  }
+
+  @Test
+  @DisplayName("an existing database without indexes must be upgraded, keeping its data")
+  void whenDatabaseIsLegacy_ThenIndexesMustBeAdded() throws Exception {
+    try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+         Statement s = c.createStatement()) {
+      s.executeUpdate("CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, nick TEXT, realname TEXT, email TEXT, salt text, password TEXT)");
+      s.executeUpdate("CREATE TABLE messages (user_from TEXT, user_to TEXT, datetime INTEGER, is_read INTEGER, subject TEXT, message TEXT)");
+      s.executeUpdate("CREATE TABLE user_vault (hash TEXT)");
+      s.executeUpdate("INSERT INTO messages VALUES ('bob', 'alice', 1, 0, 'hi', 'hello')");
+    }
+    sut = new MessageStore(dbFile, 2, false);
+    assertEquals(1, sut.countUnreadMessages("alice"));
+    assertThat(queryPlan("SELECT * FROM messages WHERE user_to='alice' ORDER BY datetime DESC"), containsString("messages_inbox"));
+  }
+
+  @Test
+  @DisplayName("messages marked as read must be seen as read by the next query")
+  void whenMessagesAreMarkedAsRead_ThenNextQueryMustSeeThem() throws Exception {
+    sut = new MessageStore(dbFile, 2, false);
+    sut.sendMessage("bob", "alice", "first", "one");
+    sut.sendMessage("bob", "alice", "second", "two");
+    sut.sendMessage("bob", "carol", "other", "three");
+
+    List<UserLogon.Message> inbox = sut.getMessages("alice", false);
+    assertEquals(2, inbox.size());
+    assertEquals(2, sut.countUnreadMessages("alice"));
+    for (UserLogon.Message m: inbox) sut.markAsRead(m.rowId);
+
+    assertEquals(0, sut.countUnreadMessages("alice"));
+    assertEquals(2, sut.countTotalMessages("alice"));
+    assertTrue(sut.getMessages("alice", true).isEmpty());
+    assertEquals(1, sut.countUnreadMessages("carol"));
+    assertThat(sut.stats(), containsString("readBatches=1"));
+  }
+
+  @Test
+  @DisplayName("a killed user must lose its messages and its nick")
+  void whenUserIsKilled_ThenNickMustBeReserved() throws Exception {
+    sut = new MessageStore(dbFile, 2, false);
+    sut.addUser("alice", "Alice", "alice@example.com", "salt", org.apache.commons.codec.digest.DigestUtils.sha256Hex("saltsecret"));
+    assertNotNull(sut.getUser("alice", "secret"));
+    assertNull(sut.getUser("alice", "wrong"));
+    sut.sendMessage("bob", "alice", "hi", "hello");
+    sut.killUser("alice");
+    assertFalse(sut.existsUser("alice"));
+    assertTrue(sut.userInVault("alice"));
+    assertEquals(0, sut.countTotalMessages("alice"));
+  }
+}
@@ -0,0 +1,58 @@
+package net.sourceforge.droid64.addons;
+
+import eu.sblendorio.bbs.core.PetsciiThread.DownloadData;
+import net.sourceforge.droid64.d64.CbmException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DiskUtilities.getPrgContentFromFile on a CSDb-like download: a D64 holding a 40 KB
+ * program, gzipped or zipped with a readme. To compare with another version, run it on a
+ * checkout of each.
+ * Run with: mvn -Pbenchmark test -Dbenchmark=DiskUtilitiesBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiskUtilitiesBenchmark {
+
+  @Param({"game.d64.gz", "game.zip"})
+  public String filename;
+
+  private byte[] download;
+  private byte[] d64gz;
+
+  @Setup
+  public void setup() throws Exception {
+    final byte[] d64 = DiskUtilitiesTest.d64With(DiskUtilitiesTest.program(40000));
+    d64gz = DiskUtilitiesTest.gzip(d64);
+    download = filename.endsWith(".gz")
+        ? d64gz
+        : DiskUtilitiesTest.zip("readme.txt", new byte[2000], "game.d64", d64);
+  }
+
+  @Benchmark
+  public byte[] prgContent() throws CbmException, IOException {
+    return DiskUtilities.getPrgContentFromFile(new DownloadData(filename, download));
+  }
+
+  @Benchmark
+  public byte[] gunzip() throws CbmException {
+    return DiskUtilities.readGZippedBytes(d64gz);
+  }
+}
@@ -1,35 +1,119 @@
 package net.sourceforge.droid64.addons;
 
 import eu.sblendorio.bbs.core.PetsciiThread;
-import org.apache.commons.lang3.ArrayUtils;
+import net.sourceforge.droid64.d64.CbmException;
+import net.sourceforge.droid64.d64.CbmFile;
+import net.sourceforge.droid64.d64.D64;
+import net.sourceforge.droid64.d64.DiskImage;
+import net.sourceforge.droid64.d64.Utility;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.params.ParameterizedTest;
-import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
-import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.collection.IsArrayWithSize.emptyArray;
 import static org.junit.jupiter.api.Assertions.*;
 
 class DiskUtilitiesTest {
 
-  @ParameterizedTest
-  @ValueSource(ints = {Integer.MIN_VALUE, -1, 0, 2, Integer.MAX_VALUE})
-  @DisplayName("if count is different from 1 then null must be returned")
-  void whenCountIsDifferentFromOne_ThenNullMustBeReturned(int count) throws IOException {
-    PetsciiThread.DownloadData downloadData = DiskUtilities.getDownloadData(null, count, null);
-    assertNull(downloadData);
+  @Test
+  @DisplayName("the only program in a zip must be extracted")
+  void whenZipHasOneProgram_ThenItMustBeReturned() throws Exception {
+    byte[] prg = program(3000);
+    byte[] zip = zip("readme.txt", new byte[10], "game.prg", prg);
+    assertArrayEquals(prg, DiskUtilities.getPrgContentFromFile(new PetsciiThread.DownloadData("game.zip", zip)));
+  }
+
+  @Test
+  @DisplayName("if a zip has more than one program then null must be returned")
+  void whenZipHasTwoPrograms_ThenNullMustBeReturned() throws Exception {
+    byte[] zip = zip("a.prg", program(100), "b.prg", program(200));
+    assertNull(DiskUtilities.getPrgContentFromFile(new PetsciiThread.DownloadData("game.zip", zip)));
+  }
+
+  @Test
+  @DisplayName("the program on a gzipped disk image must be extracted")
+  void whenD64IsGzipped_ThenItsProgramMustBeReturned() throws Exception {
+    byte[] prg = program(20000);
+    byte[] d64gz = gzip(d64With(prg));
+    assertArrayEquals(prg, DiskUtilities.getPrgContentFromFile(new PetsciiThread.DownloadData("game.d64.gz", d64gz)));
+  }
+
+  @Test
+  @DisplayName("the program on a gzipped disk image in a zip must be extracted")
+  void whenZipHasGzippedD64_ThenItsProgramMustBeReturned() throws Exception {
+    byte[] prg = program(20000);
+    byte[] zip = zip("game.d64.gz", gzip(d64With(prg)));
+    assertArrayEquals(prg, DiskUtilities.getPrgContentFromFile(new PetsciiThread.DownloadData("game.zip", zip)));
+  }
+
+  @Test
+  @DisplayName("a gzipped download inflating beyond the limit must be refused")
+  void whenGzipInflatesTooMuch_ThenAnExceptionMustBeThrown() throws Exception {
+    byte[] bomb = gzip(new byte[Utility.MAX_UNCOMPRESSED_SIZE + 1]);
+    assertThrows(CbmException.class,
+        () -> DiskUtilities.getPrgContentFromFile(new PetsciiThread.DownloadData("game.d64.gz", bomb)));
   }
 
   @Test
-  @DisplayName("if count is 1 then a DownloadData must be returned")
-  void whenCountIsOne_ThenANonNullInstanceMustBeReturned() throws IOException {
-    String fileName = "test";
-    PetsciiThread.DownloadData downloadData = DiskUtilities.getDownloadData(new byte[1], 1, fileName);
-    assertNotNull(downloadData);
-    assertEquals(fileName, downloadData.getFilename());
-    assertThat(ArrayUtils.toObject(downloadData.getContent()), emptyArray());
-  }
-}
\ No newline at end of file
+  @DisplayName("a zip entry inflating beyond the limit must be refused")
+  void whenZipEntryInflatesTooMuch_ThenAnExceptionMustBeThrown() throws Exception {
+    byte[] bomb = zip("game.d64", new byte[Utility.MAX_UNCOMPRESSED_SIZE + 1]);
+    assertThrows(IOException.class,
+        () -> DiskUtilities.getPrgContentFromFile(new PetsciiThread.DownloadData("game.zip", bomb)));
+  }
+
+  /** A program with a load address and incompressible contents */
+  static byte[] program(int size) {
+    byte[] prg = new byte[size];
+    new Random(size).nextBytes(prg);
+    prg[0] = 0x01;
+    prg[1] = 0x08;
+    return prg;
+  }
+
+  /** A blank D64 image holding a single program */
+  static byte[] d64With(byte[] prg) throws Exception {
+    Path dir = Files.createTempDirectory("d64");
+    String filename = dir.resolve("test.d64").toString();
+    try {
+      assertTrue(new D64().saveNewImage(filename, "TEST", "01"));
+      DiskImage image = DiskImage.getDiskImage(filename);
+      image.readBAM();
+      image.readDirectory();
+      assertTrue(image.saveFile(new CbmFile("GAME", CbmFile.TYPE_PRG, 0, 0, 0, prg.length), false, prg));
+      assertTrue(image.writeImage(filename));
+      return Files.readAllBytes(dir.resolve("test.d64"));
+    } finally {
+      Files.deleteIfExists(dir.resolve("test.d64"));
+      Files.delete(dir);
+    }
+  }
+
+  static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (GZIPOutputStream gos = new GZIPOutputStream(baos)) {
+      gos.write(data);
+    }
+    return baos.toByteArray();
+  }
+
+  /** A zip of alternating entry names and contents */
+  static byte[] zip(Object... entries) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+      for (int i = 0; i < entries.length; i += 2) {
+        zos.putNextEntry(new ZipEntry((String) entries[i]));
+        zos.write((byte[]) entries[i + 1]);
+        zos.closeEntry();
+      }
+    }
+    return baos.toByteArray();
+  }
+}
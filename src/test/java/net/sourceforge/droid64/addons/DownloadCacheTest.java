@@ -0,0 +1,185 @@
+package net.sourceforge.droid64.addons;
+
+import com.sun.net.httpserver.HttpServer;
+import eu.sblendorio.bbs.core.SharedHttpClient;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadCacheTest {
+
+  private static final long TTL = 60000;
+  private static final long MAX_BYTES = 1024 * 1024;
+
+  private HttpServer server;
+  private File dir;
+  private final byte[] prg = DiskUtilitiesTest.program(5000);
+
+  @BeforeEach
+  void open() throws Exception {
+    dir = Files.createTempDirectory("bbs-downloads").toFile();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/", exchange -> {
+      byte[] body = exchange.getRequestURI().getPath().endsWith(".prg") ? prg : new byte[100];
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    });
+    server.start();
+  }
+
+  @AfterEach
+  void close() throws Exception {
+    server.stop(0);
+    FileUtils.deleteDirectory(dir);
+  }
+
+  private String url(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+
+  @Test
+  @DisplayName("a program must be downloaded and extracted once")
+  void whenUrlIsRequestedTwice_ThenItMustBeDownloadedOnce() throws Exception {
+    DownloadCache sut = new DownloadCache(dir, TTL, MAX_BYTES, MAX_BYTES, MAX_BYTES, true);
+    assertArrayEquals(prg, sut.getPrgContent(url("/demo/game.prg")));
+    assertArrayEquals(prg, sut.getPrgContent(url("/demo/game.prg")));
+    assertEquals(1, sut.getDownloads());
+    assertEquals(1, sut.getExtractions());
+    assertEquals(1, sut.getHits());
+    sut.flush();
+  }
+
+  @Test
+  @DisplayName("the same file at two URLs must be extracted once")
+  void whenTwoUrlsServeTheSameFile_ThenItMustBeExtractedOnce() throws Exception {
+    DownloadCache sut = new DownloadCache(dir, TTL, MAX_BYTES, MAX_BYTES, MAX_BYTES, true);
+    assertArrayEquals(prg, sut.getPrgContent(url("/mirror1/game.prg")));
+    assertArrayEquals(prg, sut.getPrgContent(url("/mirror2/game.prg")));
+    assertEquals(2, sut.getDownloads());
+    assertEquals(1, sut.getExtractions());
+    sut.flush();
+  }
+
+  @Test
+  @DisplayName("a file with no program must be remembered as such")
+  void whenFileHasNoProgram_ThenNullMustBeCached() throws Exception {
+    DownloadCache sut = new DownloadCache(dir, TTL, MAX_BYTES, MAX_BYTES, MAX_BYTES, true);
+    assertNull(sut.getPrgContent(url("/readme.txt")));
+    assertNull(sut.getPrgContent(url("/readme.txt")));
+    assertEquals(1, sut.getExtractions());
+    assertEquals(100, sut.download(url("/readme.txt")).getContent().length);
+    sut.flush();
+  }
+
+  @Test
+  @DisplayName("a file only downloaded must not be extracted nor kept by the HTTP client")
+  void whenFileIsOnlyDownloaded_ThenItMustNotBeExtracted() throws Exception {
+    DownloadCache sut = new DownloadCache(dir, TTL, MAX_BYTES, MAX_BYTES, MAX_BYTES, false);
+    long httpCacheBytes = SharedHttpClient.getInstance().getCacheBytes();
+    assertEquals(100, sut.download(url("/broken.zip")).getContent().length);
+    assertEquals(100, sut.download(url("/broken.zip")).getContent().length);
+    assertEquals(1, sut.getDownloads());
+    assertEquals(0, sut.getExtractions());
+    assertEquals(httpCacheBytes, SharedHttpClient.getInstance().getCacheBytes());
+
+  }
+
+  @Test
+  @DisplayName("a download on disk must be extracted when its program is first asked for")
+  void whenDownloadOnDiskWasNeverExtracted_ThenItMustBeExtracted() throws Exception {
+    DownloadCache first = new DownloadCache(dir, TTL, MAX_BYTES, MAX_BYTES, MAX_BYTES, false);
+    first.download(url("/demo/game.prg"));
+
+    DownloadCache sut = new DownloadCache(dir, TTL, MAX_BYTES, MAX_BYTES, MAX_BYTES, false);
+    assertArrayEquals(prg, sut.getPrgContent(url("/demo/game.prg")));
+    assertArrayEquals(prg, sut.getPrgContent(url("/demo/game.prg")));
+    assertEquals(0, sut.getDownloads());
+    assertEquals(1, sut.getExtractions());
+  }
+
+  @Test
+  @DisplayName("a restarted cache must serve the downloads on disk")
+  void whenCacheIsRestarted_ThenDownloadsMustComeFromDisk() throws Exception {
+    DownloadCache first = new DownloadCache(dir, TTL, MAX_BYTES, MAX_BYTES, MAX_BYTES, true);
+    first.getPrgContent(url("/demo/game.prg"));
+    first.flush();
+
+    DownloadCache sut = new DownloadCache(dir, TTL, MAX_BYTES, MAX_BYTES, MAX_BYTES, true);
+    assertArrayEquals(prg, sut.getPrgContent(url("/demo/game.prg")));
+    assertEquals("game.prg", sut.download(url("/demo/game.prg")).getFilename());
+    assertEquals(0, sut.getDownloads());
+    assertEquals(0, sut.getExtractions());
+    assertEquals(1, sut.getDiskHits());
+    sut.flush();
+  }
+
+  @Test
+  @DisplayName("the least recently used downloads must be deleted when the disk is full")
+  void whenDiskIsFull_ThenEldestDownloadMustBeDeleted() throws Exception {
+    DownloadCache first = new DownloadCache(dir, TTL, MAX_BYTES, 3 * prg.length, MAX_BYTES, false);
+    first.getPrgContent(url("/old.prg"));
+    first.getPrgContent(url("/new.prg"));
+    first.getPrgContent(url("/readme.txt"));
+    assertEquals(2, new File(dir, "data").list().length);
+
+    DownloadCache sut = new DownloadCache(dir, TTL, MAX_BYTES, 3 * prg.length, MAX_BYTES, false);
+    sut.getPrgContent(url("/new.prg"));
+    sut.getPrgContent(url("/readme.txt"));
+    assertEquals(0, sut.getDownloads());
+    sut.getPrgContent(url("/old.prg"));
+    assertEquals(1, sut.getDownloads());
+  }
+
+  @Test
+  @DisplayName("the URLs of the downloads deleted from disk must be deleted too")
+  void whenDownloadIsDeleted_ThenItsUrlsMustBeDeleted() throws Exception {
+    DownloadCache sut = new DownloadCache(dir, TTL, MAX_BYTES, 3 * prg.length, MAX_BYTES, false);
+    sut.getPrgContent(url("/old.prg"));
+    sut.getPrgContent(url("/mirror/old.prg"));
+    sut.getPrgContent(url("/new.prg"));
+    assertEquals(1, new File(dir, "data").list().length);
+    assertEquals(1, new File(dir, "urls").list().length);
+    assertTrue(sut.stats().contains("urls=1,"));
+  }
+
+  @Test
+  @DisplayName("the least recently used URLs must be forgotten when there are too many")
+  void whenThereAreTooManyUrls_ThenEldestUrlMustBeDeleted() throws Exception {
+    DownloadCache sut = new DownloadCache(dir, TTL, MAX_BYTES, MAX_BYTES, MAX_BYTES, 2, false);
+    sut.getPrgContent(url("/first.prg"));
+    sut.getPrgContent(url("/second.prg"));
+    sut.getPrgContent(url("/first.prg"));
+    sut.getPrgContent(url("/third.prg"));
+    assertEquals(2, new File(dir, "urls").list().length);
+    assertEquals(3, sut.getDownloads());
+
+    sut.getPrgContent(url("/first.prg"));
+    assertEquals(3, sut.getDownloads());
+    sut.getPrgContent(url("/second.prg"));
+    assertEquals(4, sut.getDownloads());
+  }
+
+  @Test
+  @DisplayName("an expired URL must be downloaded again but not extracted again")
+  void whenUrlIsExpired_ThenItMustBeDownloadedAgain() throws Exception {
+    DownloadCache sut = new DownloadCache(dir, 0, MAX_BYTES, MAX_BYTES, MAX_BYTES, false);
+    sut.getPrgContent(url("/demo/game.prg"));
+    assertArrayEquals(prg, sut.getPrgContent(url("/demo/game.prg")));
+    assertEquals(2, sut.getDownloads());
+    assertEquals(1, sut.getExtractions());
+  }
+}
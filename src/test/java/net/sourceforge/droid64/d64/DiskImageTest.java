@@ -0,0 +1,100 @@
+package net.sourceforge.droid64.d64;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskImageTest {
+
+  private final byte[] prg = new byte[3000];
+  private byte[] image;
+
+  @BeforeEach
+  void createImage() throws Exception {
+    new Random(1).nextBytes(prg);
+    Path dir = Files.createTempDirectory("d64");
+    Path file = dir.resolve("test.d64");
+    try {
+      assertTrue(new D64().saveNewImage(file.toString(), "TEST", "01"));
+      DiskImage blank = DiskImage.getDiskImage(file.toString());
+      blank.readBAM();
+      blank.readDirectory();
+      assertTrue(blank.saveFile(new CbmFile("GAME", CbmFile.TYPE_PRG, 0, 0, 0, prg.length), false, prg));
+      assertTrue(blank.writeImage(file.toString()));
+      image = Files.readAllBytes(file);
+    } finally {
+      Files.deleteIfExists(file);
+      Files.delete(dir);
+    }
+  }
+
+  private DiskImage open() {
+    DiskImage result = new D64(image);
+    result.readBAM();
+    result.readDirectory();
+    return result;
+  }
+
+  @Test
+  @DisplayName("the data of a file must be read following its sector chain")
+  void whenChainIsValid_ThenFileDataMustBeRead() throws Exception {
+    DiskImage sut = open();
+    assertArrayEquals(prg, sut.getFileData(0));
+    assertFalse(sut.getFeedbackMessage().contains("Tracks / Sectors"));
+  }
+
+  @Test
+  @DisplayName("the sector chain must be logged only when asked")
+  void whenTracingIsOn_ThenChainMustBeLogged() throws Exception {
+    DiskImage sut = open();
+    sut.setTraceSectorChains(true);
+    sut.getFileData(0);
+    assertTrue(sut.getFeedbackMessage().contains("Tracks / Sectors"));
+  }
+
+  @Test
+  @DisplayName("a sector chain looping back must be reported")
+  void whenChainLoops_ThenAnExceptionMustBeThrown() throws Exception {
+    DiskImage sut = open();
+    CbmFile file = sut.getCbmFile(0);
+    int first = sut.getSectorOffset(file.getTrack(), file.getSector());
+    int second = sut.getSectorOffset(image[first] & 0xff, image[first + 1] & 0xff);
+    image[second] = (byte) file.getTrack();
+    image[second + 1] = (byte) file.getSector();
+    CbmException e = assertThrows(CbmException.class, () -> sut.getFileData(0));
+    assertTrue(e.getMessage().contains("linked twice"));
+  }
+
+  @Test
+  @DisplayName("a sector chain leaving the image must be reported")
+  void whenChainLeavesImage_ThenAnExceptionMustBeThrown() throws Exception {
+    DiskImage sut = open();
+    CbmFile file = sut.getCbmFile(0);
+    int first = sut.getSectorOffset(file.getTrack(), file.getSector());
+    image[first + 1] = (byte) 30;
+    assertThrows(CbmException.class, () -> sut.getFileData(0));
+  }
+
+  @Test
+  @DisplayName("an image read from a file must have the contents of the file")
+  void whenImageIsRead_ThenItMustBeComplete() throws Exception {
+    Path dir = Files.createTempDirectory("d64");
+    Path file = dir.resolve("test.d64");
+    try {
+      Files.write(file, image);
+      DiskImage sut = DiskImage.getDiskImage(file.toString());
+      sut.readBAM();
+      sut.readDirectory();
+      assertArrayEquals(prg, sut.getFileData(0));
+    } finally {
+      Files.deleteIfExists(file);
+      Files.delete(dir);
+    }
+  }
+}
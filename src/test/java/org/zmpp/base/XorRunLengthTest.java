@@ -0,0 +1,48 @@
+package org.zmpp.base;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XorRunLengthTest {
+
+  @Test
+  @DisplayName("applying the encoded differences to the reference must give the bytes back")
+  void whenDeltaIsApplied_ThenMemoryMustBeRestored() {
+    byte[] reference = new byte[5000];
+    new Random(1).nextBytes(reference);
+    byte[] memory = Arrays.copyOf(reference, reference.length);
+    memory[0] ^= 1;
+    memory[700] ^= 2;
+    memory[701] ^= 3;
+    memory[4000] ^= 4;
+
+    byte[] delta = XorRunLength.encode(memory, reference, memory.length);
+    assertEquals(36, delta.length);
+    byte[] restored = Arrays.copyOf(reference, reference.length);
+    XorRunLength.apply(delta, delta.length, restored);
+    assertArrayEquals(memory, restored);
+    assertEquals(4001, XorRunLength.decodedLength(delta, delta.length));
+  }
+
+  @Test
+  @DisplayName("identical arrays must have an empty encoding")
+  void whenArraysAreEqual_ThenDeltaMustBeEmpty() {
+    byte[] memory = new byte[1000];
+    assertEquals(0, XorRunLength.encode(memory, memory.clone(), memory.length).length);
+  }
+
+  @Test
+  @DisplayName("a zero ending the data must count as a run of one")
+  void whenDeltaEndsWithZero_ThenItMustCountAsOneByte() {
+    byte[] delta = {5, 0, 2, 7, 0};
+    byte[] memory = new byte[6];
+    XorRunLength.apply(delta, delta.length, memory);
+    assertArrayEquals(new byte[] {5, 0, 0, 0, 7, 0}, memory);
+    assertEquals(6, XorRunLength.decodedLength(delta, delta.length));
+  }
+}
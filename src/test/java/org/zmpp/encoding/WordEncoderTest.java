@@ -0,0 +1,61 @@
+package org.zmpp.encoding;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.zmpp.base.DefaultMemoryAccess;
+import org.zmpp.base.MemoryAccess;
+import org.zmpp.vm.Dictionary;
+import org.zmpp.vm.GameData;
+import org.zmpp.vm.GameDataImpl;
+import org.zmpp.vm.StoryTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WordEncoderTest {
+
+  private static GameData game;
+
+  @BeforeAll
+  static void loadStory() throws IOException {
+    try (InputStream in = WordEncoderTest.class.getClassLoader().getResourceAsStream("zmpp/zork1.z3")) {
+      game = new GameDataImpl(new StoryTemplate(IOUtils.toByteArray(in)), null);
+    }
+  }
+
+  @Test
+  @DisplayName("every word of the dictionary must be encoded like its entry")
+  void whenDictionaryWordsAreLookedUp_ThenTheirEntriesMustBeFound() {
+    Dictionary dictionary = game.getDictionary();
+    for (int i = 0; i < dictionary.getNumberOfEntries(); i++) {
+      int address = dictionary.getEntryAddress(i);
+      ZsciiString word = game.getZCharDecoder().decode2Zscii(game.getMemoryAccess(), address, 4);
+      assertEquals(address, dictionary.lookup(word), word.toString());
+    }
+  }
+
+  @Test
+  @DisplayName("words must be truncated to the Z characters of an entry")
+  void whenWordIsLonger_ThenItMustBeTruncated() {
+    Dictionary dictionary = game.getDictionary();
+    int lantern = dictionary.lookup(new ZsciiString("lantern"));
+    assertNotEquals(0, lantern);
+    assertEquals(lantern, dictionary.lookup(new ZsciiString("lanternxyz")));
+    assertEquals(0, dictionary.lookup(new ZsciiString("lamp-x")));
+    assertEquals(0, dictionary.lookup(new ZsciiString("Lantern")));
+  }
+
+  @Test
+  @DisplayName("a word must be looked up in place in memory")
+  void whenWordIsInMemory_ThenItMustBeLookedUpInPlace() {
+    MemoryAccess buffer = new DefaultMemoryAccess("open the mailbox".getBytes());
+    Dictionary dictionary = game.getDictionary();
+    assertEquals(dictionary.lookup(new ZsciiString("mailbox")), dictionary.lookup(buffer, 9, 7));
+    assertEquals(dictionary.lookup(new ZsciiString("the")), dictionary.lookup(buffer, 5, 3));
+    assertEquals(0, dictionary.lookup(buffer, 0, 3));
+  }
+}
@@ -0,0 +1,55 @@
+package org.zmpp.encoding;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZsciiStringTest {
+
+  /* An accent table with a single entry, ZSCII 155 */
+  private static ZsciiEncoding encodingWith(char accent) {
+    return new ZsciiEncoding(new AccentTable() {
+      public int getLength() { return 1; }
+      public short getAccent(int index) { return (short) accent; }
+      public int getIndexOfLowerCase(int index) { return index; }
+    });
+  }
+
+  @Test
+  @DisplayName("strings of different stories must keep their own encoding")
+  void whenStoriesHaveDifferentAccentTables_ThenStringsMustKeepTheirOwn() {
+    ZsciiString first = new ZsciiString(new short[] { 'a', 155 }, encodingWith('é'));
+    ZsciiString second = new ZsciiString(new short[] { 'a', 155 }, encodingWith('ñ'));
+    assertEquals("aé", first.toString());
+    assertEquals("añ", second.toString());
+    assertEquals(first, second);
+    assertEquals("é", first.substring(1, 2).toString());
+  }
+
+  @Test
+  @DisplayName("a string created from unicode must use the given encoding")
+  void whenStringIsCreatedFromUnicode_ThenItMustUseTheGivenEncoding() {
+    ZsciiEncoding encoding = encodingWith('ñ');
+    ZsciiString str = new ZsciiString("añ", encoding);
+    assertEquals(155, str.charAt(1));
+    assertSame(encoding, str.getEncoding());
+    assertSame(ZsciiString.DEFAULT_ENCODING, new ZsciiString("abc").getEncoding());
+  }
+
+  @Test
+  @DisplayName("builders and tokenizers must propagate the encoding")
+  void whenStringIsBuiltOrTokenized_ThenEncodingMustBePropagated() {
+    ZsciiEncoding encoding = encodingWith('ñ');
+    ZsciiStringBuilder builder = new ZsciiStringBuilder(encoding);
+    builder.append((short) 155);
+    builder.append((short) ' ');
+    builder.append((short) 'x');
+    assertEquals("ñ x", builder.toString());
+    ZsciiStringTokenizer tokenizer = new ZsciiStringTokenizer(builder.toZsciiString(), new ZsciiString(" "));
+    assertSame(encoding, tokenizer.nextToken().getEncoding());
+    assertSame(encoding, tokenizer.nextToken().getEncoding());
+    assertEquals("x", tokenizer.nextToken().toString());
+    assertFalse(tokenizer.hasMoreTokens());
+  }
+}
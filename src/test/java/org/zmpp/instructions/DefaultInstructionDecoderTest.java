@@ -0,0 +1,96 @@
+package org.zmpp.instructions;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.zmpp.base.DefaultMemoryAccess;
+import org.zmpp.base.MemoryAccess;
+import org.zmpp.vm.Cpu;
+import org.zmpp.vm.DefaultStoryFileHeader;
+import org.zmpp.vm.GameData;
+import org.zmpp.vm.Instruction;
+import org.zmpp.vm.Machine;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DefaultInstructionDecoderTest {
+
+  private static final int STATICS_ADDRESS = 0x200;
+  private static final int HIGH_ADDRESS = 0x300;
+
+  private MemoryAccess memaccess;
+  private Cpu cpu;
+  private DefaultInstructionDecoder sut;
+
+  @BeforeEach
+  void setUp() {
+    byte[] story = new byte[0x400];
+    memaccess = new DefaultMemoryAccess(story);
+    memaccess.writeUnsignedByte(0x00, (short) 3);
+    memaccess.writeUnsignedShort(0x0e, STATICS_ADDRESS);
+    memaccess.writeUnsignedShort(0x1a, story.length / 2);
+
+    GameData gamedata = mock(GameData.class);
+    when(gamedata.getStoryFileHeader()).thenReturn(new DefaultStoryFileHeader(memaccess));
+    cpu = mock(Cpu.class);
+    Machine machine = mock(Machine.class);
+    when(machine.getGameData()).thenReturn(gamedata);
+    when(machine.getCpu()).thenReturn(cpu);
+
+    sut = new DefaultInstructionDecoder();
+    sut.initialize(machine, memaccess);
+  }
+
+  /* add #a, #b -> G00 */
+  private void writeAdd(int address, int a, int b) {
+    memaccess.writeUnsignedByte(address, (short) 0x14);
+    memaccess.writeUnsignedByte(address + 1, (short) a);
+    memaccess.writeUnsignedByte(address + 2, (short) b);
+    memaccess.writeUnsignedByte(address + 3, (short) 0x10);
+  }
+
+  @Test
+  @DisplayName("an instruction must be decoded once and then taken from the cache")
+  void whenInstructionIsDecodedTwice_ThenCachedInstanceMustBeReturned() {
+    writeAdd(HIGH_ADDRESS, 2, 3);
+    AbstractInstruction first = (AbstractInstruction) sut.decodeInstruction(HIGH_ADDRESS);
+    assertSame(first, sut.decodeInstruction(HIGH_ADDRESS));
+    assertEquals(4, first.getLength());
+    assertEquals(2, first.getNumOperands());
+    assertEquals(2, first.getValue(0));
+    assertEquals(3, first.getValue(1));
+    assertEquals(0x10, first.getStoreVariable());
+  }
+
+  @Test
+  @DisplayName("an instruction in dynamic memory must be decoded again when it is overwritten")
+  void whenDynamicMemoryCodeIsOverwritten_ThenItMustBeDecodedAgain() {
+    writeAdd(0x100, 2, 3);
+    Instruction first = sut.decodeInstruction(0x100);
+    assertSame(first, sut.decodeInstruction(0x100));
+    memaccess.writeUnsignedByte(0x101, (short) 5);
+    AbstractInstruction second = (AbstractInstruction) sut.decodeInstruction(0x100);
+    assertNotSame(first, second);
+    assertEquals(5, second.getValue(0));
+  }
+
+  @Test
+  @DisplayName("the VAR form of a 2OP instruction must keep its operands")
+  void whenTwoOperandInstructionHasVarForm_ThenOperandsMustBeKept() {
+    when(cpu.getVariable(0x11)).thenReturn((short) 42);
+    memaccess.writeUnsignedByte(HIGH_ADDRESS, (short) 0xd4);
+    memaccess.writeUnsignedByte(HIGH_ADDRESS + 1, (short) 0x6f);
+    memaccess.writeUnsignedByte(HIGH_ADDRESS + 2, (short) 7);
+    memaccess.writeUnsignedByte(HIGH_ADDRESS + 3, (short) 0x11);
+    memaccess.writeUnsignedByte(HIGH_ADDRESS + 4, (short) 0);
+    AbstractInstruction instruction = (AbstractInstruction) sut.decodeInstruction(HIGH_ADDRESS);
+    assertEquals(AbstractInstruction.OperandCount.VAR, instruction.getOperandCount());
+    assertEquals(5, instruction.getLength());
+    assertEquals(2, instruction.getNumOperands());
+    assertEquals(7, instruction.getValue(0));
+    assertEquals(Operand.TYPENUM_VARIABLE, instruction.getOperandTypeNum(1));
+    assertEquals(42, instruction.getValue(1));
+    assertThrows(IndexOutOfBoundsException.class, () -> instruction.getValue(2));
+  }
+}
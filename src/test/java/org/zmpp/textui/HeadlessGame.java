@@ -0,0 +1,297 @@
+package org.zmpp.textui;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.zmpp.base.Hibernatable;
+import org.zmpp.base.MemoryReadAccess;
+
+import org.zmpp.encoding.ZsciiEncoding;
+import org.zmpp.iff.FormChunk;
+import org.zmpp.iff.WritableFormChunk;
+import org.zmpp.io.IOSystem;
+import org.zmpp.io.InputStream;
+import org.zmpp.io.OutputStream;
+import org.zmpp.vm.GameData;
+import org.zmpp.vm.GameDataImpl;
+import org.zmpp.vm.Machine;
+import org.zmpp.vm.MachineFactory;
+import org.zmpp.vm.SaveGameDataStore;
+import org.zmpp.vm.ScreenModel;
+import org.zmpp.vm.StatusLine;
+import org.zmpp.vm.StoryTemplate;
+import org.zmpp.vm.TextCursor;
+
+/**
+ * Runs a story without a terminal: the commands of a script are typed in one
+ * after the other and the text printed in the main window is recorded,
+ * input echo included. The random generator is seeded, so that the same
+ * script always produces the same transcript.
+ */
+public class HeadlessGame extends MachineFactory<HeadlessGame>
+    implements ScreenModel, StatusLine, IOSystem, InputStream, OutputStream, SaveGameDataStore {
+
+  public static class Replay {
+    public final String transcript;
+    public final long instructions;
+    public final long nanos;
+
+    Replay(String transcript, long instructions, long nanos) {
+      this.transcript = transcript;
+      this.instructions = instructions;
+      this.nanos = nanos;
+    }
+  }
+
+  /* Thrown by the keyboard when the script is over */
+  private static class EndOfScript extends RuntimeException {
+    EndOfScript() {
+      super("End of script", null, false, false);
+    }
+  }
+
+  private final StoryTemplate story;
+  private final List<String> commands;
+  private final StringBuilder transcript = new StringBuilder();
+  private int command = 0;
+  private int position = 0;
+  private boolean selected = false;
+  private boolean hibernateEachTurn = false;
+  private boolean privateCopy = false;
+  private Machine machine;
+
+  private HeadlessGame(StoryTemplate story, List<String> commands) {
+    this.story = story;
+    this.commands = commands;
+  }
+
+  /**
+   * Plays the commands until the script is over or the game quits.
+   */
+  public static Replay replay(StoryTemplate story, List<String> commands, short randomSeed) throws Exception {
+    return replay(story, commands, randomSeed, false);
+  }
+
+  /**
+   * Plays the commands, hibernating the machine before each command if
+   * hibernateEachTurn is set, as the BBS does with idle players.
+   */
+  public static Replay replay(StoryTemplate story, List<String> commands, short randomSeed,
+                              boolean hibernateEachTurn) throws Exception {
+    final HeadlessGame game = new HeadlessGame(story, commands);
+    game.hibernateEachTurn = hibernateEachTurn;
+    return game.play(randomSeed);
+  }
+
+  /**
+   * Plays the commands on a private copy of the story, as machines did
+   * before story templates were shared.
+   */
+  public static Replay replayPrivateCopy(StoryTemplate story, List<String> commands, short randomSeed)
+      throws Exception {
+    final HeadlessGame game = new HeadlessGame(story, commands);
+    game.privateCopy = true;
+    return game.play(randomSeed);
+  }
+
+  private Replay play(short randomSeed) throws Exception {
+    final Machine machine = buildMachine();
+    this.machine = machine;
+    machine.random((short) -randomSeed);
+    long instructions = 0;
+    final long start = System.nanoTime();
+    machine.start();
+    try {
+      while (machine.getCpu().isRunning()) {
+        machine.getCpu().nextStep().execute();
+        ++instructions;
+      }
+    } catch (EndOfScript e) {
+      // all the commands were typed
+    }
+    return new Replay(transcript.toString(), instructions, System.nanoTime() - start);
+  }
+
+  /** @return one of the stories shipped in the zmpp resources, e.g. "zork1" */
+  public static StoryTemplate story(String name) throws IOException {
+    try (java.io.InputStream in = HeadlessGame.class.getResourceAsStream("/zmpp/" + name + ".z3")) {
+      return new StoryTemplate(IOUtils.toByteArray(in));
+    }
+  }
+
+  /** @return the recorded commands for a story, one per line */
+  public static List<String> script(String name) throws IOException {
+    try (java.io.InputStream in = HeadlessGame.class.getResourceAsStream(name + ".txt")) {
+      return IOUtils.readLines(in, UTF_8);
+    }
+  }
+
+  // MachineFactory
+
+  @Override
+  protected GameData createGameData() {
+    return privateCopy ? new GameDataImpl(readStoryData(), null) : new GameDataImpl(story, null);
+  }
+
+  @Override
+  protected HeadlessGame initUI(Machine machine) { return this; }
+
+  @Override
+  public HeadlessGame getUI() { return this; }
+
+  /** A private copy of the story, for machines not sharing the template */
+  @Override
+  protected byte[] readStoryData() {
+    final MemoryReadAccess original = story.getOriginalStory();
+    final byte[] data = new byte[story.getSize()];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = original.readByte(i);
+    }
+    return data;
+  }
+
+  @Override
+  protected void reportInvalidStory() { throw new IllegalArgumentException("Invalid story"); }
+
+  @Override
+  protected IOSystem getIOSystem() { return this; }
+
+  @Override
+  protected InputStream getKeyboardInputStream() { return this; }
+
+  @Override
+  protected StatusLine getStatusLine() { return this; }
+
+  @Override
+  protected ScreenModel getScreenModel() { return this; }
+
+  @Override
+  protected SaveGameDataStore getSaveGameDataStore() { return this; }
+
+  // InputStream: the keyboard
+
+  @Override
+  public short getZsciiChar(boolean flushBeforeGet) {
+    if (command >= commands.size()) throw new EndOfScript();
+    final String line = commands.get(command);
+    if (position == 0 && hibernateEachTurn) {
+      ((Hibernatable) machine).hibernate();
+      ((Hibernatable) machine).wakeUp();
+    }
+    if (position < line.length()) return (short) line.charAt(position++);
+    ++command;
+    position = 0;
+    return ZsciiEncoding.NEWLINE;
+  }
+
+  @Override
+  public void cancelInput() { }
+
+  @Override
+  public void close() { }
+
+  // OutputStream: the main window
+
+  @Override
+  public void print(short zchar, boolean isInput) {
+    transcript.append(zchar == ZsciiEncoding.NEWLINE ? '\n' : (char) zchar);
+  }
+
+  @Override
+  public void deletePrevious(short zchar) {
+    if (transcript.length() > 0) transcript.setLength(transcript.length() - 1);
+  }
+
+  @Override
+  public void flush() { }
+
+  @Override
+  public void select(boolean flag) { selected = flag; }
+
+  @Override
+  public boolean isSelected() { return selected; }
+
+  // ScreenModel
+
+  @Override
+  public void reset() { }
+
+  @Override
+  public void splitWindow(int linesUpperWindow) { }
+
+  @Override
+  public void setWindow(int window) { }
+
+  @Override
+  public void setTextStyle(int style) { }
+
+  @Override
+  public void setBufferMode(boolean flag) { }
+
+  @Override
+  public void eraseLine(int value) { }
+
+  @Override
+  public void eraseWindow(int window) { }
+
+  @Override
+  public void setTextCursor(int line, int column, int window) { }
+
+  @Override
+  public TextCursor getTextCursor() { return null; }
+
+  @Override
+  public void setPaging(boolean flag) { }
+
+  @Override
+  public int setFont(int fontnumber) { return FONT_NORMAL; }
+
+  @Override
+  public void setBackgroundColor(int colornumber, int window) { }
+
+  @Override
+  public void setForegroundColor(int colornumber, int window) { }
+
+  @Override
+  public void redraw() { }
+
+  @Override
+  public void displayCursor(boolean flag) { }
+
+  @Override
+  public OutputStream getOutputStream() { return this; }
+
+  @Override
+  public void waitInitialized() { }
+
+  @Override
+  public void resetPagers() { }
+
+  // StatusLine
+
+  @Override
+  public void updateStatusScore(String objectName, int score, int steps) { }
+
+  @Override
+  public void updateStatusTime(String objectName, int hours, int minutes) { }
+
+  // IOSystem and SaveGameDataStore: no transcript, no files
+
+  @Override
+  public Writer getTranscriptWriter() { return null; }
+
+  @Override
+  public Reader getInputStreamReader() { return null; }
+
+  @Override
+  public boolean saveFormChunk(WritableFormChunk formchunk) { return false; }
+
+  @Override
+  public FormChunk retrieveFormChunk() { return null; }
+
+}
@@ -0,0 +1,70 @@
+package org.zmpp.textui;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.zmpp.vm.StoryTemplate;
+
+import java.io.File;
+import java.io.InputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Replays the recorded scripts and compares the transcripts with the golden
+ * files. After an intended change of the output, regenerate them with:
+ * mvn test -Dtest=HeadlessGameTest -Dzmpp.golden.update=true
+ */
+class HeadlessGameTest {
+
+  private static final short SEED = 1977;
+
+  @ParameterizedTest
+  @ValueSource(strings = {"zork1", "zork2", "zork3", "minizork"})
+  @DisplayName("the transcript of a recorded script must match its golden file")
+  void whenScriptIsReplayed_ThenTranscriptMustMatchGoldenFile(String name) throws Exception {
+    HeadlessGame.Replay replay = HeadlessGame.replay(HeadlessGame.story(name), HeadlessGame.script(name), SEED);
+    assertTrue(replay.instructions > 0);
+    if (Boolean.getBoolean("zmpp.golden.update")) {
+      FileUtils.write(new File("src/test/resources/org/zmpp/textui/" + name + ".golden"), replay.transcript, UTF_8);
+    }
+    try (InputStream in = HeadlessGameTest.class.getResourceAsStream(name + ".golden")) {
+      assertNotNull(in, "missing golden file for " + name);
+      assertEquals(IOUtils.toString(in, UTF_8), replay.transcript);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"zork1", "minizork"})
+  @DisplayName("a game hibernated at every prompt must play as if it never was")
+  void whenGameHibernatesEachTurn_ThenTranscriptMustMatchGoldenFile(String name) throws Exception {
+    HeadlessGame.Replay replay = HeadlessGame.replay(HeadlessGame.story(name), HeadlessGame.script(name), SEED, true);
+    try (InputStream in = HeadlessGameTest.class.getResourceAsStream(name + ".golden")) {
+      assertEquals(IOUtils.toString(in, UTF_8), replay.transcript);
+    }
+  }
+
+  @Test
+  @DisplayName("a game played on a private copy of the story must match its golden file")
+  void whenStoryIsCopied_ThenTranscriptMustMatchGoldenFile() throws Exception {
+    HeadlessGame.Replay replay = HeadlessGame.replayPrivateCopy(HeadlessGame.story("minizork"),
+        HeadlessGame.script("minizork"), SEED);
+    try (InputStream in = HeadlessGameTest.class.getResourceAsStream("minizork.golden")) {
+      assertEquals(IOUtils.toString(in, UTF_8), replay.transcript);
+    }
+  }
+
+  @Test
+  @DisplayName("games replayed from the same template must not affect each other")
+  void whenTemplateIsReplayedTwice_ThenTranscriptsMustBeEqual() throws Exception {
+    StoryTemplate story = HeadlessGame.story("minizork");
+    HeadlessGame.Replay first = HeadlessGame.replay(story, HeadlessGame.script("minizork"), SEED);
+    HeadlessGame.Replay second = HeadlessGame.replay(story, HeadlessGame.script("minizork"), SEED);
+    assertEquals(first.transcript, second.transcript);
+    assertEquals(first.instructions, second.instructions);
+  }
+}
@@ -0,0 +1,75 @@
+package org.zmpp.textui;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zmpp.vm.StoryTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole recorded game played headless, from a shared template: "replay"
+ * measures the wall time of a game, "throughput" the Z-machine instructions
+ * per second (its "instructions" counter). The gc profiler adds the
+ * allocations per game.
+ * Run with: mvn -Pbenchmark test -Dbenchmark=ZMachineBenchmark -Dbenchmark.options="-prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZMachineBenchmark {
+
+  private static final short SEED = 1977;
+
+  @Param({"zork1", "zork2", "zork3", "minizork"})
+  public String story;
+
+  private StoryTemplate template;
+  private List<String> commands;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public long instructions;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      instructions = 0;
+    }
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    template = HeadlessGame.story(story);
+    commands = HeadlessGame.script(story);
+  }
+
+  @Benchmark
+  public String replay() throws Exception {
+    return HeadlessGame.replay(template, commands, SEED).transcript;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public String throughput(Counters counters) throws Exception {
+    final HeadlessGame.Replay replay = HeadlessGame.replay(template, commands, SEED);
+    counters.instructions += replay.instructions;
+    return replay.transcript;
+  }
+}
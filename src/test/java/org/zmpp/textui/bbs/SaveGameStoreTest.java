@@ -0,0 +1,74 @@
+package org.zmpp.textui.bbs;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SaveGameStoreTest {
+
+  private static final int CHECKSUM = 0xa129;
+
+  private File dir;
+
+  @BeforeEach
+  void open() throws Exception {
+    dir = Files.createTempDirectory("zmpp-saves").toFile();
+  }
+
+  @AfterEach
+  void close() throws Exception {
+    FileUtils.deleteDirectory(dir);
+  }
+
+  @Test
+  @DisplayName("a save must be listed and loaded at once, before it is on disk")
+  void whenGameIsSaved_ThenItMustBeAvailableBeforeTheWrite() throws Exception {
+    SaveGameStore sut = new SaveGameStore(dir, true);
+    byte[] data = {1, 2, 3};
+    sut.save("Alice", CHECKSUM, "House ", data);
+
+    assertEquals(Arrays.asList("house"), sut.list("alice", CHECKSUM));
+    assertTrue(sut.exists("Alice", CHECKSUM, "HOUSE"));
+    assertArrayEquals(data, sut.load("Alice", CHECKSUM, "house"));
+    sut.flush();
+    assertArrayEquals(data, sut.load("Alice", CHECKSUM, "house"));
+  }
+
+  @Test
+  @DisplayName("saves must be separated by user and by story")
+  void whenOtherUsersOrStoriesSave_ThenTheyMustNotSeeEachOther() throws Exception {
+    SaveGameStore sut = new SaveGameStore(dir, false);
+    sut.save("alice", CHECKSUM, "house", new byte[] {1});
+    sut.save("bob", CHECKSUM, "house", new byte[] {2});
+    sut.save(null, CHECKSUM, "house", new byte[] {3});
+    sut.save("alice", CHECKSUM + 1, "maze", new byte[] {4});
+
+    assertEquals(Arrays.asList("house"), sut.list("alice", CHECKSUM));
+    assertArrayEquals(new byte[] {2}, sut.load("bob", CHECKSUM, "house"));
+    assertArrayEquals(new byte[] {3}, sut.load("", CHECKSUM, "house"));
+    assertNull(sut.load("bob", CHECKSUM + 1, "maze"));
+  }
+
+  @Test
+  @DisplayName("the saves on disk must be listed by a new store, whatever their names")
+  void whenStoreStarts_ThenItMustListTheSavesOnDisk() throws Exception {
+    SaveGameStore first = new SaveGameStore(dir, true);
+    first.save("../alice", CHECKSUM, "..", new byte[] {1});
+    first.save("../alice", CHECKSUM, "west of house/1", new byte[] {2});
+    first.flush();
+
+    SaveGameStore sut = new SaveGameStore(dir, true);
+    assertEquals(Arrays.asList("..", "west of house/1"), sut.list("../alice", CHECKSUM));
+    assertArrayEquals(new byte[] {2}, sut.load("../alice", CHECKSUM, "west of house/1"));
+    assertEquals(1, dir.list().length);
+    assertTrue(sut.list("alice", CHECKSUM).isEmpty());
+  }
+}
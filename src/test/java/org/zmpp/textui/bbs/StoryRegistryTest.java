@@ -0,0 +1,42 @@
+package org.zmpp.textui.bbs;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.zmpp.vm.StoryTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StoryRegistryTest {
+
+  private static byte[] readStory(String name) throws IOException {
+    try (InputStream in = StoryRegistryTest.class.getClassLoader().getResourceAsStream(name)) {
+      return IOUtils.toByteArray(in);
+    }
+  }
+
+  @Test
+  @DisplayName("a story must be loaded only once")
+  void whenStoryIsRequestedTwice_ThenItMustBeLoadedOnce() throws IOException {
+    AtomicInteger loads = new AtomicInteger(0);
+    StoryRegistry sut = new StoryRegistry();
+    StoryTemplate first = sut.get("zmpp/minizork.z3", () -> { loads.incrementAndGet(); return readStory("zmpp/minizork.z3"); });
+    StoryTemplate second = sut.get("zmpp/minizork.z3", () -> { loads.incrementAndGet(); return readStory("zmpp/minizork.z3"); });
+    assertSame(first, second);
+    assertEquals(1, loads.get());
+    assertEquals(1, sut.size());
+    assertTrue(first.getDynamicMemorySize() < first.getSize());
+  }
+
+  @Test
+  @DisplayName("a story which cannot be read must not be registered")
+  void whenStoryCannotBeRead_ThenItMustNotBeRegistered() {
+    StoryRegistry sut = new StoryRegistry();
+    assertThrows(IOException.class, () -> sut.get("missing.z3", () -> { throw new IOException("missing"); }));
+    assertEquals(0, sut.size());
+  }
+}
@@ -0,0 +1,110 @@
+package org.zmpp.textui.bbs;
+
+import org.apache.commons.io.IOUtils;
+import org.davidmoten.text.utils.WordWrap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingWordWrapperTest {
+
+  static class Recorder implements StreamingWordWrapper.Sink {
+    final List<String> lines = new ArrayList<>();
+    final StringBuilder current = new StringBuilder();
+    int pages = 0;
+
+    public void print(String text) { current.append(text); }
+    public void newline() { lines.add(current.toString()); current.setLength(0); }
+    public void endOfPage() { pages++; }
+  }
+
+  private static List<String> wrap(String text) {
+    Recorder recorder = new Recorder();
+    StreamingWordWrapper sut = new StreamingWordWrapper(39, 1000, recorder);
+    for (char c : text.toCharArray()) {
+      if (c == '\n') sut.newline(); else sut.append(c);
+    }
+    return recorder.lines;
+  }
+
+  private static List<String> libraryWrap(String paragraph) {
+    String wrapped = WordWrap.from(paragraph).maxWidth(39).newLine("\n").breakWords(false).wrap();
+    List<String> result = new ArrayList<>();
+    for (String line : wrapped.split("\n")) result.add(line.replaceAll(" +$", ""));
+    return result;
+  }
+
+  private static List<String> trimmed(List<String> lines) {
+    List<String> result = new ArrayList<>();
+    for (String line : lines) result.add(line.replaceAll(" +$", ""));
+    return result;
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "You are standing in an open field west of a white house, with a boarded front door.",
+      "exactly thirty nine chars long lineXXXX next",
+      "exactly thirty nine chars long lineXXX  next",
+      "xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx   yyyy zzz",
+      "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa bb",
+      "hyphen-ated-words-are-here-and-there-and-everywhere-today ok",
+      "   leading spaces here",
+      ""})
+  @DisplayName("a paragraph must be wrapped like the WordWrap library does")
+  void whenParagraphIsWrapped_ThenLinesMustMatchWordWrap(String paragraph) {
+    assertEquals(libraryWrap(paragraph), trimmed(wrap(paragraph + "\n")));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"zork1", "zork2", "zork3", "minizork"})
+  @DisplayName("a whole game transcript must be wrapped like the WordWrap library does")
+  void whenTranscriptIsWrapped_ThenLinesMustMatchWordWrap(String story) throws IOException {
+    String transcript;
+    try (InputStream in = getClass().getResourceAsStream("/org/zmpp/textui/" + story + ".golden")) {
+      transcript = IOUtils.toString(in, UTF_8);
+    }
+    List<String> expected = new ArrayList<>();
+    for (String paragraph : transcript.split("\n", -1)) expected.addAll(libraryWrap(paragraph));
+    assertEquals(expected, trimmed(wrap(transcript + "\n")));
+  }
+
+  @Test
+  @DisplayName("no line may be longer than the width unless it is a single word")
+  void whenTextIsWrapped_ThenLinesMustFitTheWidth() {
+    List<String> lines = wrap("a bb ccc dddd eeeee ffffff ggggggg hhhhhhhh iiiiiiiii jjjjjjjjjj "
+        + "kkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkk l mm nnn\n");
+    for (String line : lines) {
+      assertTrue(line.length() <= 39 || !line.contains(" "), line);
+    }
+    assertEquals(Arrays.asList("a bb ccc dddd eeeee ffffff ggggggg",
+        "hhhhhhhh iiiiiiiii jjjjjjjjjj",
+        "kkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkkk",
+        "l mm nnn"), lines);
+  }
+
+  @Test
+  @DisplayName("a page break must be asked every page of lines and a prompt must restart the count")
+  void whenScreenIsFull_ThenPageBreakMustBeAsked() {
+    Recorder recorder = new Recorder();
+    StreamingWordWrapper sut = new StreamingWordWrapper(39, 24, recorder);
+    for (int i = 0; i < 30; i++) sut.newline();
+    assertEquals(1, recorder.pages);
+    sut.append('>');
+    sut.prompt();
+    for (int i = 0; i < 23; i++) sut.newline();
+    assertEquals(1, recorder.pages);
+    sut.newline();
+    assertEquals(2, recorder.pages);
+    assertEquals(">", recorder.lines.get(30));
+  }
+}
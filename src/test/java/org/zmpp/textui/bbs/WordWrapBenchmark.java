@@ -0,0 +1,110 @@
+package org.zmpp.textui.bbs;
+
+import org.apache.commons.io.IOUtils;
+import org.davidmoten.text.utils.WordWrap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * BBSScreenModel output of a whole game transcript, one character at a time:
+ * StreamingWordWrapper against the former StringBuffer and WordWrap path.
+ * The gc profiler gives the allocations.
+ * Run with: mvn -Pbenchmark test -Dbenchmark=WordWrapBenchmark -Dbenchmark.options="-prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WordWrapBenchmark {
+
+  @Param({"zork1", "minizork"})
+  public String story;
+
+  private char[] transcript;
+
+  @Setup
+  public void setup() throws IOException {
+    try (InputStream in = WordWrapBenchmark.class.getResourceAsStream("/org/zmpp/textui/" + story + ".golden")) {
+      transcript = IOUtils.toString(in, UTF_8).toCharArray();
+    }
+  }
+
+  private static class NullSink implements StreamingWordWrapper.Sink {
+    private final Blackhole blackhole;
+
+    NullSink(Blackhole blackhole) { this.blackhole = blackhole; }
+
+    public void print(String text) { blackhole.consume(text); }
+    public void newline() { }
+    public void endOfPage() { }
+  }
+
+  @Benchmark
+  public void streaming(Blackhole blackhole) {
+    StreamingWordWrapper wrapper = new StreamingWordWrapper(39, 24, new NullSink(blackhole));
+    for (char c : transcript) {
+      if (c == '\n') {
+        wrapper.newline();
+      } else if (c == '>') {
+        wrapper.append(c);
+        wrapper.prompt();
+      } else {
+        wrapper.append(c);
+      }
+    }
+  }
+
+  @Benchmark
+  public void legacy(Blackhole blackhole) {
+    StringBuffer buffer = new StringBuffer(8192);
+    for (char c : transcript) {
+      if (c == '\n') {
+        legacyWordWrap(buffer.toString()).forEach(blackhole::consume);
+        buffer = new StringBuffer(8192);
+      } else if (c == '>') {
+        buffer.append(">");
+        legacyWordWrap(buffer.toString()).forEach(blackhole::consume);
+        buffer = new StringBuffer(8192);
+      } else {
+        buffer.append(c);
+      }
+    }
+  }
+
+  private static List<String> legacyWordWrap(String s) {
+    String[] cleaned = s.split("\n");
+    List<String> result = new ArrayList<>();
+    for (String item: cleaned) {
+      String[] wrappedLine = WordWrap
+          .from(item)
+          .maxWidth(39)
+          .newLine("\n")
+          .breakWords(false)
+          .wrap()
+          .split("\n");
+      result.addAll(Arrays.asList(wrappedLine));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,64 @@
+package org.zmpp.vm;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.zmpp.base.DefaultMemoryAccess;
+import org.zmpp.base.MemoryAccess;
+import org.zmpp.iff.DefaultFormChunk;
+import org.zmpp.iff.FormChunk;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PortableGameStateTest {
+
+  private static final int STATICS_ADDRESS = 0x1000;
+
+  private byte[] story;
+  private Machine machine;
+
+  @BeforeEach
+  void setUp() {
+    story = new byte[0x2000];
+    for (int i = 0x40; i < story.length; i++) story[i] = (byte) (i * 7);
+    MemoryAccess memaccess = new DefaultMemoryAccess(story);
+    memaccess.writeUnsignedByte(0x00, (short) 5);
+    memaccess.writeUnsignedShort(0x0e, STATICS_ADDRESS);
+    byte[] original = story.clone();
+
+    GameData gamedata = mock(GameData.class);
+    when(gamedata.getStoryFileHeader()).thenReturn(new DefaultStoryFileHeader(memaccess));
+    when(gamedata.getMemoryAccess()).thenReturn(memaccess);
+    when(gamedata.getOriginalStory()).thenReturn(new DefaultMemoryAccess(original));
+    machine = mock(Machine.class);
+    when(machine.getGameData()).thenReturn(gamedata);
+    when(machine.getCpu()).thenReturn(mock(Cpu.class));
+  }
+
+  @Test
+  @DisplayName("a saved game must store its dynamic memory compressed and restore it")
+  void whenGameIsSaved_ThenDynamicMemoryMustBeCompressedAndRestored() throws Exception {
+    story[0x100] ^= 1;
+    story[0x101] ^= 2;
+    story[0x800] ^= 3;
+    story[STATICS_ADDRESS - 1] ^= 4;
+    byte[] expected = Arrays.copyOf(story, STATICS_ADDRESS);
+
+    PortableGameState saved = new PortableGameState();
+    saved.captureMachineState(machine, 0x4000);
+    byte[] file = saved.exportToFormChunk().getBytes();
+    FormChunk formChunk = new DefaultFormChunk(new DefaultMemoryAccess(file));
+    assertNull(formChunk.getSubChunk("UMem".getBytes()));
+    assertTrue(formChunk.getSubChunk("CMem".getBytes()).getSize() < 64);
+
+    Arrays.fill(story, 0x40, STATICS_ADDRESS, (byte) 0x77);
+    PortableGameState restored = new PortableGameState();
+    assertTrue(restored.readSaveGame(formChunk));
+    restored.transferStateToMachine(machine);
+    assertArrayEquals(expected, Arrays.copyOf(story, STATICS_ADDRESS));
+    assertEquals(0x4000, restored.getProgramCounter());
+  }
+}
@@ -0,0 +1,117 @@
+package org.zmpp.vm;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.zmpp.base.CopyOnWriteMemoryAccess;
+import org.zmpp.base.MemoryAccess;
+import org.zmpp.encoding.ZsciiString;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StoryTemplateTest {
+
+  private static byte[] story;
+  private static StoryTemplate template;
+
+  @BeforeAll
+  static void loadStory() throws IOException {
+    try (InputStream in = StoryTemplateTest.class.getClassLoader().getResourceAsStream("zmpp/zork1.z3")) {
+      story = IOUtils.toByteArray(in);
+    }
+    template = new StoryTemplate(story);
+  }
+
+  private static String nameOf(GameData game, int objectNum) {
+    int address = game.getObjectTree().getObject(objectNum).getPropertiesDescriptionAddress();
+    return game.getZCharDecoder().decode2Zscii(game.getMemoryAccess(), address, 0).toString();
+  }
+
+  @Test
+  @DisplayName("games from the same template must not see each other's dynamic memory")
+  void whenOneGameWritesDynamicMemory_ThenOtherGamesMustNotSeeIt() {
+    GameData first = new GameDataImpl(template, null);
+    GameData second = new GameDataImpl(template, null);
+    int globals = first.getStoryFileHeader().getGlobalsAddress();
+    int original = second.getMemoryAccess().readUnsignedShort(globals);
+    first.getMemoryAccess().writeUnsignedShort(globals, original ^ 0xffff);
+    assertEquals(original ^ 0xffff, first.getMemoryAccess().readUnsignedShort(globals));
+    assertEquals(original, second.getMemoryAccess().readUnsignedShort(globals));
+    assertEquals(original, new GameDataImpl(template, null).getMemoryAccess().readUnsignedShort(globals));
+  }
+
+  @Test
+  @DisplayName("a hibernated game must get its dynamic memory back when woken up")
+  void whenGameHibernates_ThenMemoryMustBeCompressedAndRestored() {
+    GameData game = new GameDataImpl(template, null);
+    CopyOnWriteMemoryAccess memory = (CopyOnWriteMemoryAccess) game.getMemoryAccess();
+    int globals = game.getStoryFileHeader().getGlobalsAddress();
+    for (int i = 0; i < 40; i += 2) memory.writeUnsignedShort(globals + i, 0x1234 + i);
+    byte[] before = new byte[memory.getPrivateLength()];
+    for (int i = 0; i < before.length; i++) before[i] = memory.readByte(i);
+
+    memory.hibernate();
+    assertTrue(memory.isHibernating());
+    assertTrue(memory.getHibernatedSize() < memory.getPrivateLength() / 50, "compressed to " + memory.getHibernatedSize());
+    memory.wakeUp();
+    assertFalse(memory.isHibernating());
+    for (int i = 0; i < before.length; i++) assertEquals(before[i], memory.readByte(i));
+  }
+
+  @Test
+  @DisplayName("a write to static memory must copy the story instead of changing the template")
+  void whenGameWritesStaticMemory_ThenTemplateMustNotChange() {
+    GameData first = new GameDataImpl(template, null);
+    int address = first.getStoryFileHeader().getStaticsAddress() + 10;
+    first.getMemoryAccess().writeByte(address, (byte) (story[address] + 1));
+    assertEquals((byte) (story[address] + 1), first.getMemoryAccess().readByte(address));
+    assertEquals(story[address], new GameDataImpl(template, null).getMemoryAccess().readByte(address));
+  }
+
+  @Test
+  @DisplayName("a game from a template must behave like a game with its own copy of the story")
+  void whenGameIsFromTemplate_ThenItMustMatchPrivateCopy() {
+    GameData shared = new GameDataImpl(template, null);
+    GameData copy = new GameDataImpl(story, null);
+    assertEquals(copy.getCalculatedChecksum(), shared.getCalculatedChecksum());
+    assertTrue(shared.hasValidChecksum());
+    MemoryAccess sharedMemory = shared.getMemoryAccess();
+    for (int i = 0; i < story.length; i++) {
+      assertEquals(copy.getMemoryAccess().readByte(i), sharedMemory.readByte(i));
+    }
+    for (int i = 1; i <= copy.getObjectTree().getNumObjects(); i++) {
+      assertEquals(nameOf(copy, i), nameOf(shared, i));
+    }
+    Dictionary dictionary = shared.getDictionary();
+    assertNotEquals(0, dictionary.lookup(new ZsciiString("lantern")));
+    assertEquals(copy.getDictionary().lookup(new ZsciiString("mailbox")), dictionary.lookup(new ZsciiString("mailbox")));
+    assertEquals(0, dictionary.lookup(new ZsciiString("xyzzyx")));
+  }
+
+  @Test
+  @DisplayName("an abbreviation changed by a game must be decoded from its memory")
+  void whenAbbreviationIsChanged_ThenItMustBeDecodedFromMemory() {
+    GameData game = new GameDataImpl(template, null);
+    String[] before = new String[game.getObjectTree().getNumObjects() + 1];
+    for (int i = 1; i < before.length; i++) before[i] = nameOf(game, i);
+
+    // Overwrite the first word of every abbreviation with "aaa"
+    MemoryAccess memory = game.getMemoryAccess();
+    int table = game.getStoryFileHeader().getAbbreviationsAddress();
+    for (int i = 0; i < 96; i++) {
+      int address = memory.readUnsignedShort(table + 2 * i) * 2;
+      int word = memory.readUnsignedShort(address);
+      memory.writeUnsignedShort(address, (word & 0x8000) | (6 << 10) | (6 << 5) | 6);
+    }
+    boolean changed = false;
+    for (int i = 1; i < before.length; i++) changed |= !before[i].equals(nameOf(game, i));
+    assertTrue(changed);
+    for (int i = 1; i < before.length; i++) {
+      assertEquals(before[i], nameOf(new GameDataImpl(template, null), i));
+    }
+  }
+}
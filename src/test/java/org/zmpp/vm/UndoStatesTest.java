@@ -0,0 +1,106 @@
+package org.zmpp.vm;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.zmpp.base.DefaultMemoryAccess;
+import org.zmpp.base.MemoryAccess;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UndoStatesTest {
+
+  private static final int STATICS_ADDRESS = 0x1000;
+
+  private byte[] story;
+  private Machine machine;
+
+  @BeforeEach
+  void setUp() {
+    story = new byte[0x2000];
+    MemoryAccess memaccess = new DefaultMemoryAccess(story);
+    memaccess.writeUnsignedByte(0x00, (short) 5);
+    memaccess.writeUnsignedShort(0x0e, STATICS_ADDRESS);
+
+    GameData gamedata = mock(GameData.class);
+    when(gamedata.getStoryFileHeader()).thenReturn(new DefaultStoryFileHeader(memaccess));
+    when(gamedata.getMemoryAccess()).thenReturn(memaccess);
+    machine = mock(Machine.class);
+    when(machine.getGameData()).thenReturn(gamedata);
+    when(machine.getCpu()).thenReturn(mock(Cpu.class));
+  }
+
+  private byte[] dynamicMemory() {
+    return Arrays.copyOf(story, STATICS_ADDRESS);
+  }
+
+  @Test
+  @DisplayName("undo must restore the states in reverse order with their dynamic memory")
+  void whenStatesAreRemoved_ThenTheyMustComeBackInReverseOrder() {
+    UndoStates sut = new UndoStates(5, 1 << 20);
+    byte[][] expected = new byte[3][];
+    for (int turn = 0; turn < 3; turn++) {
+      story[0x100 + turn] = (byte) (turn + 1);
+      story[0xfff] ^= 0x55;
+      expected[turn] = dynamicMemory();
+      sut.add(machine, 0x4000 + turn);
+    }
+    Arrays.fill(story, 0, STATICS_ADDRESS, (byte) 0x77);
+
+    for (int turn = 2; turn >= 0; turn--) {
+      PortableGameState state = sut.remove();
+      assertEquals(0x4000 + turn, state.getProgramCounter());
+      assertArrayEquals(expected[turn], state.getDynamicMemoryDump());
+    }
+    assertNull(sut.remove());
+  }
+
+  @Test
+  @DisplayName("a state saved after an undo must be stored against the restored state")
+  void whenStateIsAddedAfterRemoval_ThenOlderStatesMustStillBeRestored() {
+    UndoStates sut = new UndoStates(5, 1 << 20);
+    story[0x10] = 1;
+    byte[] first = dynamicMemory();
+    sut.add(machine, 1);
+    story[0x20] = 2;
+    sut.add(machine, 2);
+    sut.remove();
+    story[0x30] = 3;
+    byte[] third = dynamicMemory();
+    sut.add(machine, 3);
+
+    assertArrayEquals(third, sut.remove().getDynamicMemoryDump());
+    assertArrayEquals(first, sut.remove().getDynamicMemoryDump());
+  }
+
+  @Test
+  @DisplayName("a state with few changes must take much less than a copy of dynamic memory")
+  void whenFewBytesChange_ThenStatesMustBeSmall() {
+    UndoStates sut = new UndoStates(100, 1 << 20);
+    for (int turn = 0; turn < 50; turn++) {
+      story[0x100 + turn * 64] ^= 1;
+      sut.add(machine, turn);
+    }
+    assertEquals(50, sut.size());
+    assertTrue(sut.getMemoryUsage() < 2 * STATICS_ADDRESS, "used " + sut.getMemoryUsage());
+  }
+
+  @Test
+  @DisplayName("the oldest states must be discarded beyond the number of states or the budget")
+  void whenLimitsAreExceeded_ThenOldestStatesMustBeDiscarded() {
+    UndoStates counted = new UndoStates(3, 1 << 20);
+    UndoStates budgeted = new UndoStates(100, STATICS_ADDRESS + 2000);
+    for (int turn = 0; turn < 10; turn++) {
+      Arrays.fill(story, 0x100 + turn * 300, 0x100 + turn * 300 + 300, (byte) (turn + 1));
+      counted.add(machine, turn);
+      budgeted.add(machine, turn);
+    }
+    assertEquals(3, counted.size());
+    assertTrue(budgeted.size() < 10);
+    assertTrue(budgeted.getMemoryUsage() <= STATICS_ADDRESS + 2000);
+    assertEquals(9, budgeted.remove().getProgramCounter());
+  }
+}
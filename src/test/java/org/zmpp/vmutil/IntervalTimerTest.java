@@ -0,0 +1,87 @@
+package org.zmpp.vmutil;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalTimerTest {
+
+  @Test
+  @DisplayName("a task must run repeatedly until cancelled and never after")
+  void whenTaskIsCancelled_ThenItMustNotRunAnymore() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(3);
+    AtomicInteger runs = new AtomicInteger();
+    IntervalTimer.Handle handle = IntervalTimer.schedule(() -> {
+      runs.incrementAndGet();
+      latch.countDown();
+    }, 5);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    handle.cancel();
+    int afterCancel = runs.get();
+    Thread.sleep(50);
+    assertEquals(afterCancel, runs.get());
+    assertTrue(handle.isCancelled());
+  }
+
+  @Test
+  @DisplayName("cancel must wait for a running task to finish")
+  void whenTaskIsRunning_ThenCancelMustWaitForIt() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicInteger finished = new AtomicInteger();
+    IntervalTimer.Handle handle = IntervalTimer.schedule(() -> {
+      started.countDown();
+      try { Thread.sleep(100); } catch (InterruptedException ex) { }
+      finished.incrementAndGet();
+    }, 1);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    handle.cancel();
+    assertEquals(1, finished.get());
+  }
+
+  @Test
+  @DisplayName("a task may cancel itself and is then no longer scheduled")
+  void whenTasksCancelThemselves_ThenNoneMustBeScheduled() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(200);
+    IntervalTimer.Handle[] handles = new IntervalTimer.Handle[200];
+    for (int i = 0; i < handles.length; i++) {
+      final int index = i;
+      handles[i] = IntervalTimer.schedule(() -> {
+        latch.countDown();
+        handles[index].cancel();
+      }, 20);
+    }
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    for (IntervalTimer.Handle handle : handles) {
+      assertTrue(handle.isCancelled());
+    }
+    assertEquals(0, IntervalTimer.getNumScheduled());
+  }
+
+  @Test
+  @DisplayName("tasks blocked in their run must not hold up other tasks")
+  void whenTasksAreBlocked_ThenOtherTasksMustStillRun() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch blocked = new CountDownLatch(16);
+    IntervalTimer.Handle[] stalled = new IntervalTimer.Handle[16];
+    for (int i = 0; i < stalled.length; i++) {
+      stalled[i] = IntervalTimer.schedule(() -> {
+        blocked.countDown();
+        try { release.await(); } catch (InterruptedException ex) { }
+      }, 1);
+    }
+    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    CountDownLatch ran = new CountDownLatch(1);
+    IntervalTimer.Handle other = IntervalTimer.schedule(ran::countDown, 1);
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    other.cancel();
+    release.countDown();
+    for (IntervalTimer.Handle handle : stalled) {
+      handle.cancel();
+    }
+  }
+}